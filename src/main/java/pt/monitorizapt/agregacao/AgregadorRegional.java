@@ -0,0 +1,218 @@
+package pt.monitorizapt.agregacao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+
+/**
+ * Regional rollups kept up to date as readings arrive: per city, per sensor type and national.
+ *
+ * Means only make sense within one unit, so every region holds one accumulator per
+ * {@link SensorTipo}; the per-type rollup is the national accumulator of that type. A reading
+ * touches exactly two accumulators (its city and the country), so the cost is O(depth) and
+ * nothing is ever recomputed from the sensor list.
+ *
+ * The accumulators are striped ({@link LongAdder}, {@link DoubleAdder}, {@link DoubleAccumulator}),
+ * so many sensor threads add to the same region without contending on a lock. The mean is
+ * kept as a sum of the current values: a new reading adds {@code novo - anterior}. Extremes
+ * cover the publication window and are reset by {@link #fecharJanela}.
+ */
+public class AgregadorRegional {
+    public static final String TOPICO = "envira/pt/sensores/agregados/";
+    public static final String NACIONAL = "Portugal";
+
+    private static final Gson GSON = new Gson();
+    private static final byte SEM_LEITURA = 0;
+    private static final byte OK = 1;
+    private static final byte ALERTA = 2;
+
+    private final Regiao nacional = new Regiao(NACIONAL, null);
+    // Cities in enum order (built once, read-only afterwards)
+    private final Map<String, Regiao> cidades = new LinkedHashMap<>();
+    private final Regiao[] cidadePorLocalizacao = new Regiao[SensorLocalizacao.values().length];
+
+    // Previous reading of each sensor (slot = sensor ordinal, single writer: the sensor thread)
+    private final double[] valorAnterior;
+    private final byte[] estadoAnterior;
+
+    public AgregadorRegional(int capacidadeSensores) {
+        this.valorAnterior = new double[capacidadeSensores];
+        this.estadoAnterior = new byte[capacidadeSensores];
+        for (SensorLocalizacao localizacao : SensorLocalizacao.values()) {
+            cidadePorLocalizacao[localizacao.ordinal()] = cidades.computeIfAbsent(localizacao.cidade(),
+                    cidade -> new Regiao(cidade, localizacao.segmentoCidade()));
+        }
+    }
+
+    /**
+     * Adds one reading. Must be called from the thread that owns the sensor.
+     */
+    public void registar(int ordinal, SensorLocalizacao localizacao, SensorTipo tipo, double valor, boolean alerta) {
+        byte anterior = estadoAnterior[ordinal];
+        double deltaSoma = anterior == SEM_LEITURA ? valor : valor - valorAnterior[ordinal];
+        int deltaSensores = anterior == SEM_LEITURA ? 1 : 0;
+        int deltaAlerta = (alerta ? 1 : 0) - (anterior == ALERTA ? 1 : 0);
+        valorAnterior[ordinal] = valor;
+        estadoAnterior[ordinal] = alerta ? ALERTA : OK;
+
+        nacional.por(tipo).registar(valor, deltaSoma, deltaSensores, deltaAlerta);
+        cidadePorLocalizacao[localizacao.ordinal()].por(tipo).registar(valor, deltaSoma, deltaSensores, deltaAlerta);
+    }
+
+    /**
+     * Closes the current window (extremes and reading counts start again) and hands one
+     * message per rollup to {@code publicar}: {@code agregados/nacional},
+     * {@code agregados/cidade/<cidade>} and {@code agregados/tipo/<tipo>}.
+     */
+    public void fecharJanela(BiConsumer<String, String> publicar) {
+        long agora = System.currentTimeMillis();
+        nacional.fecharJanela();
+        cidades.values().forEach(Regiao::fecharJanela);
+
+        publicar.accept(TOPICO + "nacional", GSON.toJson(nacional.paraJson(agora)));
+        for (Regiao cidade : cidades.values()) {
+            publicar.accept(TOPICO + "cidade/" + cidade.segmento, GSON.toJson(cidade.paraJson(agora)));
+        }
+        for (SensorTipo tipo : SensorTipo.values()) {
+            Acumulador acumulador = nacional.por(tipo);
+            if (acumulador.sensores.sum() > 0) {
+                JsonObject objeto = acumulador.paraJson(nacional.nome, tipo);
+                objeto.addProperty("timestamp", agora);
+                publicar.accept(TOPICO + "tipo/" + tipo.tipoJson(), GSON.toJson(objeto));
+            }
+        }
+    }
+
+    /**
+     * Current rollups for the UI (national first, then each city), only types with sensors.
+     */
+    public List<ResumoRegional> resumos() {
+        List<ResumoRegional> resumos = new ArrayList<>();
+        nacional.resumir(resumos);
+        cidades.values().forEach(cidade -> cidade.resumir(resumos));
+        return resumos;
+    }
+
+    private static final class Regiao {
+        private final String nome;
+        private final String segmento;
+        private final Acumulador[] porTipo = new Acumulador[SensorTipo.values().length];
+
+        Regiao(String nome, String segmento) {
+            this.nome = nome;
+            this.segmento = segmento;
+            for (int i = 0; i < porTipo.length; i++) {
+                porTipo[i] = new Acumulador();
+            }
+        }
+
+        Acumulador por(SensorTipo tipo) {
+            return porTipo[tipo.ordinal()];
+        }
+
+        void fecharJanela() {
+            for (Acumulador acumulador : porTipo) {
+                acumulador.fecharJanela();
+            }
+        }
+
+        void resumir(List<ResumoRegional> destino) {
+            for (SensorTipo tipo : SensorTipo.values()) {
+                Acumulador acumulador = por(tipo);
+                long sensores = acumulador.sensores.sum();
+                if (sensores > 0) {
+                    destino.add(new ResumoRegional(nome, tipo, sensores, acumulador.soma.sum() / sensores,
+                            acumulador.minimoJanela, acumulador.maximoJanela, acumulador.emAlerta.sum(),
+                            acumulador.leiturasJanela));
+                }
+            }
+        }
+
+        JsonObject paraJson(long timestamp) {
+            JsonObject objeto = new JsonObject();
+            objeto.addProperty("regiao", nome);
+            long sensores = 0;
+            long emAlerta = 0;
+            JsonObject tipos = new JsonObject();
+            for (SensorTipo tipo : SensorTipo.values()) {
+                Acumulador acumulador = por(tipo);
+                if (acumulador.sensores.sum() > 0) {
+                    sensores += acumulador.sensores.sum();
+                    emAlerta += acumulador.emAlerta.sum();
+                    tipos.add(tipo.tipoJson(), acumulador.paraJson(null, tipo));
+                }
+            }
+            objeto.addProperty("sensores", sensores);
+            objeto.addProperty("emAlerta", emAlerta);
+            objeto.add("tipos", tipos);
+            objeto.addProperty("timestamp", timestamp);
+            return objeto;
+        }
+    }
+
+    private static final class Acumulador {
+        private final LongAdder sensores = new LongAdder();
+        private final LongAdder emAlerta = new LongAdder();
+        private final DoubleAdder soma = new DoubleAdder();
+        private final LongAdder leituras = new LongAdder();
+        private final DoubleAccumulator minimo = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        private final DoubleAccumulator maximo = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+        // Last closed window (written by the publisher, read by the UI)
+        private volatile double minimoJanela = Double.NaN;
+        private volatile double maximoJanela = Double.NaN;
+        private volatile long leiturasJanela;
+
+        void registar(double valor, double deltaSoma, int deltaSensores, int deltaAlerta) {
+            if (deltaSensores != 0) {
+                sensores.add(deltaSensores);
+            }
+            if (deltaAlerta != 0) {
+                emAlerta.add(deltaAlerta);
+            }
+            soma.add(deltaSoma);
+            leituras.increment();
+            minimo.accumulate(valor);
+            maximo.accumulate(valor);
+        }
+
+        void fecharJanela() {
+            double min = minimo.getThenReset();
+            double max = maximo.getThenReset();
+            minimoJanela = Double.isInfinite(min) ? Double.NaN : min;
+            maximoJanela = Double.isInfinite(max) ? Double.NaN : max;
+            leiturasJanela = leituras.sumThenReset();
+        }
+
+        JsonObject paraJson(String regiao, SensorTipo tipo) {
+            JsonObject objeto = new JsonObject();
+            if (regiao != null) {
+                objeto.addProperty("regiao", regiao);
+                objeto.addProperty("tipo", tipo.tipoJson());
+            }
+            long n = sensores.sum();
+            objeto.addProperty("sensores", n);
+            objeto.addProperty("media", n == 0 ? 0.0 : soma.sum() / n);
+            // Gson writes NaN as a bare token; an empty window simply has no extremes
+            if (!Double.isNaN(minimoJanela)) {
+                objeto.addProperty("minimo", minimoJanela);
+                objeto.addProperty("maximo", maximoJanela);
+            }
+            objeto.addProperty("emAlerta", emAlerta.sum());
+            objeto.addProperty("leituras", leiturasJanela);
+            objeto.addProperty("unidade", tipo.unidadePadrao());
+            return objeto;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pt.monitorizapt.agregacao;
+
+import pt.monitorizapt.domain.SensorTipo;
+
+/**
+ * Aggregate of one sensor type inside one region (a city or the whole country).
+ *
+ * {@code media}, {@code sensores} and {@code emAlerta} describe the current state (last
+ * reading of each sensor); {@code minimo}, {@code maximo} and {@code leituras} cover the last
+ * closed publication window (NaN / 0 when it had no readings).
+ */
+public record ResumoRegional(String regiao,
+                             SensorTipo tipo,
+                             long sensores,
+                             double media,
+                             double minimo,
+                             double maximo,
+                             long emAlerta,
+                             long leituras) {
+}
@@ -0,0 +1,226 @@
+package pt.monitorizapt.alert;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+
+/**
+ * Evaluates the alert rules for every sensor of the fleet.
+ *
+ * The declarative {@link RegraAlerta} list is "compiled" once into flat primitive arrays
+ * indexed by the sensor ordinal, so evaluating a reading is just a few array reads and
+ * comparisons (no maps, no objects). Reloading the rules builds a new table and swaps a
+ * volatile reference, so sensor threads never see a half-built rule set.
+ *
+ * Each slot is written by a single sensor thread only, which is why the state arrays
+ * don't need any locking.
+ */
+public class MotorAlertas {
+    private final int capacidade;
+
+    // Slot metadata (filled by registar)
+    private final String[] ids;
+    private final SensorTipo[] tipos;
+    private final SensorLocalizacao[] localizacoes;
+    private int registados;
+
+    // Per-slot state that survives rule reloads
+    private final boolean[] emAlerta;
+    private final int[] contagem;
+    private final double[] ultimoValor;
+    private final long[] ultimoTimestamp;
+
+    private final List<Consumer<TransicaoAlerta>> transicaoListeners = new CopyOnWriteArrayList<>();
+
+    private volatile List<RegraAlerta> regrasAtuais;
+    private volatile RegrasCompiladas compiladas;
+
+    public MotorAlertas(int capacidade, List<RegraAlerta> regras) {
+        this.capacidade = capacidade;
+        this.ids = new String[capacidade];
+        this.tipos = new SensorTipo[capacidade];
+        this.localizacoes = new SensorLocalizacao[capacidade];
+        this.emAlerta = new boolean[capacidade];
+        this.contagem = new int[capacidade];
+        this.ultimoValor = new double[capacidade];
+        this.ultimoTimestamp = new long[capacidade];
+        this.regrasAtuais = List.copyOf(regras);
+        this.compiladas = new RegrasCompiladas(capacidade);
+    }
+
+    /**
+     * Reserves the next slot for a sensor and compiles its rule.
+     *
+     * @return the ordinal the sensor must use when calling {@link #avaliar}
+     */
+    public synchronized int registar(String sensorId, SensorTipo tipo, SensorLocalizacao localizacao) {
+        if (registados >= capacidade) {
+            throw new IllegalStateException("Capacidade do motor de alertas esgotada: " + capacidade);
+        }
+        int ordinal = registados++;
+        ids[ordinal] = sensorId;
+        tipos[ordinal] = tipo;
+        localizacoes[ordinal] = localizacao;
+        compiladas.compilar(ordinal, resolver(regrasAtuais, tipo, localizacao));
+        return ordinal;
+    }
+
+    /**
+     * Hot reload: compiles the whole table off to the side and publishes it in one write.
+     * Alert state and sample counters are kept, so sensors already in alert stay in alert.
+     */
+    public synchronized void recarregar(List<RegraAlerta> novasRegras) {
+        List<RegraAlerta> copia = List.copyOf(novasRegras);
+        RegrasCompiladas nova = new RegrasCompiladas(capacidade);
+        for (int i = 0; i < registados; i++) {
+            nova.compilar(i, resolver(copia, tipos[i], localizacoes[i]));
+        }
+        regrasAtuais = copia;
+        compiladas = nova;
+    }
+
+    /**
+     * Hot path, called by the sensor thread for every reading. Allocates nothing unless the
+     * alert state actually changes.
+     *
+     * @return the alert state after this reading
+     */
+    public boolean avaliar(int ordinal, double valor, long timestamp) {
+        RegrasCompiladas r = compiladas;
+        boolean estado = emAlerta[ordinal];
+
+        double taxa = 0.0;
+        long anterior = ultimoTimestamp[ordinal];
+        if (anterior > 0L && timestamp > anterior) {
+            taxa = Math.abs(valor - ultimoValor[ordinal]) * 1000.0 / (timestamp - anterior);
+        }
+        ultimoValor[ordinal] = valor;
+        ultimoTimestamp[ordinal] = timestamp;
+
+        // While in alert the value must come back inside the hysteresis band before clearing
+        boolean violacao = estado
+                ? valor > r.maximoSaida[ordinal] || valor < r.minimoSaida[ordinal] || taxa > r.taxaMaxima[ordinal]
+                : valor > r.maximo[ordinal] || valor < r.minimo[ordinal] || taxa > r.taxaMaxima[ordinal];
+
+        if (violacao == estado) {
+            contagem[ordinal] = 0;
+            return estado;
+        }
+        if (++contagem[ordinal] < r.amostras[ordinal]) {
+            return estado;
+        }
+        contagem[ordinal] = 0;
+        emAlerta[ordinal] = violacao;
+        emitir(new TransicaoAlerta(ordinal, ids[ordinal], tipos[ordinal], localizacoes[ordinal], violacao, valor, timestamp));
+        return violacao;
+    }
+
+    /**
+     * Warm start: puts back the state saved before a restart, so a sensor that was in alert
+     * doesn't emit a second "entered alert" transition. Call before the sensor thread starts.
+     */
+    public void restaurar(int ordinal, boolean alerta, double valor, long timestamp) {
+        emAlerta[ordinal] = alerta;
+        contagem[ordinal] = 0;
+        ultimoValor[ordinal] = valor;
+        ultimoTimestamp[ordinal] = timestamp;
+    }
+
+    /**
+     * How far the value is from the nearest alert limit (0 while in alert, Infinity without limits).
+     * Used by adaptive sampling to read faster near a threshold.
+     */
+    public double distanciaLimite(int ordinal, double valor) {
+        if (emAlerta[ordinal]) {
+            return 0.0;
+        }
+        RegrasCompiladas r = compiladas;
+        return Math.min(Math.abs(r.maximo[ordinal] - valor), Math.abs(valor - r.minimo[ordinal]));
+    }
+
+    public boolean isEmAlerta(int ordinal) {
+        return emAlerta[ordinal];
+    }
+
+    public List<RegraAlerta> getRegras() {
+        return regrasAtuais;
+    }
+
+    public void registarTransicaoListener(Consumer<TransicaoAlerta> listener) {
+        transicaoListeners.add(listener);
+    }
+
+    private void emitir(TransicaoAlerta transicao) {
+        transicaoListeners.forEach(listener -> listener.accept(transicao));
+    }
+
+    /**
+     * Picks the most specific rule: "type@location" wins over "type".
+     */
+    private static RegraAlerta resolver(List<RegraAlerta> regras, SensorTipo tipo, SensorLocalizacao localizacao) {
+        RegraAlerta geral = null;
+        for (RegraAlerta regra : regras) {
+            if (regra.tipo() != tipo) {
+                continue;
+            }
+            if (regra.localizacao() == localizacao) {
+                return regra;
+            }
+            if (regra.localizacao() == null) {
+                geral = regra;
+            }
+        }
+        return geral;
+    }
+
+    /**
+     * Flat, read-only rule table. Undefined limits become +/-Infinity so the evaluation
+     * doesn't need any "is this rule set?" branch.
+     */
+    private static final class RegrasCompiladas {
+        private final double[] maximo;
+        private final double[] minimo;
+        private final double[] maximoSaida;
+        private final double[] minimoSaida;
+        private final double[] taxaMaxima;
+        private final int[] amostras;
+
+        private RegrasCompiladas(int capacidade) {
+            maximo = new double[capacidade];
+            minimo = new double[capacidade];
+            maximoSaida = new double[capacidade];
+            minimoSaida = new double[capacidade];
+            taxaMaxima = new double[capacidade];
+            amostras = new int[capacidade];
+            Arrays.fill(maximo, Double.POSITIVE_INFINITY);
+            Arrays.fill(maximoSaida, Double.POSITIVE_INFINITY);
+            Arrays.fill(minimo, Double.NEGATIVE_INFINITY);
+            Arrays.fill(minimoSaida, Double.NEGATIVE_INFINITY);
+            Arrays.fill(taxaMaxima, Double.POSITIVE_INFINITY);
+            Arrays.fill(amostras, 1);
+        }
+
+        private void compilar(int ordinal, RegraAlerta regra) {
+            if (regra == null) {
+                return;
+            }
+            double histerese = Double.isNaN(regra.histerese()) ? 0.0 : Math.abs(regra.histerese());
+            if (!Double.isNaN(regra.maximo())) {
+                maximo[ordinal] = regra.maximo();
+                maximoSaida[ordinal] = regra.maximo() - histerese;
+            }
+            if (!Double.isNaN(regra.minimo())) {
+                minimo[ordinal] = regra.minimo();
+                minimoSaida[ordinal] = regra.minimo() + histerese;
+            }
+            if (!Double.isNaN(regra.taxaMaxima())) {
+                taxaMaxima[ordinal] = Math.abs(regra.taxaMaxima());
+            }
+            amostras[ordinal] = Math.max(1, regra.amostras());
+        }
+    }
+}
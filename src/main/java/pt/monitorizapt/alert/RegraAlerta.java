@@ -0,0 +1,94 @@
+package pt.monitorizapt.alert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.util.Configuracao;
+
+/**
+ * Declarative alert rule for a sensor type, optionally narrowed to a single location.
+ * Undefined limits use NaN so they can be told apart from a real 0.0 threshold.
+ *
+ * @param localizacao null means "every location with this type"
+ * @param histerese   band the value must come back inside before the alert clears (avoids flapping)
+ * @param taxaMaxima  maximum allowed variation per second (absolute value)
+ * @param amostras    consecutive samples required before the alert state changes
+ */
+public record RegraAlerta(SensorTipo tipo,
+                          SensorLocalizacao localizacao,
+                          double maximo,
+                          double minimo,
+                          double histerese,
+                          double taxaMaxima,
+                          int amostras) {
+
+    private static final String PREFIXO = "alerta.";
+
+    /**
+     * Thresholds used before the rules moved to the config file.
+     */
+    public static RegraAlerta padrao(SensorTipo tipo) {
+        double maximo = switch (tipo) {
+            case TEMPERATURA -> 30.0;
+            case HUMIDADE -> 80.0;
+            case QUALIDADE_AR -> 50.0;
+        };
+        return new RegraAlerta(tipo, null, maximo, Double.NaN, 0.0, Double.NaN, 1);
+    }
+
+    /**
+     * Reads the rules from keys like:
+     * <pre>
+     * alerta.TEMPERATURA.max=30.0
+     * alerta.TEMPERATURA@PORTO_MATOSINHOS.max=28.0
+     * </pre>
+     * Location rules inherit every field they don't set from the rule of their type.
+     */
+    public static List<RegraAlerta> carregar(Configuracao config) {
+        List<RegraAlerta> regras = new ArrayList<>();
+        for (SensorTipo tipo : SensorTipo.values()) {
+            RegraAlerta base = padrao(tipo).sobrepor(config, PREFIXO + tipo.name() + ".");
+            regras.add(base);
+            for (SensorLocalizacao localizacao : SensorLocalizacao.values()) {
+                String prefixo = PREFIXO + tipo.name() + "@" + localizacao.name() + ".";
+                if (temChaves(config, prefixo)) {
+                    regras.add(base.paraLocalizacao(localizacao).sobrepor(config, prefixo));
+                }
+            }
+        }
+        return regras;
+    }
+
+    private RegraAlerta sobrepor(Configuracao config, String prefixo) {
+        return new RegraAlerta(tipo,
+                localizacao,
+                config.decimal(prefixo + "max", maximo),
+                config.decimal(prefixo + "min", minimo),
+                config.decimal(prefixo + "histerese", histerese),
+                config.decimal(prefixo + "taxa", taxaMaxima),
+                (int) Math.max(1, config.inteiro(prefixo + "amostras", amostras)));
+    }
+
+    private RegraAlerta paraLocalizacao(SensorLocalizacao novaLocalizacao) {
+        return new RegraAlerta(tipo, novaLocalizacao, maximo, minimo, histerese, taxaMaxima, amostras);
+    }
+
+    private static boolean temChaves(Configuracao config, String prefixo) {
+        for (String campo : new String[] {"max", "min", "histerese", "taxa", "amostras"}) {
+            if (config.texto(prefixo + campo, null) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s%s[max=%s, min=%s, histerese=%s, taxa=%s, amostras=%d]",
+                tipo.name(), localizacao == null ? "" : "@" + localizacao.name(),
+                maximo, minimo, histerese, taxaMaxima, amostras);
+    }
+}
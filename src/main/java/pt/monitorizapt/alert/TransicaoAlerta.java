@@ -0,0 +1,21 @@
+package pt.monitorizapt.alert;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+
+/**
+ * Event emitted only when a sensor enters or leaves the alert state.
+ * Routine readings never create one of these.
+ */
+public record TransicaoAlerta(int ordinal,
+                              String sensorId,
+                              SensorTipo tipo,
+                              SensorLocalizacao localizacao,
+                              boolean emAlerta,
+                              double valor,
+                              long timestamp) {
+
+    public String estadoTexto() {
+        return emAlerta ? "ALERTA" : "OK";
+    }
+}
@@ -1,41 +1,66 @@
 package pt.monitorizapt.app;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
 
 import javax.swing.SwingUtilities;
 
+import pt.monitorizapt.domain.SensorLocalizacao;
 import pt.monitorizapt.mqtt.MqttClientManager;
 import pt.monitorizapt.service.SensorController;
 import pt.monitorizapt.ui.MonitorizaPTFrame;
+import pt.monitorizapt.util.Configuracao;
 
 public final class MonitorizaPTApplication {
     private MonitorizaPTApplication() {
     }
 
     public static void main(String[] args) {
+        // Load settings from external file, fallback to defaults
+        Configuracao config = Configuracao.carregar(Path.of("config.properties"));
+
+        // Priority: 1. System Property (-D) -> 2. config.properties -> 3. Hardcoded Default
+        String defaultBroker = config.texto("broker.url", "tcp://broker.hivemq.com:1883");
+        String brokerUrl = System.getProperty("monitorizapt.broker", defaultBroker);
+
+        if (config.booleano("headless", false)) {
+            executarSemInterface(config, brokerUrl);
+            return;
+        }
+
         // Swing UI must be initialized on the Event Dispatch Thread to avoid concurrency issues.
         SwingUtilities.invokeLater(() -> {
-            
-            // Load settings from external file, fallback to defaults
-            Properties props = new Properties();
-            try (FileInputStream fis = new FileInputStream("config.properties")) {
-                props.load(fis);
-            } catch (IOException e) {
-                System.out.println("Config file not found. Using internal defaults.");
-            }
-
-            // Priority: 1. System Property (-D) -> 2. config.properties -> 3. Hardcoded Default
-            String defaultBroker = props.getProperty("broker.url", "tcp://broker.hivemq.com:1883");
-            String brokerUrl = System.getProperty("monitorizapt.broker", defaultBroker);
-
             // Initialize infrastructure (MQTT) and Logic (Controller) before the UI
-            MqttClientManager mqttClientManager = new MqttClientManager(brokerUrl);
-            SensorController controller = new SensorController(mqttClientManager);
-            
+            MqttClientManager mqttClientManager = new MqttClientManager(brokerUrl, config);
+            SensorController controller = new SensorController(mqttClientManager, config);
+
             MonitorizaPTFrame frame = new MonitorizaPTFrame(controller, mqttClientManager);
             frame.setVisible(true);
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Headless node (-Dmonitorizapt.headless=true): every sensor is activated and the log goes
+     * to stdout (log.consola defaults to on). Handy for running several cluster nodes side by side on one machine.
+     */
+    private static void executarSemInterface(Configuracao config, String brokerUrl) {
+        MqttClientManager mqttClientManager = new MqttClientManager(brokerUrl, config);
+        SensorController controller = new SensorController(mqttClientManager, config);
+
+        long intervalo = config.inteiro("headless.intervaloMs", 3333L);
+        for (SensorLocalizacao localizacao : SensorLocalizacao.values()) {
+            controller.ativarLocalizacao(localizacao, intervalo);
+        }
+
+        CountDownLatch fim = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            controller.shutdown();
+            fim.countDown();
+        }, "monitorizapt-shutdown"));
+        try {
+            fim.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package pt.monitorizapt.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring used to split the sensors between the cluster nodes.
+ *
+ * Every node is placed on the ring many times (virtual nodes), so the load stays balanced
+ * and, when a node joins or dies, only the sensors next to its positions change owner.
+ * The hash is computed from the bytes of the ids (not String.hashCode), so every JVM of the
+ * cluster reaches exactly the same answer.
+ */
+public final class AnelConsistente {
+    private static final int NOS_VIRTUAIS = 128;
+
+    private final List<String> membros;
+    // Sorted positions and the node owning each one (parallel arrays, binary search)
+    private final long[] posicoes;
+    private final String[] donos;
+
+    public AnelConsistente(SortedSet<String> membros) {
+        this.membros = List.copyOf(membros);
+        int total = membros.size() * NOS_VIRTUAIS;
+        long[] hashes = new long[total];
+        String[] nos = new String[total];
+        int i = 0;
+        for (String membro : membros) {
+            for (int v = 0; v < NOS_VIRTUAIS; v++) {
+                hashes[i] = hash(membro + "#" + v);
+                nos[i] = membro;
+                i++;
+            }
+        }
+        // Sort positions and owners together
+        Integer[] ordem = new Integer[total];
+        for (int k = 0; k < total; k++) {
+            ordem[k] = k;
+        }
+        Arrays.sort(ordem, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.posicoes = new long[total];
+        this.donos = new String[total];
+        for (int k = 0; k < total; k++) {
+            posicoes[k] = hashes[ordem[k]];
+            donos[k] = nos[ordem[k]];
+        }
+    }
+
+    public static AnelConsistente vazio() {
+        return new AnelConsistente(new TreeSet<>());
+    }
+
+    /**
+     * @return the node responsible for this sensor, or null when the ring is empty
+     */
+    public String dono(String sensorId) {
+        if (posicoes.length == 0) {
+            return null;
+        }
+        int indice = Arrays.binarySearch(posicoes, hash(sensorId));
+        if (indice < 0) {
+            indice = -indice - 1; // first position after the hash
+        }
+        return donos[indice == posicoes.length ? 0 : indice];
+    }
+
+    public List<String> membros() {
+        return membros;
+    }
+
+    /**
+     * FNV-1a 64 bits followed by a final avalanche mix (better spread for similar ids).
+     */
+    static long hash(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,162 @@
+package pt.monitorizapt.cluster;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import pt.monitorizapt.mqtt.MqttClientManager;
+
+/**
+ * Cluster membership over MQTT control topics.
+ *
+ * Every node publishes a heartbeat on {@code envira/pt/sensores/cluster/heartbeat/<node>} and
+ * listens to the heartbeats of the others. A node that stops beating for a few periods (or
+ * whose MQTT "last will" arrives) is removed. Whenever the member set changes, a new
+ * {@link AnelConsistente} is built and handed to the listeners, which decide which sensors
+ * this node now owns.
+ *
+ * A starting node first listens for a full timeout window and only then flags itself as
+ * "pronto" in its heartbeats. The others ignore it until then, so the previous owners keep
+ * publishing its future sensors and only release them when it is actually able to take over.
+ */
+public class CoordenadorCluster {
+    public static final String TOPICO_HEARTBEAT = "envira/pt/sensores/cluster/heartbeat/";
+    private static final String ESTADO_ATIVO = "ATIVO";
+    private static final String ESTADO_SAIDA = "SAIDA";
+    // Missed heartbeats before a node is considered dead
+    private static final int HEARTBEATS_PERDIDOS = 3;
+    private static final Gson GSON = new Gson();
+
+    private final MqttClientManager mqttClientManager;
+    private final String noId;
+    private final long heartbeatMillis;
+
+    // Node id -> last heartbeat seen (local clock)
+    private final Map<String, Long> membros = new ConcurrentHashMap<>();
+    private final List<Consumer<AnelConsistente>> anelListeners = new CopyOnWriteArrayList<>();
+    private volatile AnelConsistente anel = AnelConsistente.vazio();
+    // Membership is only trusted after listening for a full timeout window while connected,
+    // otherwise a starting node would briefly think it is alone and duplicate publishes
+    private volatile long prontoEm = Long.MAX_VALUE;
+
+    public CoordenadorCluster(MqttClientManager mqttClientManager, String noId, long heartbeatMillis) {
+        this.mqttClientManager = mqttClientManager;
+        this.noId = noId;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Subscribes to the control topics and starts beating. Must be called before the MQTT
+     * connection is opened so the "last will" is registered with the broker.
+     */
+    public void iniciar(ScheduledExecutorService agendador) {
+        mqttClientManager.setWill(TOPICO_HEARTBEAT + noId, mensagem(ESTADO_SAIDA));
+        mqttClientManager.subscribe(TOPICO_HEARTBEAT + "+", this::receberHeartbeat);
+        mqttClientManager.registerConnectionListener(this::conexaoAlterada);
+        agendador.scheduleAtFixedRate(this::batimento, 0L, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Clean exit: the other nodes take over our sensors right away instead of waiting for the timeout.
+     */
+    public void sair() {
+        mqttClientManager.publish(TOPICO_HEARTBEAT + noId, mensagem(ESTADO_SAIDA));
+    }
+
+    public void registarAnelListener(Consumer<AnelConsistente> listener) {
+        anelListeners.add(listener);
+    }
+
+    public String getNoId() {
+        return noId;
+    }
+
+    public long getHeartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    public AnelConsistente getAnel() {
+        return anel;
+    }
+
+    private void batimento() {
+        long agora = System.currentTimeMillis();
+        membros.put(noId, agora);
+        mqttClientManager.publish(TOPICO_HEARTBEAT + noId, mensagem(ESTADO_ATIVO));
+
+        long limite = agora - HEARTBEATS_PERDIDOS * heartbeatMillis;
+        membros.entrySet().removeIf(entrada -> !entrada.getKey().equals(noId) && entrada.getValue() < limite);
+        atualizarAnel();
+    }
+
+    private void receberHeartbeat(String topico, String payload) {
+        String outro = topico.substring(topico.lastIndexOf('/') + 1);
+        if (outro.equals(noId)) {
+            return;
+        }
+        try {
+            JsonObject objeto = GSON.fromJson(payload, JsonObject.class);
+            if (objeto != null && objeto.has("estado") && ESTADO_SAIDA.equals(objeto.get("estado").getAsString())) {
+                membros.remove(outro);
+            } else if (objeto == null || !objeto.has("pronto") || objeto.get("pronto").getAsBoolean()) {
+                membros.put(outro, System.currentTimeMillis());
+            } else {
+                return; // still warming up: not a member yet
+            }
+        } catch (JsonParseException | IllegalStateException ignored) {
+            return;
+        }
+        atualizarAnel();
+    }
+
+    private void conexaoAlterada(boolean conectado) {
+        if (conectado) {
+            if (prontoEm == Long.MAX_VALUE) {
+                prontoEm = System.currentTimeMillis() + HEARTBEATS_PERDIDOS * heartbeatMillis;
+            }
+            return;
+        }
+        // Cut off from the broker: the others will take over, so release everything now
+        synchronized (this) {
+            prontoEm = Long.MAX_VALUE;
+            membros.keySet().removeIf(membro -> !membro.equals(noId));
+            anel = AnelConsistente.vazio();
+        }
+        anelListeners.forEach(listener -> listener.accept(AnelConsistente.vazio()));
+    }
+
+    /**
+     * Rebuilds the ring only when the member set actually changed.
+     */
+    private synchronized void atualizarAnel() {
+        if (System.currentTimeMillis() < prontoEm) {
+            return;
+        }
+        SortedSet<String> atuais = new TreeSet<>(membros.keySet());
+        if (atuais.equals(new TreeSet<>(anel.membros()))) {
+            return;
+        }
+        anel = new AnelConsistente(atuais);
+        AnelConsistente novo = anel;
+        anelListeners.forEach(listener -> listener.accept(novo));
+    }
+
+    private String mensagem(String estado) {
+        JsonObject objeto = new JsonObject();
+        objeto.addProperty("no", noId);
+        objeto.addProperty("estado", estado);
+        objeto.addProperty("pronto", System.currentTimeMillis() >= prontoEm);
+        objeto.addProperty("timestamp", System.currentTimeMillis());
+        return GSON.toJson(objeto);
+    }
+}
@@ -0,0 +1,122 @@
+package pt.monitorizapt.diagnostico;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Prints the per-stage latency breakdown of a Flight Recorder recording made with the
+ * MonitorizaPT events (count, mean, p50, p99, max and mean size of each stage).
+ *
+ * Record: {@code java -XX:StartFlightRecording=filename=monitorizapt.jfr,duration=10m ...}
+ * (or {@code jcmd <pid> JFR.start}); the events are enabled by default.
+ * Analyse: {@code mvn -q exec:java -Dexec.mainClass=pt.monitorizapt.diagnostico.AnaliseJfr
+ * -Dexec.args="monitorizapt.jfr [--por-sensor]"}
+ */
+public final class AnaliseJfr {
+    private static final String PREFIXO = "pt.monitorizapt.";
+    // Pipeline order, so the table reads top to bottom like a reading's journey
+    private static final List<String> ETAPAS = List.of("Geracao", "Payload", "Publicacao", "Notificacao", "Csv", "Tabela");
+
+    private AnaliseJfr() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Uso: AnaliseJfr <gravacao.jfr> [--por-sensor]");
+            System.exit(2);
+        }
+        boolean porSensor = args.length > 1 && "--por-sensor".equals(args[1]);
+
+        Map<String, Etapa> etapas = novasEtapas();
+        Map<String, Map<String, Etapa>> sensores = new TreeMap<>();
+        long eventos = 0;
+        try (RecordingFile gravacao = new RecordingFile(Path.of(args[0]))) {
+            while (gravacao.hasMoreEvents()) {
+                RecordedEvent evento = gravacao.readEvent();
+                String nome = evento.getEventType().getName();
+                if (!nome.startsWith(PREFIXO)) {
+                    continue;
+                }
+                String etapa = nome.substring(PREFIXO.length());
+                long nanos = evento.getDuration().toNanos();
+                long bytes = evento.hasField("bytes") ? evento.getLong("bytes") : 0L;
+                etapas.computeIfAbsent(etapa, n -> new Etapa()).adicionar(nanos, bytes);
+                if (porSensor && evento.hasField("sensorId") && evento.getString("sensorId") != null) {
+                    sensores.computeIfAbsent(evento.getString("sensorId"), s -> novasEtapas())
+                            .computeIfAbsent(etapa, n -> new Etapa()).adicionar(nanos, bytes);
+                }
+                eventos++;
+            }
+        }
+        if (eventos == 0) {
+            System.out.println("Nenhum evento MonitorizaPT na gravação.");
+            return;
+        }
+
+        System.out.printf("%d eventos em %s%n%n", eventos, args[0]);
+        imprimir("Todas as leituras", etapas);
+        sensores.forEach((sensor, porEtapa) -> imprimir(sensor, porEtapa));
+    }
+
+    private static Map<String, Etapa> novasEtapas() {
+        Map<String, Etapa> etapas = new LinkedHashMap<>();
+        ETAPAS.forEach(nome -> etapas.put(nome, new Etapa()));
+        return etapas;
+    }
+
+    private static void imprimir(String titulo, Map<String, Etapa> etapas) {
+        System.out.println(titulo);
+        System.out.printf("  %-12s %9s %10s %10s %10s %10s %8s%n", "etapa", "eventos", "media us", "p50 us", "p99 us", "max us", "bytes");
+        double totalMedio = 0.0;
+        for (Map.Entry<String, Etapa> entrada : etapas.entrySet()) {
+            Etapa etapa = entrada.getValue();
+            if (etapa.quantos == 0) {
+                continue;
+            }
+            long[] ordenadas = Arrays.copyOf(etapa.duracoes, etapa.quantos);
+            Arrays.sort(ordenadas);
+            double media = etapa.soma / (double) etapa.quantos;
+            if (!"Tabela".equals(entrada.getKey())) {
+                totalMedio += media;
+            }
+            System.out.printf("  %-12s %9d %10.1f %10.1f %10.1f %10.1f %8.0f%n", entrada.getKey(), etapa.quantos,
+                    media / 1e3, percentil(ordenadas, 0.50) / 1e3, percentil(ordenadas, 0.99) / 1e3,
+                    ordenadas[ordenadas.length - 1] / 1e3, etapa.bytes / (double) etapa.quantos);
+        }
+        // CSV runs inside the notification stage, so it is not added again
+        Etapa csv = etapas.get("Csv");
+        if (csv != null && csv.quantos > 0) {
+            totalMedio -= csv.soma / (double) csv.quantos;
+        }
+        System.out.printf("  Total medio por leitura (sensor thread): %.1f us%n%n", totalMedio / 1e3);
+    }
+
+    private static long percentil(long[] ordenadas, double p) {
+        int indice = (int) Math.ceil(p * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, Math.min(indice, ordenadas.length - 1))];
+    }
+
+    private static final class Etapa {
+        private long[] duracoes = new long[1024];
+        private int quantos;
+        private long soma;
+        private long bytes;
+
+        void adicionar(long nanos, long tamanho) {
+            if (quantos == duracoes.length) {
+                duracoes = Arrays.copyOf(duracoes, quantos * 2);
+            }
+            duracoes[quantos++] = nanos;
+            soma += nanos;
+            bytes += tamanho;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Pipeline stage: row appended and flushed to the CSV log.
+ */
+@Name("pt.monitorizapt.Csv")
+@Label("Escrita CSV")
+@Description("Row appended and flushed to the CSV log")
+public class EventoCsv extends EventoPipeline {
+}
@@ -0,0 +1,14 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Pipeline stage: reading generated by the sensor (values, alert rules, history).
+ */
+@Name("pt.monitorizapt.Geracao")
+@Label("Geração da leitura")
+@Description("Reading generated by the sensor (values, alert rules, history)")
+public class EventoGeracao extends EventoPipeline {
+}
@@ -0,0 +1,14 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Pipeline stage: the reading listeners (latest-value table, rollups, observers and CSV).
+ */
+@Name("pt.monitorizapt.Notificacao")
+@Label("Notificação")
+@Description("Reading listeners: latest-value table, rollups, observers and CSV")
+public class EventoNotificacao extends EventoPipeline {
+}
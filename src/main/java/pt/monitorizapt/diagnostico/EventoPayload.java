@@ -0,0 +1,14 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Pipeline stage: jSON payload built and hashed.
+ */
+@Name("pt.monitorizapt.Payload")
+@Label("Payload JSON")
+@Description("JSON payload built and hashed")
+public class EventoPayload extends EventoPipeline {
+}
@@ -0,0 +1,30 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the Flight Recorder events emitted along the journey of a reading (generation,
+ * payload, MQTT publish, listeners, CSV, table refresh).
+ *
+ * Usage pattern at each stage: {@code begin()}, do the work, then fill the fields only if
+ * {@code shouldCommit()}. With no recording running the event object never escapes and the
+ * JIT removes it, so the instrumentation can stay in production builds.
+ * {@link AnaliseJfr} turns a recording into per-stage latency tables.
+ */
+@Category({"MonitorizaPT", "Pipeline"})
+@StackTrace(false)
+public abstract class EventoPipeline extends Event {
+    @Label("Sensor")
+    public String sensorId;
+
+    @Label("Tipo")
+    public String tipo;
+
+    @Label("Tamanho")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,14 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Pipeline stage: payload handed to the MQTT client (QoS 0).
+ */
+@Name("pt.monitorizapt.Publicacao")
+@Label("Publicação MQTT")
+@Description("Payload handed to the MQTT client (QoS 0)")
+public class EventoPublicacao extends EventoPipeline {
+}
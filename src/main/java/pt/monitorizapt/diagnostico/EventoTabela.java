@@ -0,0 +1,21 @@
+package pt.monitorizapt.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One refresh of the Swing table on the EDT (readings are coalesced, so this is not per reading).
+ */
+@Name("pt.monitorizapt.Tabela")
+@Label("Atualização da tabela")
+@Description("Swing table refresh on the EDT")
+@Category({"MonitorizaPT", "Pipeline"})
+@StackTrace(false)
+public class EventoTabela extends Event {
+    @Label("Linhas atualizadas")
+    public int linhasAtualizadas;
+}
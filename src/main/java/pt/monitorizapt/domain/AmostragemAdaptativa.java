@@ -0,0 +1,102 @@
+package pt.monitorizapt.domain;
+
+import java.util.Locale;
+
+import pt.monitorizapt.util.Configuracao;
+
+/**
+ * Computes the next sampling interval of a sensor from the behaviour of its signal.
+ *
+ * Keeps an exponentially weighted running mean/variance (O(1) per reading, no history needed):
+ * the interval chosen by the user is the baseline, kept while the signal moves by about half
+ * its type scale. A more volatile signal, or a value close to an alert limit, shortens it down
+ * to the type minimum; a flatter one stretches it up to the type maximum, which is where the
+ * fleet saves messages.
+ *
+ * Bounds and scale come from config.properties, keyed by the type name in lower case (unlike
+ * the upper-case {@code alerta.TIPO.*} rules): {@code amostragem.<tipo>.minimoMs},
+ * {@code .maximoMs} and {@code .escala}, e.g. {@code amostragem.qualidade_ar.minimoMs}.
+ *
+ * Only the sensor thread writes, so no synchronization is needed (the volatility is read
+ * back through a volatile field by the UI).
+ */
+public class AmostragemAdaptativa {
+    // Weight of the newest reading in the running statistics
+    private static final double ALFA = 0.2;
+    // Fraction of the type scale considered "close" to an alert limit
+    private static final double MARGEM_LIMITE = 0.1;
+    // Volatility sampled at exactly the user's interval (below it the interval grows, above it shrinks)
+    private static final double VOLATILIDADE_BASE = 0.5;
+
+    private final long intervaloMinimo;
+    private final long intervaloMaximo;
+    // Typical variation of the signal: a standard deviation this large means "very volatile"
+    private final double escala;
+
+    private double media;
+    private double variancia;
+    private boolean iniciado;
+    // 0 = flat signal, 1 = sample as fast as allowed. Starts at 1: no statistics yet
+    private volatile double volatilidade = 1.0;
+
+    public AmostragemAdaptativa(SensorTipo tipo, Configuracao configuracao) {
+        String prefixo = "amostragem." + tipo.name().toLowerCase(Locale.ROOT) + ".";
+        this.intervaloMinimo = Math.max(1000L, configuracao.inteiro(prefixo + "minimoMs", 1000L));
+        this.intervaloMaximo = Math.max(intervaloMinimo, configuracao.inteiro(prefixo + "maximoMs", switch (tipo) {
+            case TEMPERATURA, HUMIDADE -> 30_000L;
+            case QUALIDADE_AR -> 15_000L;
+        }));
+        this.escala = configuracao.decimal(prefixo + "escala", switch (tipo) {
+            case TEMPERATURA -> 8.0;
+            case HUMIDADE -> 15.0;
+            case QUALIDADE_AR -> 20.0;
+        });
+    }
+
+    /**
+     * Updates the running statistics with a new reading.
+     *
+     * @param distanciaLimite absolute distance from the value to the nearest alert limit
+     *                        (Infinity when the sensor has no limits)
+     */
+    public void registar(double valor, double distanciaLimite) {
+        if (!iniciado) {
+            media = valor;
+            variancia = 0.0;
+            iniciado = true;
+        } else {
+            // Incremental EWMA variance (West, 1979)
+            double diferenca = valor - media;
+            media += ALFA * diferenca;
+            variancia = (1.0 - ALFA) * (variancia + ALFA * diferenca * diferenca);
+        }
+
+        double nova = Math.min(1.0, Math.sqrt(variancia) / escala);
+        if (distanciaLimite < escala * MARGEM_LIMITE) {
+            nova = 1.0; // interesting event: sample as fast as allowed
+        }
+        volatilidade = nova;
+    }
+
+    /**
+     * Piecewise linear in the volatility: maximum when flat, the user's interval at
+     * {@link #VOLATILIDADE_BASE}, minimum when as volatile as the type scale.
+     *
+     * @param intervaloPedido the interval chosen by the user, used as the baseline
+     * @return the interval to wait before the next reading
+     */
+    public long intervalo(long intervaloPedido) {
+        long base = Math.max(intervaloMinimo, Math.min(intervaloMaximo, intervaloPedido));
+        double v = volatilidade;
+        if (v >= VOLATILIDADE_BASE) {
+            double fator = (v - VOLATILIDADE_BASE) / (1.0 - VOLATILIDADE_BASE);
+            return base - Math.round(fator * (base - intervaloMinimo));
+        }
+        double fator = (VOLATILIDADE_BASE - v) / VOLATILIDADE_BASE;
+        return base + Math.round(fator * (intervaloMaximo - base));
+    }
+
+    public double desvioPadrao() {
+        return Math.sqrt(variancia);
+    }
+}
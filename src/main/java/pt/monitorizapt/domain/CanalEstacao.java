@@ -0,0 +1,165 @@
+package pt.monitorizapt.domain;
+
+import pt.monitorizapt.alert.MotorAlertas;
+
+/**
+ * One extra metric of a multi-metric station, seen as a sensor of its own.
+ *
+ * The station samples it in the same tick as its main metric and publishes everything in one
+ * payload; this view gives the metric its own ID, slot in the fleet-wide tables (alert state,
+ * last value, rollups), history and alert rules, so the UI, the CSV log and the listeners
+ * treat it like any single-metric sensor. Control (activation, interval, commands) is the
+ * station's: those calls are forwarded to it.
+ */
+public final class CanalEstacao implements Sensor {
+    private final SensorAbstrato estacao;
+    private final SensorTipo tipo;
+    private final String id;
+    private final int ordinal;
+    private final MotorAlertas motorAlertas;
+    private final HistoricoLeituras historico;
+    // Written by the station thread, read by whoever looks at the view
+    private volatile DadosSensor ultima;
+
+    public CanalEstacao(SensorAbstrato estacao, SensorTipo tipo, MotorAlertas motorAlertas, HistoricoLeituras historico) {
+        this.estacao = estacao;
+        this.tipo = tipo;
+        this.id = estacao.getLocalizacao().sensorId(tipo);
+        this.motorAlertas = motorAlertas;
+        this.ordinal = motorAlertas.registar(id, tipo, estacao.getLocalizacao());
+        this.historico = historico;
+    }
+
+    /**
+     * Takes this metric's reading for the station tick (station thread only).
+     */
+    public DadosSensor amostrar(double valor, long timestamp) {
+        boolean alerta = motorAlertas.avaliar(ordinal, valor, timestamp);
+        DadosSensor leitura = new DadosSensor(valor, tipo.unidadePadrao(), alerta, timestamp);
+        historico.registar(timestamp, valor);
+        ultima = leitura;
+        return leitura;
+    }
+
+    /**
+     * Reading of the last station tick (null before the first one).
+     */
+    public DadosSensor ultimaLeitura() {
+        return ultima;
+    }
+
+    public SensorAbstrato getEstacao() {
+        return estacao;
+    }
+
+    @Override
+    public String getIDUnico() {
+        return id;
+    }
+
+    @Override
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * The metric is sampled by the station tick; this returns the last reading, it does not
+     * take a new one.
+     */
+    @Override
+    public DadosSensor lerDados() {
+        return ultima;
+    }
+
+    @Override
+    public HistoricoLeituras getHistorico() {
+        return historico;
+    }
+
+    @Override
+    public SensorTipo getTipo() {
+        return tipo;
+    }
+
+    // --- Forwarded to the station ---
+
+    @Override
+    public void publicarMQTT(String json) {
+        estacao.publicarMQTT(json);
+    }
+
+    @Override
+    public void processarComando(String comandoJSON) {
+        estacao.processarComando(comandoJSON);
+    }
+
+    @Override
+    public String getOwner() {
+        return estacao.getOwner();
+    }
+
+    @Override
+    public SensorLocalizacao getLocalizacao() {
+        return estacao.getLocalizacao();
+    }
+
+    @Override
+    public boolean isAtivo() {
+        return estacao.isAtivo();
+    }
+
+    @Override
+    public void ativar() {
+        estacao.ativar();
+    }
+
+    @Override
+    public void desativar() {
+        estacao.desativar();
+    }
+
+    @Override
+    public long getIntervaloMillis() {
+        return estacao.getIntervaloMillis();
+    }
+
+    @Override
+    public void setIntervaloMillis(long intervaloMillis) {
+        estacao.setIntervaloMillis(intervaloMillis);
+    }
+
+    @Override
+    public boolean isAdaptativo() {
+        return estacao.isAdaptativo();
+    }
+
+    @Override
+    public void setAdaptativo(boolean adaptativo) {
+        estacao.setAdaptativo(adaptativo);
+    }
+
+    @Override
+    public long getIntervaloEfetivo() {
+        return estacao.getIntervaloEfetivo();
+    }
+
+    @Override
+    public void registrarListener(SensorUpdateListener listener) {
+        estacao.registrarListener(listener);
+    }
+
+    @Override
+    public void removerListener(SensorUpdateListener listener) {
+        estacao.removerListener(listener);
+    }
+
+    @Override
+    public void iniciar() {
+        estacao.iniciar();
+    }
+
+    @Override
+    public void desligar() {
+        estacao.desligar();
+    }
+}
@@ -0,0 +1,201 @@
+package pt.monitorizapt.domain;
+
+/**
+ * A remote command, e.g. {@code {"acao":"ATIVAR","intervalo":5000}}.
+ *
+ * {@link #ler} is a single-pass scanner written for this small shape only: it looks for the
+ * {@code acao} and {@code intervalo} keys at the top level, matches the action against the
+ * known names without building a string, and skips any other scalar member. Anything else
+ * (nested objects or arrays, broken JSON) is rejected, so a malformed or oversized message
+ * costs at most one scan and never builds a tree.
+ *
+ * @param intervalo requested interval in milliseconds, or {@link #SEM_INTERVALO} when absent or
+ *                  not a usable number
+ */
+public record ComandoSensor(Acao acao, long intervalo) {
+    public static final long SEM_INTERVALO = -1L;
+    // Commands are a few dozen bytes; longer messages are not commands
+    private static final int TAMANHO_MAXIMO = 512;
+
+    public enum Acao {
+        ATIVAR, DESATIVAR, ADAPTATIVO, FIXO,
+        // Present but not one of the above (the interval is still applied)
+        OUTRA
+    }
+
+    /**
+     * @return the command, or null when the text is not a command object with an {@code acao}
+     */
+    public static ComandoSensor ler(String json) {
+        if (json == null || json.length() > TAMANHO_MAXIMO) {
+            return null;
+        }
+        Leitor leitor = new Leitor(json);
+        return leitor.objeto() ? new ComandoSensor(leitor.acao, leitor.intervalo) : null;
+    }
+
+    private static final class Leitor {
+        private final String texto;
+        private int pos;
+        private Acao acao;
+        private long intervalo = SEM_INTERVALO;
+
+        Leitor(String texto) {
+            this.texto = texto;
+        }
+
+        // { "chave" : valor (, "chave" : valor)* }
+        boolean objeto() {
+            if (!consumir('{')) {
+                return false;
+            }
+            if (consumir('}')) {
+                return false;
+            }
+            do {
+                espacos();
+                int inicioChave = pos + 1;
+                int fimChave = fimString();
+                if (fimChave < 0 || !consumir(':')) {
+                    return false;
+                }
+                if (!membro(inicioChave, fimChave)) {
+                    return false;
+                }
+            } while (consumir(','));
+            return consumir('}') && fimTexto() && acao != null;
+        }
+
+        private boolean membro(int inicioChave, int fimChave) {
+            espacos();
+            if (igual(inicioChave, fimChave, "acao")) {
+                if (pos >= texto.length() || texto.charAt(pos) == '"') {
+                    int inicio = pos + 1;
+                    int fim = fimString();
+                    acao = fim < 0 ? null : acao(inicio, fim);
+                    return fim >= 0;
+                }
+                return false;
+            }
+            if (igual(inicioChave, fimChave, "intervalo")) {
+                // Accepted as a number or as a numeric string, like Gson's getAsLong
+                int inicioValor = pos;
+                boolean aspas = pos < texto.length() && texto.charAt(pos) == '"';
+                if (aspas) {
+                    pos++;
+                }
+                long valor = inteiro();
+                if (valor >= 0 && (!aspas || consumirImediato('"')) && fimValor()) {
+                    intervalo = valor;
+                    return true;
+                }
+                // Negative, exponent, text...: the action still counts, only the interval is ignored
+                pos = inicioValor;
+                intervalo = SEM_INTERVALO;
+                return saltarEscalar();
+            }
+            return saltarEscalar();
+        }
+
+        private Acao acao(int inicio, int fim) {
+            for (Acao candidata : Acao.values()) {
+                if (candidata != Acao.OUTRA && igual(inicio, fim, candidata.name())) {
+                    return candidata;
+                }
+            }
+            return Acao.OUTRA;
+        }
+
+        // Case-insensitive, like the toUpperCase the commands always went through
+        private boolean igual(int inicio, int fim, String nome) {
+            return fim - inicio == nome.length() && texto.regionMatches(true, inicio, nome, 0, nome.length());
+        }
+
+        /**
+         * Positioned on an opening quote: moves past the closing one.
+         *
+         * @return index of the closing quote, or -1
+         */
+        private int fimString() {
+            if (pos >= texto.length() || texto.charAt(pos) != '"') {
+                return -1;
+            }
+            for (int i = pos + 1; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    pos = i + 1;
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Non-negative integer; a fraction is accepted and truncated
+        private long inteiro() {
+            int inicio = pos;
+            long valor = 0L;
+            while (pos < texto.length() && Character.isDigit(texto.charAt(pos)) && pos - inicio < 18) {
+                valor = valor * 10 + (texto.charAt(pos++) - '0');
+            }
+            if (pos == inicio) {
+                return -1L;
+            }
+            if (pos < texto.length() && texto.charAt(pos) == '.') {
+                pos++;
+                while (pos < texto.length() && Character.isDigit(texto.charAt(pos))) {
+                    pos++;
+                }
+            }
+            return valor;
+        }
+
+        // Strings, numbers, true/false/null; nested values are not part of a command
+        private boolean saltarEscalar() {
+            if (pos >= texto.length()) {
+                return false;
+            }
+            char c = texto.charAt(pos);
+            if (c == '"') {
+                return fimString() >= 0;
+            }
+            if (c == '{' || c == '[') {
+                return false;
+            }
+            int inicio = pos;
+            while (pos < texto.length() && ",} \t\r\n".indexOf(texto.charAt(pos)) < 0) {
+                pos++;
+            }
+            return pos > inicio;
+        }
+
+        private boolean fimValor() {
+            return pos >= texto.length() || ",} \t\r\n".indexOf(texto.charAt(pos)) >= 0;
+        }
+
+        private boolean consumir(char esperado) {
+            espacos();
+            return consumirImediato(esperado);
+        }
+
+        private boolean consumirImediato(char esperado) {
+            if (pos < texto.length() && texto.charAt(pos) == esperado) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean fimTexto() {
+            espacos();
+            return pos == texto.length();
+        }
+
+        private void espacos() {
+            while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package pt.monitorizapt.domain;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size history of the most recent readings of one sensor.
+ *
+ * Values live in primitive ring buffers (a long for the timestamp and a double for the value),
+ * so memory per sensor is exactly {@code capacidade * 16} bytes and recording a reading never
+ * allocates. The heap version uses {@code long[]}/{@code double[]}; the off-heap version uses a
+ * direct buffer, which keeps big fleets out of the garbage collector's way.
+ *
+ * Concurrency: one writer (the sensor thread) and any number of readers, without locks.
+ * The writer publishes a sequence number after each write; readers copy what they need and
+ * then discard the entries the writer may have overwritten meanwhile.
+ */
+public abstract class HistoricoLeituras {
+    private final int capacidade;
+    private final int mascara;
+    // Total number of readings ever written (the next write goes to sequencia & mascara)
+    private final AtomicLong sequencia = new AtomicLong();
+
+    private HistoricoLeituras(int capacidade) {
+        this.capacidade = capacidade;
+        this.mascara = capacidade - 1;
+    }
+
+    /**
+     * @param capacidade rounded up to the next power of two so the index is a simple bit mask
+     * @param foraHeap   true to keep the buffers outside the Java heap
+     */
+    public static HistoricoLeituras criar(int capacidade, boolean foraHeap) {
+        int potencia = capacidade <= 2 ? 2 : Integer.highestOneBit(capacidade - 1) << 1;
+        return foraHeap ? new ForaHeap(potencia) : new EmHeap(potencia);
+    }
+
+    public final int capacidade() {
+        return capacidade;
+    }
+
+    /**
+     * Number of readings currently available (never more than the capacity).
+     */
+    public final int tamanho() {
+        return (int) Math.min(sequencia.get(), capacidade);
+    }
+
+    public final long totalEscritas() {
+        return sequencia.get();
+    }
+
+    /**
+     * Single writer only: must be called from the sensor thread.
+     */
+    public final void registar(long timestamp, double valor) {
+        long seq = sequencia.get();
+        // The overwrite of the slot must not become visible before the previous lazySet,
+        // otherwise a reader could keep an entry it believes is still intact
+        VarHandle.storeStoreFence();
+        escrever((int) (seq & mascara), timestamp, valor);
+        // lazySet = release store: the slot is visible before the new sequence
+        sequencia.lazySet(seq + 1);
+    }
+
+    /**
+     * Copies the most recent readings, oldest first, into the caller's arrays.
+     * Reusing the arrays between calls keeps the readers allocation-free too.
+     *
+     * @return how many entries were copied
+     */
+    public final int copiarRecentes(long[] timestamps, double[] valores) {
+        int maximo = Math.min(Math.min(timestamps.length, valores.length), capacidade);
+        long fim = sequencia.get();
+        long inicio = Math.max(0L, fim - maximo);
+        int n = (int) (fim - inicio);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) ((inicio + i) & mascara);
+            timestamps[i] = lerTimestamp(slot);
+            valores[i] = lerValor(slot);
+        }
+        VarHandle.acquireFence();
+        // Anything older than (current sequence - capacity + 1) may have been overwritten while copying
+        long seguro = sequencia.get() + 1 - capacidade;
+        int descartar = (int) Math.max(0L, Math.min(n, seguro - inicio));
+        if (descartar > 0) {
+            System.arraycopy(timestamps, descartar, timestamps, 0, n - descartar);
+            System.arraycopy(valores, descartar, valores, 0, n - descartar);
+            n -= descartar;
+        }
+        return n;
+    }
+
+    /**
+     * Copies the readings from sequence number {@code desde} onwards (at most the array
+     * length, stopping at the current end). Lets a reader that already holds the older part
+     * fetch only what is new.
+     *
+     * @return how many entries were copied, or -1 when {@code desde} was already overwritten
+     */
+    public final int copiarDesde(long desde, long[] timestamps, double[] valores) {
+        long fim = Math.min(sequencia.get(), desde + Math.min(timestamps.length, valores.length));
+        int n = (int) Math.max(0L, fim - desde);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) ((desde + i) & mascara);
+            timestamps[i] = lerTimestamp(slot);
+            valores[i] = lerValor(slot);
+        }
+        VarHandle.acquireFence();
+        // Same check as copiarRecentes, but here losing the first entry invalidates the copy
+        return desde < sequencia.get() + 1 - capacidade ? -1 : n;
+    }
+
+    protected abstract void escrever(int slot, long timestamp, double valor);
+
+    protected abstract long lerTimestamp(int slot);
+
+    protected abstract double lerValor(int slot);
+
+    private static final class EmHeap extends HistoricoLeituras {
+        private final long[] timestamps;
+        private final double[] valores;
+
+        private EmHeap(int capacidade) {
+            super(capacidade);
+            this.timestamps = new long[capacidade];
+            this.valores = new double[capacidade];
+        }
+
+        @Override
+        protected void escrever(int slot, long timestamp, double valor) {
+            timestamps[slot] = timestamp;
+            valores[slot] = valor;
+        }
+
+        @Override
+        protected long lerTimestamp(int slot) {
+            return timestamps[slot];
+        }
+
+        @Override
+        protected double lerValor(int slot) {
+            return valores[slot];
+        }
+    }
+
+    private static final class ForaHeap extends HistoricoLeituras {
+        private static final int BYTES_POR_SLOT = Long.BYTES + Double.BYTES;
+        private final ByteBuffer buffer;
+
+        private ForaHeap(int capacidade) {
+            super(capacidade);
+            this.buffer = ByteBuffer.allocateDirect(capacidade * BYTES_POR_SLOT).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        protected void escrever(int slot, long timestamp, double valor) {
+            int base = slot * BYTES_POR_SLOT;
+            buffer.putLong(base, timestamp);
+            buffer.putDouble(base + Long.BYTES, valor);
+        }
+
+        @Override
+        protected long lerTimestamp(int slot) {
+            return buffer.getLong(slot * BYTES_POR_SLOT);
+        }
+
+        @Override
+        protected double lerValor(int slot) {
+            return buffer.getDouble(slot * BYTES_POR_SLOT + Long.BYTES);
+        }
+    }
+}
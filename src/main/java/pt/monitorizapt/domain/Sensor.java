@@ -6,8 +6,14 @@ package pt.monitorizapt.domain;
 public interface Sensor {
     String getIDUnico();
 
+    // Index of the sensor in the fleet-wide tables (0..N-1)
+    int getOrdinal();
+
     DadosSensor lerDados();
 
+    // Recent readings (lock-free snapshots for charts and trends)
+    HistoricoLeituras getHistorico();
+
     void publicarMQTT(String json);
 
     // Handles remote commands (e.g. "ATIVAR", "DESATIVAR")
@@ -29,6 +35,13 @@ public interface Sensor {
 
     void setIntervaloMillis(long intervaloMillis);
 
+    // Adaptive sampling: interval driven by signal volatility (within per-type bounds)
+    boolean isAdaptativo();
+
+    void setAdaptativo(boolean adaptativo);
+
+    long getIntervaloEfetivo();
+
     // Observer pattern: allows UI to react to new data
     void registrarListener(SensorUpdateListener listener);
 
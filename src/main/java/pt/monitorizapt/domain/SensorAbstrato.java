@@ -1,15 +1,19 @@
 package pt.monitorizapt.domain;
 
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-
+import pt.monitorizapt.alert.MotorAlertas;
+import pt.monitorizapt.diagnostico.EventoGeracao;
+import pt.monitorizapt.diagnostico.EventoNotificacao;
+import pt.monitorizapt.diagnostico.EventoPayload;
+import pt.monitorizapt.diagnostico.EventoPipeline;
+import pt.monitorizapt.diagnostico.EventoPublicacao;
 import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.util.Configuracao;
 import pt.monitorizapt.util.JsonPayloadBuilder;
 
 /**
@@ -19,12 +23,16 @@ import pt.monitorizapt.util.JsonPayloadBuilder;
 public abstract class SensorAbstrato implements Sensor, Runnable {
     private static final long INTERVALO_PADRAO = 3333L;
     private static final String OWNER_IDENTIFICADOR = "Rodrigo_Martins_a22508678";
-    private static final Gson GSON = new Gson();
 
     private final SensorTipo tipo;
     private final SensorLocalizacao localizacaoFixa;
     private final JsonPayloadBuilder payloadBuilder;
     private final MqttClientManager mqttClientManager;
+    private final MotorAlertas motorAlertas;
+    // Position of this sensor in the fleet-wide tables (alert engine, ...)
+    private final int ordinal;
+    // Recent readings kept in primitive ring buffers (written only by the worker thread)
+    private final HistoricoLeituras historico;
     
     // Thread-safe list for UI listeners
     private final List<SensorUpdateListener> listeners = new CopyOnWriteArrayList<>();
@@ -34,59 +42,101 @@ public abstract class SensorAbstrato implements Sensor, Runnable {
     // 'volatile' ensures visibility of changes across different threads immediately
     private volatile boolean ativo;
     private volatile long intervaloMillis = INTERVALO_PADRAO;
-    private volatile DadosSensor ultimaLeitura;
-    private Thread worker;
+    // Adaptive mode: the interval follows the signal volatility instead of intervaloMillis
+    private volatile boolean adaptativo;
+    // Cluster mode: only the node that owns the sensor publishes its readings
+    private volatile boolean posse = true;
+    private final AmostragemAdaptativa amostragem;
+    private volatile Thread worker;
+    // Set by acordar() to end the current wait early
+    private volatile boolean despertado;
 
     protected SensorAbstrato(SensorTipo tipo,
                              SensorLocalizacao localizacaoFixa,
                              JsonPayloadBuilder payloadBuilder,
-                             MqttClientManager mqttClientManager) {
+                             MqttClientManager mqttClientManager,
+                             MotorAlertas motorAlertas,
+                             Configuracao configuracao) {
         this.tipo = tipo;
         this.localizacaoFixa = localizacaoFixa;
         this.payloadBuilder = payloadBuilder;
         this.mqttClientManager = mqttClientManager;
+        this.motorAlertas = motorAlertas;
+        this.ordinal = motorAlertas.registar(getIDUnico(), tipo, localizacaoFixa);
+        this.amostragem = new AmostragemAdaptativa(tipo, configuracao);
+        // History size per sensor (historico.capacidade / historico.foraHeap in config.properties)
+        this.historico = HistoricoLeituras.criar((int) configuracao.inteiro("historico.capacidade", 1024L),
+                configuracao.booleano("historico.foraHeap", false));
     }
 
     protected abstract DadosSensor gerarDadosEspecificos();
 
+    /**
+     * Subclasses call this instead of hard-coding thresholds.
+     * The rules (limits, hysteresis, rate of change...) come from the alert engine.
+     */
+    protected final boolean avaliarAlerta(double valor, long timestamp) {
+        return motorAlertas.avaliar(ordinal, valor, timestamp);
+    }
+
     @Override
     public final DadosSensor lerDados() {
-        ultimaLeitura = gerarDadosEspecificos();
-        return ultimaLeitura;
+        DadosSensor leitura = gerarDadosEspecificos();
+        historico.registar(leitura.timestamp(), leitura.valor());
+        // Statistics are always kept, so switching to adaptive mode starts with a warm estimate
+        amostragem.registar(leitura.valor(), motorAlertas.distanciaLimite(ordinal, leitura.valor()));
+        return leitura;
     }
 
     @Override
     public final void publicarMQTT(String json) {
         if (mqttClientManager != null) {
-            mqttClientManager.publish(localizacaoFixa.topicoDados(), json);
+            mqttClientManager.publicarLeitura(localizacaoFixa, json);
+        }
+    }
+
+    /**
+     * Hands the payload to the alert lane (priority topic, higher QoS); returns at once.
+     */
+    public final void publicarAlerta(String json) {
+        if (mqttClientManager != null) {
+            mqttClientManager.publicarAlerta(localizacaoFixa.topicoAlertas(), json);
         }
     }
 
     @Override
     public void processarComando(String comandoJSON) {
-        try {
-            JsonObject objeto = GSON.fromJson(comandoJSON, JsonObject.class);
-            if (objeto == null || !objeto.has("acao")) {
-                return;
-            }
-            String acao = objeto.get("acao").getAsString().toUpperCase(Locale.ROOT);
-            switch (acao) {
-                case "ATIVAR" -> ativar();
-                case "DESATIVAR" -> desativar();
-                default -> {
-                }
-            }
-            // Updates interval only if valid (>= 1s) to prevent flooding
-            if (objeto.has("intervalo")) {
-                long novoIntervalo = objeto.get("intervalo").getAsLong();
-                if (novoIntervalo >= 1000L) {
-                    setIntervaloMillis(novoIntervalo);
-                }
+        ComandoSensor comando = ComandoSensor.ler(comandoJSON);
+        if (comando != null) {
+            aplicarComando(comando);
+        }
+    }
+
+    public void aplicarComando(ComandoSensor comando) {
+        switch (comando.acao()) {
+            case ATIVAR -> ativar();
+            case DESATIVAR -> desativar();
+            case ADAPTATIVO -> setAdaptativo(true);
+            case FIXO -> setAdaptativo(false);
+            default -> {
             }
-        } catch (JsonParseException | IllegalStateException ignored) {
+        }
+        // Updates interval only if valid (>= 1s) to prevent flooding
+        if (comando.intervalo() >= 1000L) {
+            setIntervaloMillis(comando.intervalo());
         }
     }
 
+    @Override
+    public final int getOrdinal() {
+        return ordinal;
+    }
+
+    @Override
+    public final HistoricoLeituras getHistorico() {
+        return historico;
+    }
+
     @Override
     public final String getOwner() {
         return OWNER_IDENTIFICADOR;
@@ -109,7 +159,11 @@ public abstract class SensorAbstrato implements Sensor, Runnable {
 
     @Override
     public final void ativar() {
+        boolean estava = ativo;
         this.ativo = true;
+        if (!estava) {
+            acordar();
+        }
     }
 
     @Override
@@ -127,6 +181,48 @@ public abstract class SensorAbstrato implements Sensor, Runnable {
         this.intervaloMillis = Math.max(1000L, intervaloMillis);
     }
 
+    @Override
+    public final boolean isAdaptativo() {
+        return adaptativo;
+    }
+
+    @Override
+    public final void setAdaptativo(boolean adaptativo) {
+        this.adaptativo = adaptativo;
+    }
+
+    public final boolean temPosse() {
+        return posse;
+    }
+
+    public final void definirPosse(boolean posse) {
+        boolean tinha = this.posse;
+        this.posse = posse;
+        if (posse && !tinha) {
+            acordar();
+        }
+    }
+
+    /**
+     * Interval actually used by the loop: the fixed one, or the adaptive one when enabled.
+     */
+    @Override
+    public final long getIntervaloEfetivo() {
+        return adaptativo ? amostragem.intervalo(intervaloMillis) : intervaloMillis;
+    }
+
+    /**
+     * Ends the current wait of the worker, so an activation or a cluster hand-over takes
+     * effect now instead of after a wait of up to the adaptive maximum.
+     */
+    private void acordar() {
+        despertado = true;
+        Thread atual = worker;
+        if (atual != null) {
+            LockSupport.unpark(atual);
+        }
+    }
+
     @Override
     public final void registrarListener(SensorUpdateListener listener) {
         listeners.add(listener);
@@ -157,7 +253,7 @@ public abstract class SensorAbstrato implements Sensor, Runnable {
 
     @Override
     public String getIDUnico() {
-        return "PT-SENSOR-" + localizacaoFixa.idSegmento();
+        return localizacaoFixa.sensorId();
     }
 
     @Override
@@ -167,27 +263,130 @@ public abstract class SensorAbstrato implements Sensor, Runnable {
                 break;
             }
             try {
-                if (ativo) {
-                    DadosSensor leitura = lerDados();
-                    String payload = payloadBuilder.buildPayload(this, leitura);
-                    publicarMQTT(payload);
-                    notificar(leitura, payload);
+                if (ativo && posse) {
+                    publicarLeitura();
+                }
+                if (!esperar(getIntervaloEfetivo())) {
+                    break;
                 }
-                Thread.sleep(intervaloMillis); 
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                break;
             } catch (Exception ex) {
                 // Keep loop alive even if a single publication fails
             }
         }
     }
 
-    protected final DadosSensor ultimaLeitura() {
-        return ultimaLeitura;
+    /**
+     * One reading through the whole pipeline. Each stage is a Flight Recorder event; the
+     * fields are only filled when a recording wants the event (see {@link EventoPipeline}).
+     * Package-private so {@code OrcamentoAlocacaoTest} can drive the exact loop body.
+     */
+    final void publicarLeitura() {
+        EventoGeracao geracao = new EventoGeracao();
+        geracao.begin();
+        DadosSensor leitura = lerDados();
+        geracao.end();
+        if (geracao.shouldCommit()) {
+            preencher(geracao, 0);
+            geracao.commit();
+        }
+
+        EventoPayload eventoPayload = new EventoPayload();
+        eventoPayload.begin();
+        String payload = construirPayload(leitura);
+        eventoPayload.end();
+        if (eventoPayload.shouldCommit()) {
+            preencher(eventoPayload, payload.length());
+            eventoPayload.commit();
+        }
+
+        EventoPublicacao publicacao = new EventoPublicacao();
+        publicacao.begin();
+        // An alert goes to its own lane first, ahead of the routine publish, listeners and CSV;
+        // it is still published on the data topic too, so data subscribers see every reading
+        if (alertaNoCiclo(leitura)) {
+            publicarAlerta(payload);
+        }
+        publicarMQTT(payload);
+        publicacao.end();
+        if (publicacao.shouldCommit()) {
+            preencher(publicacao, payload.length());
+            publicacao.commit();
+        }
+
+        EventoNotificacao notificacao = new EventoNotificacao();
+        notificacao.begin();
+        notificar(this, leitura, payload);
+        notificarCanais(payload);
+        notificacao.end();
+        if (notificacao.shouldCommit()) {
+            preencher(notificacao, payload.length());
+            notificacao.commit();
+        }
+    }
+
+    private void preencher(EventoPipeline evento, long bytes) {
+        evento.sensorId = getIDUnico();
+        evento.tipo = tipo.tipoJson();
+        evento.bytes = bytes;
+    }
+
+    /**
+     * Waits for the interval, or less if acordar() is called. Unlike Thread.sleep this can be
+     * cut short without interrupting the thread.
+     *
+     * @return false when the thread was interrupted (desligar)
+     */
+    private boolean esperar(long intervaloMillis) {
+        long fim = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMillis);
+        long restante;
+        // parkNanos may return spuriously, so loop until the deadline or a real wake-up
+        while (!despertado && (restante = fim - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, restante);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        despertado = false;
+        return true;
     }
 
     protected final void notificar(DadosSensor dados, String payload) {
-        listeners.forEach(listener -> listener.onDadosPublicados(this, dados, payload));
+        notificar(this, dados, payload);
+    }
+
+    /**
+     * @param origem this sensor, or one of its channels (stations)
+     */
+    protected final void notificar(Sensor origem, DadosSensor dados, String payload) {
+        listeners.forEach(listener -> listener.onDadosPublicados(origem, dados, payload));
+    }
+
+    // --- Extension points for stations (several metrics per tick, see EstacaoMultimetrica) ---
+
+    /**
+     * Extra metrics sampled with the main one, each seen as a sensor of its own.
+     */
+    public List<CanalEstacao> getCanais() {
+        return List.of();
+    }
+
+    /**
+     * Payload published for one tick.
+     */
+    protected String construirPayload(DadosSensor leitura) {
+        return payloadBuilder.buildPayload(this, leitura);
+    }
+
+    /**
+     * Whether the tick also goes to the alert lane.
+     */
+    protected boolean alertaNoCiclo(DadosSensor leitura) {
+        return leitura.alerta();
+    }
+
+    /**
+     * Runs after the listeners got the main reading, on the same thread.
+     */
+    protected void notificarCanais(String payload) {
     }
 }
\ No newline at end of file
@@ -16,10 +16,15 @@ public enum SensorLocalizacao {
 
     private final String descricao;
     private final String segmentoTopico;
+    // City part of the names ("Lisboa - Baixa" -> "Lisboa", "Lisboa_Baixa" -> "Lisboa")
+    private final String cidade;
+    private final String segmentoCidade;
 
     SensorLocalizacao(String descricao, String segmentoTopico) {
         this.descricao = descricao;
         this.segmentoTopico = segmentoTopico;
+        this.cidade = descricao.substring(0, descricao.indexOf(" - "));
+        this.segmentoCidade = segmentoTopico.substring(0, segmentoTopico.indexOf('_'));
     }
 
     // Used in the UI (ComboBox, Table)
@@ -31,6 +36,16 @@ public enum SensorLocalizacao {
         return segmentoTopico;
     }
 
+    // City used by the regional rollups (several locations may share it)
+    public String cidade() {
+        return cidade;
+    }
+
+    // Same city, safe for MQTT topics (no accents)
+    public String segmentoCidade() {
+        return segmentoCidade;
+    }
+
     /**
      * Sanitizes the location name to be used as a unique ID in the JSON payload.
      * Replaces spaces and dashes with underscores to ensure compatibility.
@@ -39,6 +54,33 @@ public enum SensorLocalizacao {
         return segmentoTopico.replace("-", "_").replace(" ", "_").toUpperCase();
     }
 
+    /**
+     * ID of the sensor installed at this location (field "sensor" of the payload).
+     */
+    public String sensorId() {
+        return "PT-SENSOR-" + idSegmento();
+    }
+
+    /**
+     * ID of an extra metric of the station at this location (see {@code EstacaoMultimetrica}),
+     * e.g. PT-SENSOR-LISBOA_BAIXA-TEMPERATURA. The station's main metric keeps {@link #sensorId()}.
+     */
+    public String sensorId(SensorTipo tipo) {
+        return sensorId() + "-" + tipo.name();
+    }
+
+    /**
+     * @return the location of a sensor ID, or null when no sensor of ours has that ID
+     */
+    public static SensorLocalizacao deSensorId(String sensorId) {
+        for (SensorLocalizacao localizacao : values()) {
+            if (localizacao.sensorId().equals(sensorId)) {
+                return localizacao;
+            }
+        }
+        return null;
+    }
+
     /**
      * Generates the MQTT topic for publishing data.
      * Structure: envira/pt/sensores/dados/{Localizacao}
@@ -55,6 +97,23 @@ public enum SensorLocalizacao {
         return "envira/pt/sensores/comandos/" + segmentoTopico;
     }
 
+    /**
+     * Priority topic for readings in alert and for alert state changes (published with a
+     * higher QoS by the alert lane of {@code MqttClientManager}).
+     * Structure: envira/pt/sensores/alertas/{Localizacao}
+     */
+    public String topicoAlertas() {
+        return "envira/pt/sensores/alertas/" + segmentoTopico;
+    }
+
+    /**
+     * Regional batch envelopes (gateway mode, {@code lotes.ativo}) of every location in this city.
+     * Structure: envira/pt/sensores/lotes/{Cidade}
+     */
+    public String topicoLote() {
+        return "envira/pt/sensores/lotes/" + segmentoCidade;
+    }
+
     @Override
     public String toString() {
         return descricao;
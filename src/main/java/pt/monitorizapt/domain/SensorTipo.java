@@ -33,4 +33,18 @@ public enum SensorTipo {
     public String etiqueta() {
         return etiqueta;
     }
+
+    /**
+     * Reverse lookup of the JSON protocol name (used when consuming payloads).
+     *
+     * @return the type, or null when the name is unknown
+     */
+    public static SensorTipo deTipoJson(String tipoJson) {
+        for (SensorTipo tipo : values()) {
+            if (tipo.tipoJson.equals(tipoJson)) {
+                return tipo;
+            }
+        }
+        return null;
+    }
 }
\ No newline at end of file
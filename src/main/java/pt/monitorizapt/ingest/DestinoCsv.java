@@ -0,0 +1,24 @@
+package pt.monitorizapt.ingest;
+
+import pt.monitorizapt.service.CsvLogService;
+
+/**
+ * Writes the ingested readings with the regular CSV writer (same format, rotation and compression).
+ */
+public class DestinoCsv implements DestinoLeituras {
+    private final CsvLogService csvLogService;
+
+    public DestinoCsv(CsvLogService csvLogService) {
+        this.csvLogService = csvLogService;
+    }
+
+    @Override
+    public void aceitar(LeituraIngerida leitura) {
+        csvLogService.registarLeitura(leitura.paraSnapshot());
+    }
+
+    @Override
+    public void fechar() {
+        csvLogService.fechar();
+    }
+}
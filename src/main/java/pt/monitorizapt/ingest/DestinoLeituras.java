@@ -0,0 +1,16 @@
+package pt.monitorizapt.ingest;
+
+/**
+ * Where verified readings go (CSV, database, ...).
+ * Called concurrently from several ingest workers, so implementations must be thread-safe.
+ * Readings of the same topic always arrive from the same worker, in order.
+ */
+public interface DestinoLeituras {
+    void aceitar(LeituraIngerida leitura);
+
+    /**
+     * Flushes and releases resources; called once when the ingest service stops.
+     */
+    default void fechar() {
+    }
+}
@@ -0,0 +1,24 @@
+package pt.monitorizapt.ingest;
+
+import pt.monitorizapt.service.RegistoSql;
+
+/**
+ * Writes the ingested readings into the embedded SQL database (batched on its own thread).
+ */
+public class DestinoSql implements DestinoLeituras {
+    private final RegistoSql registoSql;
+
+    public DestinoSql(RegistoSql registoSql) {
+        this.registoSql = registoSql;
+    }
+
+    @Override
+    public void aceitar(LeituraIngerida leitura) {
+        registoSql.registarLeitura(leitura.paraSnapshot());
+    }
+
+    @Override
+    public void fechar() {
+        registoSql.fechar();
+    }
+}
@@ -0,0 +1,24 @@
+package pt.monitorizapt.ingest;
+
+import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.service.SensorSnapshot;
+
+/**
+ * A reading received from the broker whose hash was verified.
+ * Immutable, so it can be handed to several sinks from the ingest workers.
+ */
+public record LeituraIngerida(String topico,
+                              String sensorId,
+                              String campus,
+                              SensorTipo tipo,
+                              double valor,
+                              String unidade,
+                              boolean alerta,
+                              long timestamp,
+                              String hash) {
+
+    // Same shape as the readings produced locally, so the existing CSV writer can be reused
+    public SensorSnapshot paraSnapshot() {
+        return new SensorSnapshot(sensorId, campus, tipo, valor, unidade, alerta, timestamp);
+    }
+}
@@ -0,0 +1,386 @@
+package pt.monitorizapt.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.util.EnvelopeLote;
+import pt.monitorizapt.util.HashUtil;
+import pt.monitorizapt.util.JsonPayloadBuilder;
+
+/**
+ * Subscriber side of the protocol: consumes {@code envira/pt/sensores/dados/#}, verifies the
+ * {@code hash_validacao} of every payload, drops duplicates and hands the valid readings to
+ * the registered {@link DestinoLeituras sinks}. Regional batch envelopes
+ * ({@code envira/pt/sensores/lotes/#}, see {@link EnvelopeLote}) are checked as a whole and
+ * then split into the same per-reading path.
+ *
+ * The MQTT callback thread only enqueues. The real work (JSON parse + SHA-256) runs on N
+ * workers, one queue each. Messages are routed by topic, so a sensor is always handled by
+ * the same worker: its readings stay in order and the duplicate filter needs no locks.
+ * When a queue is full the message is dropped and counted rather than stalling the MQTT
+ * client (which also carries commands and cluster heartbeats).
+ *
+ * Only readings of known sensors are accepted (sensor ID and campus of one of our
+ * {@link SensorLocalizacao locations}): the topics are open to anyone on the broker, and the
+ * per-sensor state here and in the sinks (duplicate windows, CSV writers) must stay bounded.
+ */
+public class ServicoIngestao {
+    public static final String TOPICO_DADOS = "envira/pt/sensores/dados/#";
+    public static final String TOPICO_LOTES = "envira/pt/sensores/lotes/#";
+    // Recent hashes remembered per sensor (QoS 1 redeliveries arrive within a few messages)
+    private static final int JANELA_DUPLICADOS = 64;
+    // Messages taken from the queue per lock acquisition
+    private static final int LOTE = 256;
+    private static final Mensagem FIM = new Mensagem("", "", false);
+
+    // lote: a regional batch envelope, opened on the worker. Messages from the broker keep
+    // the raw bytes (bruto) and are decoded on the worker, not on the delivery thread
+    private record Mensagem(String topico, String payload, byte[] bruto, boolean lote) {
+        Mensagem(String topico, String payload, boolean lote) {
+            this(topico, payload, null, lote);
+        }
+
+        String texto() {
+            return payload != null ? payload : new String(bruto, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Counters since start. {@code recebidas} is the sum of all the other outcomes.
+     */
+    public record Estatisticas(long recebidas, long validas, long hashInvalido, long malformadas,
+                               long desconhecidas, long duplicadas, long descartadas) {
+        public long falhas() {
+            return hashInvalido + malformadas + desconhecidas;
+        }
+    }
+
+    private final Trabalhador[] trabalhadores;
+    private final List<DestinoLeituras> destinos = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> falhaListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder recebidas = new LongAdder();
+    private final LongAdder validas = new LongAdder();
+    private final LongAdder hashInvalido = new LongAdder();
+    private final LongAdder malformadas = new LongAdder();
+    private final LongAdder desconhecidas = new LongAdder();
+    private final LongAdder duplicadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+
+    private volatile boolean ativo;
+
+    /**
+     * @param numeroTrabalhadores worker threads (0 = one per available core)
+     * @param capacidadeFila      bounded queue size of each worker
+     */
+    public ServicoIngestao(int numeroTrabalhadores, int capacidadeFila) {
+        int total = numeroTrabalhadores > 0 ? numeroTrabalhadores : Runtime.getRuntime().availableProcessors();
+        this.trabalhadores = new Trabalhador[total];
+        for (int i = 0; i < total; i++) {
+            trabalhadores[i] = new Trabalhador(i, capacidadeFila);
+        }
+    }
+
+    public void adicionarDestino(DestinoLeituras destino) {
+        destinos.add(destino);
+    }
+
+    /**
+     * Notified (on a worker thread) for every payload that fails verification.
+     */
+    public void registarFalhaListener(Consumer<String> listener) {
+        falhaListeners.add(listener);
+    }
+
+    /**
+     * Starts the workers and subscribes to the data topics (as a shared subscription when
+     * configured, so several ingest instances split the stream).
+     */
+    public synchronized void iniciar(MqttClientManager mqttClientManager) {
+        iniciar();
+        mqttClientManager.subscribeSharedBytes(TOPICO_DADOS,
+                (topico, payload) -> enfileirar(new Mensagem(topico, null, payload, false)));
+        mqttClientManager.subscribeSharedBytes(TOPICO_LOTES,
+                (topico, envelope) -> enfileirar(new Mensagem(topico, null, envelope, true)));
+    }
+
+    /**
+     * Starts the workers only (messages are then fed through {@link #receber}).
+     */
+    public synchronized void iniciar() {
+        if (ativo) {
+            return;
+        }
+        ativo = true;
+        for (Trabalhador trabalhador : trabalhadores) {
+            trabalhador.start();
+        }
+    }
+
+    /**
+     * Entry point for one message. Cheap and non-blocking: safe to call from the MQTT thread.
+     */
+    public void receber(String topico, String payload) {
+        enfileirar(new Mensagem(topico, payload, false));
+    }
+
+    /**
+     * Entry point for a regional batch envelope; like {@link #receber}, it only enqueues.
+     * Its readings all stay on one worker (the one of the region topic).
+     */
+    public void receberLote(String topico, String envelope) {
+        enfileirar(new Mensagem(topico, envelope, true));
+    }
+
+    private void enfileirar(Mensagem mensagem) {
+        if (!ativo) {
+            return;
+        }
+        String topico = mensagem.topico();
+        recebidas.increment();
+        // Spread the topic hash so similar topic names do not land on the same worker
+        int h = topico.hashCode();
+        h ^= h >>> 16;
+        Trabalhador trabalhador = trabalhadores[Math.floorMod(h * 0x9E3779B9, trabalhadores.length)];
+        if (!trabalhador.fila.offer(mensagem)) {
+            descartadas.increment();
+        }
+    }
+
+    /**
+     * Processes what is already queued, stops the workers and closes the sinks.
+     */
+    public synchronized void parar() {
+        if (!ativo) {
+            return;
+        }
+        ativo = false;
+        for (Trabalhador trabalhador : trabalhadores) {
+            try {
+                trabalhador.fila.put(FIM);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Trabalhador trabalhador : trabalhadores) {
+            try {
+                trabalhador.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        destinos.forEach(DestinoLeituras::fechar);
+    }
+
+    public Estatisticas estatisticas() {
+        return new Estatisticas(recebidas.sum(), validas.sum(), hashInvalido.sum(),
+                malformadas.sum(), desconhecidas.sum(), duplicadas.sum(), descartadas.sum());
+    }
+
+    public int getNumeroTrabalhadores() {
+        return trabalhadores.length;
+    }
+
+    private void processar(Mensagem mensagem, Map<SensorLocalizacao, JanelaRecentes> janelas) {
+        LeituraIngerida leitura;
+        List<LeituraIngerida> metricas;
+        SensorLocalizacao localizacao;
+        try {
+            String payload = mensagem.texto();
+            JsonObject objeto = JsonParser.parseString(payload).getAsJsonObject();
+            String hash = texto(objeto, JsonPayloadBuilder.CAMPO_HASH);
+            String sensorId = texto(objeto, "sensor");
+            String campus = texto(objeto, "campus");
+            String unidade = texto(objeto, "unidade");
+            SensorTipo tipo = SensorTipo.deTipoJson(texto(objeto, "tipo"));
+            if (hash == null || sensorId == null || campus == null || unidade == null || tipo == null
+                    || !objeto.has("valor") || !objeto.has("timestamp")) {
+                falha(malformadas, "Payload incompleto em " + mensagem.topico());
+                return;
+            }
+            localizacao = SensorLocalizacao.deSensorId(sensorId);
+            if (localizacao == null || !localizacao.descricao().equals(campus)) {
+                falha(desconhecidas, "Sensor desconhecido " + sensorId + " (" + campus + ") em " + mensagem.topico());
+                return;
+            }
+            // Read every field first: the slow canonicalization path removes the hash from the object
+            leitura = new LeituraIngerida(mensagem.topico(), localizacao.sensorId(), localizacao.descricao(), tipo,
+                    objeto.get("valor").getAsDouble(), unidade,
+                    objeto.has("alerta") && objeto.get("alerta").getAsBoolean(),
+                    objeto.get("timestamp").getAsLong(), hash);
+            metricas = metricasEstacao(objeto, mensagem.topico(), localizacao, leitura);
+            String canonico = JsonPayloadBuilder.canonicalizarRecebido(payload, objeto);
+            if (!HashUtil.sha256Confere(canonico, hash)) {
+                falha(hashInvalido, "Hash inválido para " + sensorId + " em " + mensagem.topico());
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Gson signals every shape problem (bad JSON, wrong types) with unchecked exceptions
+            falha(malformadas, "Payload inválido em " + mensagem.topico() + ": " + e.getMessage());
+            return;
+        }
+
+        if (!janelas.computeIfAbsent(localizacao, id -> new JanelaRecentes()).adicionar(leitura.hash())) {
+            duplicadas.increment();
+            return;
+        }
+        validas.increment();
+        entregar(leitura);
+        for (LeituraIngerida metrica : metricas) {
+            entregar(metrica);
+        }
+    }
+
+    private void entregar(LeituraIngerida leitura) {
+        for (DestinoLeituras destino : destinos) {
+            try {
+                destino.aceitar(leitura);
+            } catch (RuntimeException e) {
+                // A broken sink must not stop the others (nor kill the worker)
+                falhaListeners.forEach(listener -> listener.accept("Destino " + destino.getClass().getSimpleName()
+                        + " falhou: " + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Extra metrics of a station payload ({@code metricas}), one reading each under the id of
+     * the metric's channel. They share the timestamp and hash of the message that carried them.
+     */
+    private static List<LeituraIngerida> metricasEstacao(JsonObject objeto, String topico,
+                                                         SensorLocalizacao localizacao, LeituraIngerida principal) {
+        JsonElement elemento = objeto.get(JsonPayloadBuilder.CAMPO_METRICAS);
+        if (elemento == null || !elemento.isJsonObject()) {
+            return List.of();
+        }
+        List<LeituraIngerida> metricas = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entrada : elemento.getAsJsonObject().entrySet()) {
+            SensorTipo tipo = SensorTipo.deTipoJson(entrada.getKey());
+            JsonObject metrica = entrada.getValue().getAsJsonObject();
+            if (tipo == null || tipo == principal.tipo() || !metrica.has("valor")) {
+                continue;
+            }
+            String unidade = texto(metrica, "unidade");
+            metricas.add(new LeituraIngerida(topico, localizacao.sensorId(tipo), principal.campus(), tipo,
+                    metrica.get("valor").getAsDouble(), unidade == null ? tipo.unidadePadrao() : unidade,
+                    metrica.has("alerta") && metrica.get("alerta").getAsBoolean(),
+                    principal.timestamp(), principal.hash()));
+        }
+        return metricas;
+    }
+
+    /**
+     * A valid envelope counts as its readings (each then has its own outcome); a broken one
+     * counts as one failed message.
+     */
+    private void abrirLote(Mensagem mensagem, Map<SensorLocalizacao, JanelaRecentes> janelas) {
+        EnvelopeLote.Lote lote;
+        try {
+            lote = EnvelopeLote.ler(mensagem.texto());
+        } catch (IllegalArgumentException e) {
+            falha(malformadas, "Envelope inválido em " + mensagem.topico() + ": " + e.getMessage());
+            return;
+        }
+        if (!lote.integro()) {
+            falha(hashInvalido, "Hash inválido para o envelope " + lote.sequencia() + " em " + mensagem.topico());
+            return;
+        }
+        if (lote.leituras().isEmpty()) {
+            falha(malformadas, "Envelope vazio em " + mensagem.topico());
+            return;
+        }
+        recebidas.add(lote.leituras().size() - 1L);
+        for (String leitura : lote.leituras()) {
+            processar(new Mensagem(mensagem.topico(), leitura, false), janelas);
+        }
+    }
+
+    private void falha(LongAdder contador, String descricao) {
+        contador.increment();
+        falhaListeners.forEach(listener -> listener.accept(descricao));
+    }
+
+    private static String texto(JsonObject objeto, String campo) {
+        JsonElement elemento = objeto.get(campo);
+        return elemento == null || elemento.isJsonNull() ? null : elemento.getAsString();
+    }
+
+    /**
+     * Fixed ring of the last hashes of one sensor (first 64 bits are plenty to tell them apart).
+     */
+    private static final class JanelaRecentes {
+        private final long[] marcas = new long[JANELA_DUPLICADOS];
+        private int proxima;
+        private int preenchidas;
+
+        /**
+         * @return false when the hash was already seen
+         */
+        boolean adicionar(String hash) {
+            long marca = Long.parseUnsignedLong(hash, 0, 16, 16);
+            for (int i = 0; i < preenchidas; i++) {
+                if (marcas[i] == marca) {
+                    return false;
+                }
+            }
+            marcas[proxima] = marca;
+            proxima = (proxima + 1) % JANELA_DUPLICADOS;
+            preenchidas = Math.min(preenchidas + 1, JANELA_DUPLICADOS);
+            return true;
+        }
+    }
+
+    private final class Trabalhador extends Thread {
+        private final BlockingQueue<Mensagem> fila;
+
+        Trabalhador(int indice, int capacidadeFila) {
+            super("monitorizapt-ingestao-" + indice);
+            setDaemon(true);
+            this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        }
+
+        @Override
+        public void run() {
+            // Owned by this thread only: sensors are pinned to a worker by topic
+            Map<SensorLocalizacao, JanelaRecentes> janelas = new EnumMap<>(SensorLocalizacao.class);
+            List<Mensagem> lote = new ArrayList<>(LOTE);
+            try {
+                while (true) {
+                    lote.add(fila.take());
+                    fila.drainTo(lote, LOTE - 1);
+                    for (Mensagem mensagem : lote) {
+                        if (mensagem == FIM) {
+                            return;
+                        }
+                        if (mensagem.lote()) {
+                            abrirLote(mensagem, janelas);
+                        } else {
+                            processar(mensagem, janelas);
+                        }
+                    }
+                    lote.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
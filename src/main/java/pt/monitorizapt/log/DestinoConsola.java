@@ -0,0 +1,30 @@
+package pt.monitorizapt.log;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Writes each batch to stdout with a single call (one lock of the stream per batch, not per line).
+ */
+public class DestinoConsola implements DestinoLog {
+    private final PrintStream saida;
+    private final StringBuilder texto = new StringBuilder(4096);
+
+    public DestinoConsola() {
+        this(System.out);
+    }
+
+    public DestinoConsola(PrintStream saida) {
+        this.saida = saida;
+    }
+
+    @Override
+    public void escrever(List<String> linhas) {
+        texto.setLength(0);
+        for (String linha : linhas) {
+            texto.append(linha).append(System.lineSeparator());
+        }
+        saida.print(texto);
+        saida.flush();
+    }
+}
@@ -0,0 +1,91 @@
+package pt.monitorizapt.log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Rolling log file: monitorizapt.log grows up to the size limit, then becomes
+ * monitorizapt.log.1 (the older copies shift to .2, .3, ... and the oldest is dropped).
+ * Each batch is written and flushed once.
+ */
+public class DestinoFicheiro implements DestinoLog {
+    private final Path ficheiro;
+    private final long tamanhoMaximoBytes;
+    private final int copias;
+    private BufferedWriter escritor;
+    private long bytes;
+
+    public DestinoFicheiro(Path ficheiro, long tamanhoMaximoBytes, int copias) {
+        this.ficheiro = ficheiro;
+        this.tamanhoMaximoBytes = tamanhoMaximoBytes;
+        this.copias = Math.max(0, copias);
+    }
+
+    @Override
+    public void escrever(List<String> linhas) {
+        try {
+            if (escritor == null) {
+                abrir();
+            }
+            for (String linha : linhas) {
+                escritor.write(linha);
+                escritor.newLine();
+                // Close enough for the limit: the lines are mostly ASCII
+                bytes += linha.length() + 1;
+            }
+            escritor.flush();
+            if (bytes >= tamanhoMaximoBytes) {
+                rodar();
+            }
+        } catch (IOException e) {
+            System.err.println("Falha ao escrever o log em " + ficheiro + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void fechar() {
+        if (escritor != null) {
+            try {
+                escritor.close();
+            } catch (IOException e) {
+                System.err.println("Falha ao fechar o log " + ficheiro + ": " + e.getMessage());
+            }
+            escritor = null;
+        }
+    }
+
+    private void abrir() throws IOException {
+        Path diretoria = ficheiro.toAbsolutePath().getParent();
+        if (diretoria != null) {
+            Files.createDirectories(diretoria);
+        }
+        escritor = Files.newBufferedWriter(ficheiro, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        bytes = Files.size(ficheiro);
+    }
+
+    private void rodar() throws IOException {
+        fechar();
+        if (copias == 0) {
+            Files.delete(ficheiro);
+            return;
+        }
+        Files.deleteIfExists(copia(copias));
+        for (int i = copias - 1; i >= 1; i--) {
+            if (Files.exists(copia(i))) {
+                Files.move(copia(i), copia(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(ficheiro, copia(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path copia(int indice) {
+        return ficheiro.resolveSibling(ficheiro.getFileName() + "." + indice);
+    }
+}
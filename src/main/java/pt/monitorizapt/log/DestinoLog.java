@@ -0,0 +1,21 @@
+package pt.monitorizapt.log;
+
+import java.util.List;
+
+/**
+ * Where formatted log lines end up (UI, file, stdout, ...).
+ *
+ * Called only from the logger's writer thread, one batch at a time, so implementations need no
+ * locking of their own and should write the whole batch in one go. The list is never reused
+ * by the logger: a sink may hand it to another thread (e.g. the EDT) as it is.
+ */
+@FunctionalInterface
+public interface DestinoLog {
+    void escrever(List<String> linhas);
+
+    /**
+     * Called once on shutdown, after the last batch.
+     */
+    default void fechar() {
+    }
+}
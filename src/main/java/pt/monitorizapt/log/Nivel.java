@@ -0,0 +1,25 @@
+package pt.monitorizapt.log;
+
+/**
+ * Severity of a log record. A logger set to one level drops everything below it.
+ */
+public enum Nivel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    /**
+     * Lenient parse used for the config file.
+     *
+     * @return the level, or {@code padrao} when the name is unknown
+     */
+    public static Nivel de(String nome, Nivel padrao) {
+        for (Nivel nivel : values()) {
+            if (nivel.name().equalsIgnoreCase(nome.trim())) {
+                return nivel;
+            }
+        }
+        return padrao;
+    }
+}
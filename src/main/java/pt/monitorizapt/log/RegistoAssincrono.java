@@ -0,0 +1,325 @@
+package pt.monitorizapt.log;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import pt.monitorizapt.util.FormatadorDecimal;
+
+/**
+ * Asynchronous, leveled logger.
+ *
+ * The calling thread only checks the level and, when it is on, copies the message template,
+ * its arguments and the time into a slot of a bounded lock-free ring (multiple producers, one
+ * consumer, one CAS per record). A background thread drains the ring, formats the records
+ * ({@code {}} placeholders, like SLF4J) and hands them to the sinks in batches. A disabled
+ * call costs a field read and a compare; the fixed-arity overloads avoid even the varargs
+ * array.
+ *
+ * When the ring is full the record is dropped and counted ({@link #getDescartados()}): a
+ * sensor thread never waits for a slow sink.
+ */
+public class RegistoAssincrono {
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+    private static final int LOTE_MAXIMO = 512;
+    private static final long ESPERA_VAZIO_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final Object[] SEM_ARGUMENTOS = new Object[0];
+
+    private final Registo[] registos;
+    // Per slot: equal to the producer position when free, position + 1 once written
+    private final AtomicLongArray sequencias;
+    private final int mascara;
+    private final AtomicLong cauda = new AtomicLong();
+    // Consumer position (writer thread only)
+    private long cabeca;
+
+    private final List<DestinoLog> destinos = new CopyOnWriteArrayList<>();
+    private final LongAdder descartados = new LongAdder();
+    private final Thread escritor;
+    private final StringBuilder texto = new StringBuilder(256);
+    // The date part only changes once per second: formatted once and reused (writer thread only)
+    private long segundoFormatado = Long.MIN_VALUE;
+    private String horaFormatada = "";
+    private volatile int nivelMinimo;
+    private volatile boolean parado;
+
+    /**
+     * @param capacidade ring size, rounded up to a power of two
+     */
+    public RegistoAssincrono(Nivel nivel, int capacidade) {
+        int potencia = capacidade <= 2 ? 2 : Integer.highestOneBit(capacidade - 1) << 1;
+        this.registos = new Registo[potencia];
+        this.sequencias = new AtomicLongArray(potencia);
+        this.mascara = potencia - 1;
+        for (int i = 0; i < potencia; i++) {
+            registos[i] = new Registo();
+            sequencias.set(i, i);
+        }
+        this.nivelMinimo = nivel.ordinal();
+        this.escritor = new Thread(this::escrever, "log-escritor");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    public void adicionarDestino(DestinoLog destino) {
+        destinos.add(destino);
+    }
+
+    public void setNivel(Nivel nivel) {
+        this.nivelMinimo = nivel.ordinal();
+    }
+
+    public boolean isAtivo(Nivel nivel) {
+        return nivel.ordinal() >= nivelMinimo;
+    }
+
+    /**
+     * Records lost because the ring was full.
+     */
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Writes what is still in the ring, then closes the sinks.
+     */
+    public void parar() {
+        parado = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Logging calls (template with {} placeholders, formatted on the writer thread) ---
+
+    public void debug(String modelo) {
+        if (Nivel.DEBUG.ordinal() >= nivelMinimo) {
+            publicar(Nivel.DEBUG, modelo, 0, null, null, null, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void debug(String modelo, Object a) {
+        if (Nivel.DEBUG.ordinal() >= nivelMinimo) {
+            publicar(Nivel.DEBUG, modelo, 1, a, null, null, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void debug(String modelo, Object a, Object b) {
+        if (Nivel.DEBUG.ordinal() >= nivelMinimo) {
+            publicar(Nivel.DEBUG, modelo, 2, a, b, null, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void debug(String modelo, Object a, Object b, Object c) {
+        if (Nivel.DEBUG.ordinal() >= nivelMinimo) {
+            publicar(Nivel.DEBUG, modelo, 3, a, b, c, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void info(String modelo) {
+        if (Nivel.INFO.ordinal() >= nivelMinimo) {
+            publicar(Nivel.INFO, modelo, 0, null, null, null, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void info(String modelo, Object a) {
+        if (Nivel.INFO.ordinal() >= nivelMinimo) {
+            publicar(Nivel.INFO, modelo, 1, a, null, null, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void info(String modelo, Object a, Object b) {
+        if (Nivel.INFO.ordinal() >= nivelMinimo) {
+            publicar(Nivel.INFO, modelo, 2, a, b, null, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void info(String modelo, Object a, Object b, Object c) {
+        if (Nivel.INFO.ordinal() >= nivelMinimo) {
+            publicar(Nivel.INFO, modelo, 3, a, b, c, SEM_ARGUMENTOS);
+        }
+    }
+
+    public void info(String modelo, Object a, Object b, Object c, Object... resto) {
+        if (Nivel.INFO.ordinal() >= nivelMinimo) {
+            publicar(Nivel.INFO, modelo, 3 + resto.length, a, b, c, resto);
+        }
+    }
+
+    public void warn(String modelo, Object... argumentos) {
+        registar(Nivel.WARN, modelo, argumentos);
+    }
+
+    public void error(String modelo, Object... argumentos) {
+        registar(Nivel.ERROR, modelo, argumentos);
+    }
+
+    public void registar(Nivel nivel, String modelo, Object... argumentos) {
+        if (nivel.ordinal() < nivelMinimo) {
+            return;
+        }
+        int n = argumentos.length;
+        Object[] resto = n > 3 ? Arrays.copyOfRange(argumentos, 3, n) : SEM_ARGUMENTOS;
+        publicar(nivel, modelo, n, n > 0 ? argumentos[0] : null, n > 1 ? argumentos[1] : null,
+                n > 2 ? argumentos[2] : null, resto);
+    }
+
+    // --- Ring buffer ---
+
+    private void publicar(Nivel nivel, String modelo, int quantos, Object a, Object b, Object c, Object[] resto) {
+        long posicao;
+        int indice;
+        while (true) {
+            posicao = cauda.get();
+            indice = (int) (posicao & mascara);
+            long diferenca = sequencias.get(indice) - posicao;
+            if (diferenca == 0) {
+                if (cauda.compareAndSet(posicao, posicao + 1)) {
+                    break;
+                }
+            } else if (diferenca < 0) {
+                descartados.increment(); // full: the writer is a whole ring behind
+                return;
+            }
+            // else another producer took this position: retry with the new tail
+        }
+        Registo registo = registos[indice];
+        registo.nivel = nivel;
+        registo.timestamp = System.currentTimeMillis();
+        registo.modelo = modelo;
+        registo.quantos = quantos;
+        registo.a = a;
+        registo.b = b;
+        registo.c = c;
+        registo.resto = resto;
+        // Release: the fields above become visible to the writer before the slot is marked full
+        sequencias.set(indice, posicao + 1);
+    }
+
+    // Writer thread
+    private void escrever() {
+        while (true) {
+            List<String> lote = drenar();
+            if (lote != null) {
+                entregar(lote);
+                continue;
+            }
+            if (parado) {
+                break;
+            }
+            LockSupport.parkNanos(ESPERA_VAZIO_NANOS);
+        }
+        for (DestinoLog destino : destinos) {
+            destino.fechar();
+        }
+    }
+
+    /**
+     * @return up to {@link #LOTE_MAXIMO} formatted lines, or null when the ring is empty
+     */
+    private List<String> drenar() {
+        List<String> lote = null;
+        while (lote == null || lote.size() < LOTE_MAXIMO) {
+            int indice = (int) (cabeca & mascara);
+            if (sequencias.get(indice) != cabeca + 1) {
+                break; // empty, or the producer that claimed it is still writing
+            }
+            Registo registo = registos[indice];
+            if (lote == null) {
+                lote = new ArrayList<>();
+            }
+            lote.add(formatar(registo));
+            registo.limpar();
+            sequencias.set(indice, cabeca + registos.length);
+            cabeca++;
+        }
+        return lote;
+    }
+
+    private void entregar(List<String> lote) {
+        for (DestinoLog destino : destinos) {
+            try {
+                destino.escrever(lote);
+            } catch (RuntimeException e) {
+                System.err.println("Falha num destino de log: " + e.getMessage());
+            }
+        }
+    }
+
+    private String formatar(Registo registo) {
+        texto.setLength(0);
+        long segundo = Math.floorDiv(registo.timestamp, 1000L);
+        if (segundo != segundoFormatado) {
+            segundoFormatado = segundo;
+            horaFormatada = FORMATO_HORA.format(Instant.ofEpochSecond(segundo));
+        }
+        texto.append(horaFormatada);
+        texto.append(" [").append(registo.nivel.name()).append("] ");
+        String modelo = registo.modelo;
+        int argumento = 0;
+        int inicio = 0;
+        int marca;
+        while ((marca = modelo.indexOf("{}", inicio)) >= 0) {
+            texto.append(modelo, inicio, marca);
+            if (argumento < registo.quantos) {
+                anexar(registo.argumento(argumento++));
+            } else {
+                texto.append("{}");
+            }
+            inicio = marca + 2;
+        }
+        texto.append(modelo, inicio, modelo.length());
+        return texto.toString();
+    }
+
+    private void anexar(Object valor) {
+        // Decimal values keep the two-decimal, locale-independent format used everywhere else
+        if (valor instanceof Double || valor instanceof Float) {
+            FormatadorDecimal.escrever(((Number) valor).doubleValue(), texto);
+        } else {
+            texto.append(valor);
+        }
+    }
+
+    private static final class Registo {
+        private Nivel nivel;
+        private long timestamp;
+        private String modelo;
+        private int quantos;
+        private Object a;
+        private Object b;
+        private Object c;
+        private Object[] resto;
+
+        Object argumento(int indice) {
+            return switch (indice) {
+                case 0 -> a;
+                case 1 -> b;
+                case 2 -> c;
+                default -> resto[indice - 3];
+            };
+        }
+
+        // Drops the references so logged objects can be collected
+        void limpar() {
+            modelo = null;
+            a = null;
+            b = null;
+            c = null;
+            resto = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package pt.monitorizapt.mqtt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * In-process message bus behind the {@code local://<nome>} broker URL: the producers and
+ * consumers of one JVM exchange messages without a broker or a socket (local dashboards,
+ * integration tests).
+ *
+ * A publish is delivered on the publisher's thread, straight to every matching subscription
+ * ({@link FiltroTopico} semantics, {@code $share/<grupo>/} filters take turns within the
+ * group). The payload array is shared, not copied: every subscriber receives the same
+ * instance and must treat it as read-only. Sessions are always clean and QoS does not apply
+ * (in memory every message arrives exactly once), so there is nothing to persist or ack.
+ *
+ * Buses are looked up by name and live as long as the JVM. {@link #reiniciar()} and
+ * {@link #derrubar(String)} simulate a broker restart and a client dying, so the
+ * reconnection and last-will paths can be exercised without a network.
+ */
+public final class BarramentoLocal {
+    public static final String ESQUEMA = "local://";
+
+    private static final Map<String, BarramentoLocal> BARRAMENTOS = new ConcurrentHashMap<>();
+
+    private record Subscricao(TransporteLoopback cliente, String filtro, String efetivo, boolean partilhada,
+                              BiConsumer<String, byte[]> handler) {
+    }
+
+    private final String nome;
+    // Read on every publish, written only on (un)subscribe
+    private final List<Subscricao> subscricoes = new CopyOnWriteArrayList<>();
+    private final Map<String, TransporteLoopback> clientes = new ConcurrentHashMap<>();
+    // Next member of each shared subscription (key = the full $share filter)
+    private final Map<String, AtomicInteger> turnos = new ConcurrentHashMap<>();
+
+    private BarramentoLocal(String nome) {
+        this.nome = nome;
+    }
+
+    public static boolean aceita(String brokerUrl) {
+        return brokerUrl.startsWith(ESQUEMA);
+    }
+
+    /**
+     * @param brokerUrl {@code local://<nome>}; the same name always gives the same bus
+     */
+    public static BarramentoLocal de(String brokerUrl) {
+        String nome = brokerUrl.startsWith(ESQUEMA) ? brokerUrl.substring(ESQUEMA.length()) : brokerUrl;
+        return BARRAMENTOS.computeIfAbsent(nome, BarramentoLocal::new);
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * Client ids currently connected.
+     */
+    public Set<String> clientes() {
+        return Set.copyOf(clientes.keySet());
+    }
+
+    /**
+     * Drops every client, as a broker restart would (no last wills: the broker itself went away).
+     */
+    public void reiniciar() {
+        for (TransporteLoopback cliente : List.copyOf(clientes.values())) {
+            desligar(cliente);
+            cliente.perdida();
+        }
+    }
+
+    /**
+     * Drops one client as if its connection died: its last will is published.
+     *
+     * @return false when no such client is connected
+     */
+    public boolean derrubar(String clienteId) {
+        TransporteLoopback cliente = clientes.get(clienteId);
+        if (cliente == null) {
+            return false;
+        }
+        desligar(cliente);
+        cliente.perdida();
+        if (cliente.willTopic() != null) {
+            entregar(cliente.willTopic(), cliente.willPayload());
+        }
+        return true;
+    }
+
+    // --- Used by TransporteLoopback ---
+
+    void ligar(TransporteLoopback cliente) throws TransporteException {
+        TransporteLoopback anterior = clientes.putIfAbsent(cliente.clienteId(), cliente);
+        if (anterior != null && anterior != cliente) {
+            throw new TransporteException("Cliente " + cliente.clienteId() + " já ligado a " + ESQUEMA + nome, null);
+        }
+    }
+
+    void desligar(TransporteLoopback cliente) {
+        clientes.remove(cliente.clienteId(), cliente);
+        // Clean session: the subscriptions go with the connection
+        subscricoes.removeIf(subscricao -> subscricao.cliente() == cliente);
+    }
+
+    void subscrever(TransporteLoopback cliente, String filtro, BiConsumer<String, byte[]> handler) {
+        String efetivo = FiltroTopico.semPartilha(filtro);
+        // Subscribing again to the same filter replaces the handler, as on a real broker
+        subscricoes.removeIf(subscricao -> subscricao.cliente() == cliente && subscricao.filtro().equals(filtro));
+        subscricoes.add(new Subscricao(cliente, filtro, efetivo, !efetivo.equals(filtro), handler));
+    }
+
+    void entregar(String topico, byte[] payload) {
+        Map<String, List<Subscricao>> partilhadas = null;
+        for (Subscricao subscricao : subscricoes) {
+            if (!FiltroTopico.corresponde(subscricao.efetivo(), topico)) {
+                continue;
+            }
+            if (!subscricao.partilhada()) {
+                chamar(subscricao, topico, payload);
+            } else {
+                if (partilhadas == null) {
+                    partilhadas = new LinkedHashMap<>();
+                }
+                partilhadas.computeIfAbsent(subscricao.filtro(), f -> new ArrayList<>()).add(subscricao);
+            }
+        }
+        if (partilhadas != null) {
+            // One member per shared subscription, in turns
+            partilhadas.forEach((filtro, membros) -> {
+                int turno = turnos.computeIfAbsent(filtro, f -> new AtomicInteger()).getAndIncrement();
+                chamar(membros.get(Math.floorMod(turno, membros.size())), topico, payload);
+            });
+        }
+    }
+
+    // A failing subscriber must not break the publisher (Paho isolates handlers the same way)
+    private static void chamar(Subscricao subscricao, String topico, byte[] payload) {
+        try {
+            subscricao.handler().accept(topico, payload);
+        } catch (RuntimeException e) {
+            System.err.println("Falha num subscritor de " + subscricao.filtro() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package pt.monitorizapt.mqtt;
+
+/**
+ * MQTT topic filter matching ('+' = one level, '#' = this level and everything below).
+ */
+public final class FiltroTopico {
+    private static final String PREFIXO_PARTILHA = "$share/";
+
+    private FiltroTopico() {
+    }
+
+    /**
+     * Walks both strings once, level by level, without splitting them into arrays.
+     */
+    public static boolean corresponde(String filtro, String topico) {
+        int f = 0;
+        int t = 0;
+        while (f < filtro.length()) {
+            char c = filtro.charAt(f);
+            if (c == '#') {
+                return true;
+            }
+            if (c == '+') {
+                // Skip one whole level of the topic
+                while (t < topico.length() && topico.charAt(t) != '/') {
+                    t++;
+                }
+                f++;
+            } else {
+                if (t >= topico.length() || topico.charAt(t) != c) {
+                    // "a/#" also matches the parent level "a"
+                    return t == topico.length() && filtro.startsWith("/#", f);
+                }
+                f++;
+                t++;
+            }
+        }
+        return t == topico.length();
+    }
+
+    /**
+     * Shared subscription filter ({@code $share/<grupo>/<filtro>}): the broker delivers each
+     * message to only one subscriber of the group.
+     */
+    public static String partilhado(String grupo, String filtro) {
+        return PREFIXO_PARTILHA + grupo + "/" + filtro;
+    }
+
+    /**
+     * The filter the messages are actually matched against (without the $share prefix).
+     */
+    public static String semPartilha(String filtro) {
+        if (!filtro.startsWith(PREFIXO_PARTILHA)) {
+            return filtro;
+        }
+        int fimGrupo = filtro.indexOf('/', PREFIXO_PARTILHA.length());
+        return fimGrupo < 0 ? filtro : filtro.substring(fimGrupo + 1);
+    }
+}
@@ -0,0 +1,173 @@
+package pt.monitorizapt.mqtt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.util.EnvelopeLote;
+import pt.monitorizapt.util.HistogramaLatencia;
+
+/**
+ * Gateway batching mode ({@code lotes.ativo}): readings are collected per region (city) and
+ * published as one {@link EnvelopeLote envelope} on {@link SensorLocalizacao#topicoLote()}.
+ *
+ * A region is sent when it holds {@code lotes.maximo} readings or {@code lotes.maxBytes} of
+ * payload (by the thread that filled it), or when its oldest reading has waited
+ * {@code lotes.lingerMs} (by the "mqtt-lotes" thread, which looks every quarter of the linger).
+ * The added latency is therefore at most about 1.25 x the linger. Alerts do not go through
+ * here: they keep their own lane.
+ */
+final class GatewayLotes {
+    private final BiConsumer<String, String> publicador;
+    private final int maximo;
+    private final int maxBytes;
+    private final long lingerNanos;
+    private final Regiao[] regiaoPorLocalizacao = new Regiao[SensorLocalizacao.values().length];
+    private final List<Regiao> regioes;
+    private final ScheduledExecutorService varredor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mqtt-lotes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder envelopes = new LongAdder();
+    private final LongAdder leituras = new LongAdder();
+    // Wait of the oldest reading of each envelope
+    private final HistogramaLatencia espera = new HistogramaLatencia();
+
+    /**
+     * @param publicador receives (topic, envelope) for every envelope
+     */
+    GatewayLotes(BiConsumer<String, String> publicador, int maximo, int maxBytes, long lingerMs) {
+        this.publicador = publicador;
+        this.maximo = Math.max(1, maximo);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, lingerMs));
+        Map<String, Regiao> porCidade = new LinkedHashMap<>();
+        for (SensorLocalizacao localizacao : SensorLocalizacao.values()) {
+            regiaoPorLocalizacao[localizacao.ordinal()] = porCidade.computeIfAbsent(localizacao.segmentoCidade(),
+                    cidade -> new Regiao(cidade, localizacao.topicoLote()));
+        }
+        this.regioes = List.copyOf(porCidade.values());
+        long periodo = Math.max(1L, lingerNanos / 4);
+        varredor.scheduleAtFixedRate(this::varrer, periodo, periodo, TimeUnit.NANOSECONDS);
+    }
+
+    void adicionar(SensorLocalizacao localizacao, String payload) {
+        Regiao regiao = regiaoPorLocalizacao[localizacao.ordinal()];
+        Envelope cheio;
+        synchronized (regiao) {
+            regiao.adicionar(payload, System.nanoTime());
+            cheio = regiao.leituras.size() >= maximo || regiao.bytes >= maxBytes ? regiao.retirar() : null;
+        }
+        if (cheio != null) {
+            enviar(cheio);
+        }
+    }
+
+    long envelopes() {
+        return envelopes.sum();
+    }
+
+    long leituras() {
+        return leituras.sum();
+    }
+
+    HistogramaLatencia espera() {
+        return espera;
+    }
+
+    /**
+     * Stops the timer and sends whatever is still pending.
+     */
+    void fechar() {
+        varredor.shutdownNow();
+        for (Regiao regiao : regioes) {
+            Envelope pendente;
+            synchronized (regiao) {
+                pendente = regiao.leituras.isEmpty() ? null : regiao.retirar();
+            }
+            if (pendente != null) {
+                enviar(pendente);
+            }
+        }
+    }
+
+    // Timer thread: regions whose oldest reading reached the linger
+    private void varrer() {
+        long agora = System.nanoTime();
+        for (Regiao regiao : regioes) {
+            Envelope vencido;
+            synchronized (regiao) {
+                vencido = !regiao.leituras.isEmpty() && agora - regiao.primeiraNanos >= lingerNanos
+                        ? regiao.retirar() : null;
+            }
+            if (vencido != null) {
+                enviar(vencido);
+            }
+        }
+    }
+
+    private void enviar(Envelope envelope) {
+        publicador.accept(envelope.topico(), EnvelopeLote.construir(envelope.regiao(), envelope.sequencia(),
+                System.currentTimeMillis(), envelope.leituras()));
+        espera.registar(System.nanoTime() - envelope.primeiraNanos());
+        envelopes.increment();
+        leituras.add(envelope.leituras().size());
+    }
+
+    private static int bytesUtf8(String texto) {
+        int bytes = texto.length();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= 0x80) {
+                // 2 bytes up to U+07FF, 3 for the rest of the BMP; a surrogate pair is 4 (2 + 2)
+                bytes += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+            }
+        }
+        return bytes;
+    }
+
+    // Contents taken out of a region under its lock, sent outside it
+    private record Envelope(String regiao, String topico, long sequencia, List<String> leituras, long primeiraNanos) {
+    }
+
+    // Pending readings of one region (guarded by the Regiao itself)
+    private final class Regiao {
+        private final String nome;
+        private final String topico;
+        private List<String> leituras = new ArrayList<>();
+        private int bytes;
+        private long primeiraNanos;
+        private long sequencia;
+
+        Regiao(String nome, String topico) {
+            this.nome = nome;
+            this.topico = topico;
+        }
+
+        void adicionar(String payload, long agora) {
+            if (leituras.isEmpty()) {
+                primeiraNanos = agora;
+            }
+            leituras.add(payload);
+            // lotes.maxBytes is what goes on the wire (UTF-8), not chars ('°C', "Évora")
+            bytes += bytesUtf8(payload);
+        }
+
+        // The sequence is taken here, so envelopes of a region are numbered in fill order
+        Envelope retirar() {
+            Envelope envelope = new Envelope(nome, topico, ++sequencia, leituras, primeiraNanos);
+            leituras = new ArrayList<>(Math.min(maximo, 64));
+            bytes = 0;
+            return envelope;
+        }
+    }
+}
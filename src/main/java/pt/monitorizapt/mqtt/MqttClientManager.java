@@ -1,159 +1,484 @@
 package pt.monitorizapt.mqtt;
 
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
-import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
-import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
-import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
-
 import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.util.Configuracao;
+import pt.monitorizapt.util.HistogramaLatencia;
 
 /**
  * Manages the MQTT connection lifecycle.
  * Wraps the Eclipse Paho library to provide a simpler, async API for the rest of the app.
+ * The protocol version is chosen by config ({@code mqtt.versao=3|5}, see {@link TransporteMqtt});
+ * a {@code local://<nome>} URL uses the in-process {@link BarramentoLocal} instead of a broker.
+ *
+ * Reconnection is a small state machine run on one daemon thread: at most one connection
+ * attempt is in flight, failed attempts back off exponentially with jitter (so a fleet does
+ * not hit a restarted broker all at once), and on success every subscription is restored in
+ * a single SUBSCRIBE. Publishing while disconnected only drops the message and makes sure a
+ * reconnection is scheduled; it never creates threads or clients.
+ *
+ * Alerts have a lane of their own ({@link #publicarAlerta}): a bounded queue drained by a
+ * dedicated thread that publishes with a higher QoS ({@code mqtt.alertas.qos}, 1 by default).
+ * Routine readings keep publishing with QoS 0 on the caller's thread, so an alert never waits
+ * behind them in the application; while the connection is down alerts are kept (for up to
+ * {@code mqtt.alertas.validadeMs}) instead of dropped. The time from hand-off to the end of
+ * the publish (the PUBACK, with QoS 1) is tracked against {@code mqtt.alertas.sloMs}.
  */
 public class MqttClientManager {
-    private final String brokerUrl;
+    /**
+     * Reconnection counters since start (times in milliseconds).
+     *
+     * @param recuperacaoUltimaMs time from the loss of the connection to its recovery
+     */
+    public record MetricasLigacao(long quedas, long tentativasFalhadas, long descartadas,
+                                  long recuperacaoUltimaMs, long recuperacaoMaximaMs) {
+    }
+
+    /**
+     * Alert lane counters since start (latencies in milliseconds, from {@link #publicarAlerta}
+     * to the end of the publish).
+     *
+     * @param descartados alerts refused because the lane was full
+     * @param expirados   alerts that could not be published within {@code mqtt.alertas.validadeMs}
+     * @param violacoes   alerts published later than the SLO, plus the expired ones
+     */
+    public record MetricasAlertas(long publicados, long descartados, long expirados, long pendentes,
+                                  double p50Ms, double p99Ms, double maximoMs, long sloMs, long violacoes) {
+    }
+
+    /**
+     * Gateway batching counters since start ({@code lotes.ativo}).
+     *
+     * @param esperaP99Ms wait of the oldest reading of an envelope before it went out
+     */
+    public record MetricasLotes(long envelopes, long leituras, double esperaP99Ms, double esperaMaximaMs) {
+        public double leiturasPorEnvelope() {
+            return envelopes == 0 ? 0.0 : (double) leituras / envelopes;
+        }
+    }
+
+    // One alert waiting in its lane
+    private record Envio(String topico, String payload, long criadoNanos) {
+    }
+
+    // Pause between checks while an alert waits for the connection to come back
+    private static final long ESPERA_LIGACAO_MS = 50L;
+
     // Unique ID prevents the broker from kicking us out if another client has the same name
     // RM = Rodrigo Martins
     private final String clientId = "MonitorizaPT_RM_" + UUID.randomUUID();
     
-    // Thread-safe map to store command handlers (Topic -> Action)
-    private final Map<String, Consumer<String>> commandHandlers = new ConcurrentHashMap<>();
+    // Thread-safe map to store subscription handlers (Topic filter -> Action(topic, raw payload))
+    private final Map<String, BiConsumer<String, byte[]>> subscriptions = new ConcurrentHashMap<>();
     private final CopyOnWriteArrayList<Consumer<Boolean>> connectionListeners = new CopyOnWriteArrayList<>();
 
-    private MqttClient client;
+    // One wire client for the whole life of the manager, reconnected in place
+    private final TransporteMqtt transporte;
+    // $share group for "work" subscriptions (MQTT 5 only, null = every instance receives everything)
+    private final String grupoPartilha;
+
+    // Backoff bounds between reconnection attempts
+    private final long atrasoMinimo;
+    private final long atrasoMaximo;
+    // Every connection attempt runs here, one at a time
+    private final ScheduledExecutorService ligacao = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mqtt-ligacao");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // true while an attempt is scheduled or running (further requests are ignored)
+    private final AtomicBoolean tentativaPendente = new AtomicBoolean();
+    // Only touched on the connection thread
+    private int falhasSeguidas;
+    // nanoTime of the loss being recovered from (0 = none)
+    private volatile long perdidaEm;
+    private volatile boolean desligado;
+
+    private final LongAdder quedas = new LongAdder();
+    private final LongAdder tentativasFalhadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private volatile long recuperacaoUltimaMs;
+    private volatile long recuperacaoMaximaMs;
+
+    // Alert lane: its own queue and thread, never behind routine readings
+    private final BlockingQueue<Envio> filaAlertas;
+    private final Thread publicadorAlertas;
+    private final int qosAlertas;
+    private final long validadeAlertasNanos;
+    private final long sloAlertasMs;
+    private final HistogramaLatencia latenciaAlertas = new HistogramaLatencia();
+    private final LongAdder alertasDescartados = new LongAdder();
+    private final LongAdder alertasExpirados = new LongAdder();
+    private final LongAdder alertasAtrasados = new LongAdder();
+
+    // Regional batching of the routine readings (null = one message per reading)
+    private final GatewayLotes gatewayLotes;
+
+    // Optional "last will" published by the broker if we disappear without disconnecting
+    private volatile String willTopic;
+    private volatile String willPayload;
 
     public MqttClientManager(String brokerUrl) {
-        this.brokerUrl = brokerUrl;
+        this(brokerUrl, Configuracao.vazia());
+    }
+
+    public MqttClientManager(String brokerUrl, Configuracao config) {
+        if (BarramentoLocal.aceita(brokerUrl)) {
+            // In-process bus: same JVM, no network (mqtt.versao does not apply)
+            this.transporte = new TransporteLoopback(BarramentoLocal.de(brokerUrl));
+            String grupo = config.texto("mqtt.v5.grupoPartilha", "").trim();
+            this.grupoPartilha = grupo.isEmpty() ? null : grupo;
+        } else if (config.inteiro("mqtt.versao", 3L) == 5L) {
+            int aliasMaximo = (int) config.inteiro("mqtt.v5.aliasMaximo", 16L);
+            long expiracao = config.inteiro("mqtt.v5.expiracaoSegundos", 60L);
+            this.transporte = new TransportePahoV5(brokerUrl, aliasMaximo, expiracao);
+            String grupo = config.texto("mqtt.v5.grupoPartilha", "").trim();
+            this.grupoPartilha = grupo.isEmpty() ? null : grupo;
+        } else {
+            this.transporte = new TransportePahoV3(brokerUrl);
+            this.grupoPartilha = null;
+        }
+        this.atrasoMinimo = Math.max(100L, config.inteiro("mqtt.reconexao.minimoMs", 1000L));
+        this.atrasoMaximo = Math.max(atrasoMinimo, config.inteiro("mqtt.reconexao.maximoMs", 60_000L));
+
+        this.filaAlertas = new ArrayBlockingQueue<>((int) Math.max(1L, config.inteiro("mqtt.alertas.fila", 1024L)));
+        this.qosAlertas = (int) Math.min(2L, Math.max(0L, config.inteiro("mqtt.alertas.qos", 1L)));
+        this.validadeAlertasNanos = TimeUnit.MILLISECONDS.toNanos(config.inteiro("mqtt.alertas.validadeMs", 60_000L));
+        this.sloAlertasMs = config.inteiro("mqtt.alertas.sloMs", 250L);
+        this.publicadorAlertas = new Thread(this::publicarAlertas, "mqtt-alertas");
+        this.publicadorAlertas.setDaemon(true);
+        // Scheduling hint above the sensor threads (some platforms ignore it)
+        this.publicadorAlertas.setPriority(Thread.NORM_PRIORITY + 1);
+        this.publicadorAlertas.start();
+
+        this.gatewayLotes = config.booleano("lotes.ativo", false)
+                ? new GatewayLotes(this::publish, (int) config.inteiro("lotes.maximo", 100L),
+                        (int) config.inteiro("lotes.maxBytes", 32_768L), config.inteiro("lotes.lingerMs", 200L))
+                : null;
     }
 
     /**
-     * Connects to the broker asynchronously.
-     * Crucial: We use CompletableFuture to avoid freezing the UI during network operations.
+     * Starts connecting in the background (never blocks the caller, e.g. the UI).
+     * Failed attempts are retried with backoff until the connection is up.
      */
-    public CompletableFuture<Void> connectAsync() {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                connectInternal();
-            } catch (MqttException e) {
-                notifyConnection(false);
-            }
-        });
+    public void connectAsync() {
+        agendarTentativa(0L);
     }
 
-    private synchronized void connectInternal() throws MqttException {
-        if (client != null && client.isConnected()) {
+    /**
+     * Schedules one attempt unless one is already pending: with hundreds of sensors
+     * publishing while the broker is down this is a single CAS per message.
+     */
+    private void agendarTentativa(long atrasoMillis) {
+        if (desligado || !tentativaPendente.compareAndSet(false, true)) {
             return;
         }
-        // MemoryPersistence is used because we don't need to save messages to disk if the app crashes
-        client = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
-        
-        // Callback to handle connection events (Loss/Recovery)
-        client.setCallback(new MqttCallbackExtended() {
-            @Override
-            public void connectComplete(boolean reconnect, String serverURI) {
-                notifyConnection(true);
-                // If we reconnected automatically, we must re-subscribe to topics
-                reapplySubscriptions();
-            }
-
-            @Override
-            public void connectionLost(Throwable cause) {
-                notifyConnection(false);
-            }
+        try {
+            ligacao.schedule(this::tentar, atrasoMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            tentativaPendente.set(false); // shutting down
+        }
+    }
 
-            @Override
-            public void messageArrived(String topic, MqttMessage message) {
-                // Handled individually via subscribeInternal listeners
-            }
+    // Runs on the connection thread
+    private void tentar() {
+        if (ligarAgora()) {
+            tentativaPendente.set(false);
+            return;
+        }
+        if (desligado) {
+            return;
+        }
+        try {
+            // The flag stays set: this is still the same pending attempt
+            ligacao.schedule(this::tentar, proximoAtraso(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            tentativaPendente.set(false);
+        }
+    }
 
-            @Override
-            public void deliveryComplete(org.eclipse.paho.client.mqttv3.IMqttDeliveryToken token) {
-            }
-        });
+    /**
+     * One connection attempt. Only ever called on the connection thread.
+     *
+     * @return true when connected (already or now)
+     */
+    private boolean ligarAgora() {
+        if (transporte.isLigado()) {
+            return true;
+        }
+        if (desligado) {
+            return false;
+        }
+        try {
+            transporte.ligar(clientId, willTopic, willPayload, this::ligacaoPerdida);
+        } catch (TransporteException e) {
+            falhasSeguidas++;
+            tentativasFalhadas.increment();
+            notifyConnection(false);
+            return false;
+        }
+        falhasSeguidas = 0;
+        long perdida = perdidaEm;
+        if (perdida != 0L) {
+            long recuperacao = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - perdida);
+            recuperacaoUltimaMs = recuperacao;
+            recuperacaoMaximaMs = Math.max(recuperacaoMaximaMs, recuperacao);
+            perdidaEm = 0L;
+        }
+        reapplySubscriptions();
+        notifyConnection(true);
+        return true;
+    }
 
-        MqttConnectOptions options = new MqttConnectOptions();
-        options.setAutomaticReconnect(true); // Paho tries to reconnect automatically
-        options.setCleanSession(true);
-        options.setConnectionTimeout(10);
-        options.setKeepAliveInterval(30);
+    /**
+     * "Equal jitter" exponential backoff: the ceiling doubles with each failure (capped) and
+     * the delay is picked at random in its upper half, which spreads the clients of a fleet
+     * while still guaranteeing some wait.
+     */
+    private long proximoAtraso() {
+        long teto = atrasoMinimo << Math.min(falhasSeguidas, 20);
+        teto = Math.min(atrasoMaximo, teto);
+        return teto / 2 + ThreadLocalRandom.current().nextLong(teto / 2 + 1);
+    }
 
-        client.connect(options);
-        notifyConnection(true);
-        reapplySubscriptions();
+    // Called by the transport (on a Paho thread) when an established connection drops
+    private void ligacaoPerdida() {
+        quedas.increment();
+        perdidaEm = System.nanoTime();
+        notifyConnection(false);
+        // Jittered even for the first attempt: after a broker restart everyone loses at once
+        agendarTentativa(ThreadLocalRandom.current().nextLong(atrasoMinimo + 1));
     }
 
     /**
      * Ensures that if the connection drops and comes back, we start listening 
-     * to the command topics again.
+     * to the command (and other subscribed) topics again, all in one SUBSCRIBE packet.
      */
     private void reapplySubscriptions() {
-        commandHandlers.forEach((topic, handler) -> subscribeInternal(topic, handler));
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        try {
+            transporte.subscrever(new HashMap<>(subscriptions));
+        } catch (TransporteException ignored) {
+            // The connection dropped again: the next recovery restores them
+        }
     }
 
     public void publish(String topic, String payload) {
         try {
-            if (client == null || !client.isConnected()) {
-                connectAsync(); // Try to reconnect if disconnected
+            if (!transporte.isLigado()) {
+                descartadas.increment();
+                agendarTentativa(0L); // No-op when a reconnection is already on its way
                 return;
             }
             // QoS 0 (Fire and forget) is sufficient for sensor data
-            client.publish(topic, payload.getBytes(StandardCharsets.UTF_8), 0, false);
-        } catch (MqttException ignored) {
+            transporte.publicar(topic, payload.getBytes(StandardCharsets.UTF_8), 0);
+        } catch (TransporteException ignored) {
         }
     }
 
+    /**
+     * Routine reading of a sensor: published on its data topic, or handed to the regional
+     * batching gateway when {@code lotes.ativo} is set.
+     */
+    public void publicarLeitura(SensorLocalizacao localizacao, String payload) {
+        if (gatewayLotes != null) {
+            gatewayLotes.adicionar(localizacao, payload);
+        } else {
+            publish(localizacao.topicoDados(), payload);
+        }
+    }
+
+    public boolean isLotesAtivo() {
+        return gatewayLotes != null;
+    }
+
+    /**
+     * @return the batching counters, or null when batching is off
+     */
+    public MetricasLotes getMetricasLotes() {
+        if (gatewayLotes == null) {
+            return null;
+        }
+        return new MetricasLotes(gatewayLotes.envelopes(), gatewayLotes.leituras(),
+                gatewayLotes.espera().percentilMicros(0.99) / 1000.0, gatewayLotes.espera().maximoMicros() / 1000.0);
+    }
+
+    /**
+     * Priority lane: queues the message for the alert thread and returns at once. It is
+     * published with {@code mqtt.alertas.qos}; while disconnected it waits for the connection
+     * (up to {@code mqtt.alertas.validadeMs}). When the lane is full the message is dropped
+     * and counted.
+     */
+    public void publicarAlerta(String topic, String payload) {
+        if (desligado || !filaAlertas.offer(new Envio(topic, payload, System.nanoTime()))) {
+            alertasDescartados.increment();
+        }
+    }
+
+    // Alert thread
+    private void publicarAlertas() {
+        try {
+            while (!desligado) {
+                enviarAlerta(filaAlertas.take());
+            }
+        } catch (InterruptedException e) {
+            // shutdown
+        }
+        // Best effort on the way out: whatever is still queued, if the connection is up
+        Envio envio;
+        while (transporte.isLigado() && (envio = filaAlertas.poll()) != null) {
+            try {
+                transporte.publicar(envio.topico(), envio.payload().getBytes(StandardCharsets.UTF_8), qosAlertas);
+            } catch (TransporteException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Publishes one alert, retrying across reconnections until it expires.
+     */
+    private void enviarAlerta(Envio envio) throws InterruptedException {
+        byte[] bytes = envio.payload().getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            if (System.nanoTime() - envio.criadoNanos() > validadeAlertasNanos) {
+                alertasExpirados.increment();
+                return;
+            }
+            if (transporte.isLigado()) {
+                try {
+                    // Synchronous: with QoS 1 this returns once the broker acknowledged it
+                    transporte.publicar(envio.topico(), bytes, qosAlertas);
+                    long latencia = System.nanoTime() - envio.criadoNanos();
+                    latenciaAlertas.registar(latencia);
+                    if (TimeUnit.NANOSECONDS.toMillis(latencia) > sloAlertasMs) {
+                        alertasAtrasados.increment();
+                    }
+                    return;
+                } catch (TransporteException e) {
+                    // The connection dropped during the publish: retried once it is back
+                }
+            }
+            agendarTentativa(0L);
+            Thread.sleep(ESPERA_LIGACAO_MS);
+        }
+    }
+
+    public MetricasAlertas getMetricasAlertas() {
+        return new MetricasAlertas(latenciaAlertas.total(), alertasDescartados.sum(), alertasExpirados.sum(),
+                filaAlertas.size(), latenciaAlertas.percentilMicros(0.50) / 1000.0,
+                latenciaAlertas.percentilMicros(0.99) / 1000.0, latenciaAlertas.maximoMicros() / 1000.0,
+                sloAlertasMs, alertasAtrasados.sum() + alertasExpirados.sum());
+    }
+
+    /**
+     * Commands are never shared: every instance keeps the configuration of the whole fleet
+     * (standalone replicas, or cluster nodes taking over a sensor), so all must apply them.
+     */
     public void registerCommandHandler(SensorLocalizacao localizacao, Consumer<String> handler) {
-        String topic = localizacao.topicoComandos();
-        commandHandlers.put(topic, handler);
-        subscribeInternal(topic, handler);
+        subscribe(localizacao.topicoComandos(), (topic, payload) -> handler.accept(payload));
     }
 
-    private void subscribeInternal(String topic, Consumer<String> handler) {
-        if (client == null || !client.isConnected()) {
-            return;
+    /**
+     * Generic subscription. The filter may use MQTT wildcards ('+' and '#'), so the handler
+     * also receives the concrete topic of each message.
+     */
+    public void subscribe(String topicFilter, BiConsumer<String, String> handler) {
+        subscribeBytes(topicFilter, adaptar(handler));
+    }
+
+    /**
+     * Same as {@link #subscribe}, with the payload as received. Nothing is decoded or copied:
+     * on the local:// bus every subscriber gets the publisher's array, so the handler must
+     * treat it as read-only (and can decode it later, off the delivery thread).
+     */
+    public void subscribeBytes(String topicFilter, BiConsumer<String, byte[]> handler) {
+        subscriptions.put(topicFilter, handler);
+        subscribeInternal(topicFilter, handler);
+    }
+
+    /**
+     * Work subscription: with MQTT 5 and {@code mqtt.v5.grupoPartilha} set, the broker delivers
+     * each message to only one instance of the group, so several instances split the load
+     * (used by the ingest service). Otherwise it is a regular subscription.
+     */
+    public void subscribeShared(String topicFilter, BiConsumer<String, String> handler) {
+        subscribeSharedBytes(topicFilter, adaptar(handler));
+    }
+
+    /**
+     * {@link #subscribeShared} with the raw payload, as in {@link #subscribeBytes}.
+     */
+    public void subscribeSharedBytes(String topicFilter, BiConsumer<String, byte[]> handler) {
+        subscribeBytes(grupoPartilha == null ? topicFilter : FiltroTopico.partilhado(grupoPartilha, topicFilter), handler);
+    }
+
+    /**
+     * Must be called before connecting. The broker publishes this message for us if the
+     * connection dies without a clean disconnect (used by the cluster to detect dead nodes).
+     */
+    public void setWill(String topic, String payload) {
+        this.willTopic = topic;
+        this.willPayload = payload;
+    }
+
+    private void subscribeInternal(String topic, BiConsumer<String, byte[]> handler) {
+        if (!transporte.isLigado()) {
+            return; // Applied on (re)connection
         }
-        // Listener that triggers the specific handler when a message arrives on this topic
-        IMqttMessageListener listener = (receivedTopic, message) -> 
-            handler.accept(new String(message.getPayload(), StandardCharsets.UTF_8));
-        
         try {
-            client.subscribe(topic, listener);
-        } catch (MqttException ignored) {
+            transporte.subscrever(topic, handler);
+        } catch (TransporteException ignored) {
         }
     }
 
+    // Listener that triggers the specific handler when a message arrives on this topic
+    // (decodes once per message and subscription: hot consumers use subscribeBytes)
+    private static BiConsumer<String, byte[]> adaptar(BiConsumer<String, String> handler) {
+        return (receivedTopic, payload) -> handler.accept(receivedTopic, new String(payload, StandardCharsets.UTF_8));
+    }
+
     /**
-     * Async check used by the "Test Connection" button in the UI.
+     * Async check used by the "Test Connection" button in the UI. Runs on the connection
+     * thread, so it never races with a scheduled reconnection.
      */
     public CompletableFuture<Boolean> testConnectionAsync() {
         return CompletableFuture.supplyAsync(() -> {
-            if (isConnected()) {
-                return true;
+            boolean ligado = ligarAgora();
+            if (!ligado) {
+                agendarTentativa(proximoAtraso());
             }
-            try {
-                connectInternal();
-                return true;
-            } catch (MqttException e) {
-                notifyConnection(false);
-                return false;
-            }
-        });
+            return ligado;
+        }, ligacao);
     }
 
     public boolean isConnected() {
-        return client != null && client.isConnected();
+        return transporte.isLigado();
+    }
+
+    public MetricasLigacao getMetricasLigacao() {
+        return new MetricasLigacao(quedas.sum(), tentativasFalhadas.sum(), descartadas.sum(),
+                recuperacaoUltimaMs, recuperacaoMaximaMs);
     }
 
     public void registerConnectionListener(Consumer<Boolean> listener) {
@@ -164,13 +489,20 @@ public class MqttClientManager {
         connectionListeners.forEach(listener -> listener.accept(connected));
     }
 
-    public synchronized void shutdown() {
-        if (client != null) {
-            try {
-                client.disconnectForcibly(1000, 1000);
-                client.close(true);
-            } catch (MqttException ignored) {
-            }
+    public void shutdown() {
+        if (gatewayLotes != null) {
+            // Pending envelopes go out while the connection is still there
+            gatewayLotes.fechar();
+        }
+        desligado = true;
+        publicadorAlertas.interrupt();
+        try {
+            // Lets the lane flush what it still holds before the client goes away
+            publicadorAlertas.join(2000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        ligacao.shutdownNow();
+        transporte.fechar();
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package pt.monitorizapt.mqtt;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.SocketFactory;
+
+/**
+ * Plain TCP sockets with Nagle's algorithm off. Paho leaves it on, so a small PUBLISH written
+ * while the previous one is still unacknowledged waits for the broker's delayed ACK (about
+ * 40 ms on Linux): an alert sent right after a burst of routine readings paid that on every
+ * message. Only used for {@code tcp://} URLs; TLS keeps Paho's own factory.
+ */
+final class SocketsSemAtraso extends SocketFactory {
+    static final SocketsSemAtraso INSTANCIA = new SocketsSemAtraso();
+
+    private SocketsSemAtraso() {
+    }
+
+    static boolean aplicavel(String brokerUrl) {
+        return brokerUrl.startsWith("tcp://");
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return semAtraso(new Socket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int porta) throws IOException {
+        return semAtraso(new Socket(host, porta));
+    }
+
+    @Override
+    public Socket createSocket(String host, int porta, InetAddress local, int portaLocal) throws IOException {
+        return semAtraso(new Socket(host, porta, local, portaLocal));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int porta) throws IOException {
+        return semAtraso(new Socket(host, porta));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int porta, InetAddress local, int portaLocal) throws IOException {
+        return semAtraso(new Socket(host, porta, local, portaLocal));
+    }
+
+    private static Socket semAtraso(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+}
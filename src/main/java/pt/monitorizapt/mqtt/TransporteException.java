@@ -0,0 +1,13 @@
+package pt.monitorizapt.mqtt;
+
+/**
+ * Checked failure of a {@link TransporteMqtt} operation, wrapping the version-specific
+ * Paho exception (v3 and v5 have unrelated exception classes).
+ */
+public class TransporteException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public TransporteException(String mensagem, Throwable causa) {
+        super(mensagem, causa);
+    }
+}
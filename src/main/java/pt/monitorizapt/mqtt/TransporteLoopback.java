@@ -0,0 +1,95 @@
+package pt.monitorizapt.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * In-process transport ({@code broker.url=local://<nome>}): talks to a {@link BarramentoLocal}
+ * instead of a broker, so publishing is a method call and no socket is ever opened.
+ * Chosen by {@link MqttClientManager} from the URL, like the Paho versions from config.
+ */
+class TransporteLoopback implements TransporteMqtt {
+    private final BarramentoLocal barramento;
+    private volatile String clienteId;
+    private volatile Eventos eventos;
+    private volatile boolean ligado;
+    private volatile String willTopic;
+    private volatile byte[] willPayload;
+
+    TransporteLoopback(BarramentoLocal barramento) {
+        this.barramento = barramento;
+    }
+
+    @Override
+    public void ligar(String clientId, String willTopic, String willPayload, Eventos eventos) throws TransporteException {
+        if (ligado) {
+            return;
+        }
+        this.clienteId = clientId;
+        this.eventos = eventos;
+        this.willTopic = willTopic;
+        this.willPayload = willPayload == null ? null : willPayload.getBytes(StandardCharsets.UTF_8);
+        barramento.ligar(this);
+        ligado = true;
+    }
+
+    @Override
+    public boolean isLigado() {
+        return ligado;
+    }
+
+    @Override
+    public void publicar(String topico, byte[] payload, int qos) throws TransporteException {
+        if (!ligado) {
+            throw new TransporteException("Sem ligação a " + BarramentoLocal.ESQUEMA + barramento.getNome(), null);
+        }
+        if (topico.indexOf('+') >= 0 || topico.indexOf('#') >= 0) {
+            throw new TransporteException("Tópico de publicação com wildcard: " + topico, null);
+        }
+        barramento.entregar(topico, payload);
+    }
+
+    @Override
+    public void subscrever(Map<String, BiConsumer<String, byte[]>> handlers) throws TransporteException {
+        if (!ligado) {
+            throw new TransporteException("Sem ligação a " + BarramentoLocal.ESQUEMA + barramento.getNome(), null);
+        }
+        handlers.forEach((filtro, handler) -> barramento.subscrever(this, filtro, handler));
+    }
+
+    @Override
+    public void fechar() {
+        // Clean disconnect: the last will is not published
+        ligado = false;
+        barramento.desligar(this);
+    }
+
+    @Override
+    public String descricao() {
+        return "Loopback " + BarramentoLocal.ESQUEMA + barramento.getNome();
+    }
+
+    // --- Used by BarramentoLocal ---
+
+    String clienteId() {
+        return clienteId;
+    }
+
+    String willTopic() {
+        return willTopic;
+    }
+
+    byte[] willPayload() {
+        return willPayload;
+    }
+
+    // The bus dropped this client (restart or simulated failure)
+    void perdida() {
+        ligado = false;
+        Eventos atuais = eventos;
+        if (atuais != null) {
+            atuais.ligacaoPerdida();
+        }
+    }
+}
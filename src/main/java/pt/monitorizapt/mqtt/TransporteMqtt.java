@@ -0,0 +1,55 @@
+package pt.monitorizapt.mqtt;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Wire-level MQTT client behind {@link MqttClientManager}.
+ * Keeps the protocol version (Paho v3 or v5, or the in-process {@link TransporteLoopback})
+ * out of the rest of the application:
+ * the manager only deals with topics, byte payloads and connection events.
+ *
+ * Transports never reconnect on their own: the manager decides when to call {@link #ligar}
+ * again, and the same instance (and underlying client) is reused for every attempt.
+ */
+public interface TransporteMqtt {
+
+    /**
+     * Connection events raised by the underlying client (possibly on its own threads).
+     */
+    interface Eventos {
+        void ligacaoPerdida();
+    }
+
+    /**
+     * Opens the connection (blocking). May be called again after the connection was lost.
+     *
+     * @param willTopic optional "last will" topic (null for none), published with QoS 1
+     */
+    void ligar(String clientId, String willTopic, String willPayload, Eventos eventos) throws TransporteException;
+
+    boolean isLigado();
+
+    void publicar(String topico, byte[] payload, int qos) throws TransporteException;
+
+    /**
+     * @param handler receives the concrete topic and the payload of each message
+     */
+    default void subscrever(String filtro, BiConsumer<String, byte[]> handler) throws TransporteException {
+        subscrever(Map.of(filtro, handler));
+    }
+
+    /**
+     * Subscribes several filters in a single SUBSCRIBE packet (used to restore every
+     * subscription at once after a reconnect).
+     */
+    void subscrever(Map<String, BiConsumer<String, byte[]>> handlers) throws TransporteException;
+
+    /**
+     * Disconnects and releases the client; the instance is not reused afterwards.
+     */
+    void fechar();
+
+    // Protocol label for logs and the benchmark (e.g. "MQTT 3.1.1")
+    String descricao();
+}
@@ -0,0 +1,116 @@
+package pt.monitorizapt.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+/**
+ * MQTT 3.1.1 transport (the original Paho v3 client). Default, works with any broker.
+ */
+class TransportePahoV3 implements TransporteMqtt {
+    private final String brokerUrl;
+    private MqttClient client;
+
+    TransportePahoV3(String brokerUrl) {
+        this.brokerUrl = brokerUrl;
+    }
+
+    @Override
+    public void ligar(String clientId, String willTopic, String willPayload, Eventos eventos) throws TransporteException {
+        try {
+            if (client == null) {
+                // MemoryPersistence is used because we don't need to save messages to disk if the app crashes
+                client = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
+
+                client.setCallback(new MqttCallback() {
+                    @Override
+                    public void connectionLost(Throwable cause) {
+                        eventos.ligacaoPerdida();
+                    }
+
+                    @Override
+                    public void messageArrived(String topic, MqttMessage message) {
+                        // Handled individually via the subscription listeners
+                    }
+
+                    @Override
+                    public void deliveryComplete(IMqttDeliveryToken token) {
+                    }
+                });
+            }
+
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setAutomaticReconnect(false); // MqttClientManager owns the reconnection
+            options.setCleanSession(true);
+            options.setConnectionTimeout(10);
+            options.setKeepAliveInterval(30);
+            if (SocketsSemAtraso.aplicavel(brokerUrl)) {
+                options.setSocketFactory(SocketsSemAtraso.INSTANCIA);
+            }
+            if (willTopic != null) {
+                options.setWill(willTopic, willPayload.getBytes(StandardCharsets.UTF_8), 1, false);
+            }
+            client.connect(options);
+        } catch (MqttException e) {
+            throw new TransporteException("Falha ao ligar a " + brokerUrl, e);
+        }
+    }
+
+    @Override
+    public boolean isLigado() {
+        return client != null && client.isConnected();
+    }
+
+    @Override
+    public void publicar(String topico, byte[] payload, int qos) throws TransporteException {
+        try {
+            client.publish(topico, payload, qos, false);
+        } catch (MqttException e) {
+            throw new TransporteException("Falha ao publicar em " + topico, e);
+        }
+    }
+
+    @Override
+    public void subscrever(Map<String, BiConsumer<String, byte[]>> handlers) throws TransporteException {
+        String[] filtros = new String[handlers.size()];
+        int[] qos = new int[filtros.length];
+        IMqttMessageListener[] listeners = new IMqttMessageListener[filtros.length];
+        int i = 0;
+        for (Map.Entry<String, BiConsumer<String, byte[]>> entrada : handlers.entrySet()) {
+            BiConsumer<String, byte[]> handler = entrada.getValue();
+            filtros[i] = entrada.getKey();
+            listeners[i++] = (topico, mensagem) -> handler.accept(topico, mensagem.getPayload());
+        }
+        try {
+            client.subscribe(filtros, qos, listeners);
+        } catch (MqttException e) {
+            throw new TransporteException("Falha ao subscrever " + String.join(", ", filtros), e);
+        }
+    }
+
+    @Override
+    public void fechar() {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.disconnectForcibly(1000, 1000);
+            client.close(true);
+        } catch (MqttException ignored) {
+        }
+    }
+
+    @Override
+    public String descricao() {
+        return "MQTT 3.1.1";
+    }
+}
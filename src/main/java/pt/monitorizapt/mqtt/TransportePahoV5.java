@@ -0,0 +1,173 @@
+package pt.monitorizapt.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+/**
+ * MQTT 5 transport.
+ *
+ * - Topic aliases: we accept up to {@code aliasMaximo} aliases from the broker, and Paho
+ *   replaces our long outgoing topics by a 2-byte alias after the first publish whenever
+ *   the broker advertises its own maximum.
+ * - Message expiry: readings older than {@code expiracaoSegundos} are discarded by the broker
+ *   instead of being delivered late to queued/offline subscribers.
+ * - Shared subscriptions ($share/...) are built by the manager; here they are just filters.
+ */
+class TransportePahoV5 implements TransporteMqtt {
+    private record Subscricao(String filtro, BiConsumer<String, byte[]> handler) {
+    }
+
+    private final String brokerUrl;
+    private final int aliasMaximo;
+    private final long expiracaoSegundos;
+    // Messages are dispatched here from the single client callback
+    private final List<Subscricao> subscricoes = new CopyOnWriteArrayList<>();
+    private MqttClient client;
+    // Alias maximum advertised by the broker in CONNACK (0 = the broker does not accept aliases)
+    private volatile int aliasServidor;
+
+    TransportePahoV5(String brokerUrl, int aliasMaximo, long expiracaoSegundos) {
+        this.brokerUrl = brokerUrl;
+        this.aliasMaximo = aliasMaximo;
+        this.expiracaoSegundos = expiracaoSegundos;
+    }
+
+    @Override
+    public void ligar(String clientId, String willTopic, String willPayload, Eventos eventos) throws TransporteException {
+        try {
+            if (client == null) {
+                client = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
+                client.setCallback(criarCallback(eventos));
+            }
+
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setAutomaticReconnect(false); // MqttClientManager owns the reconnection
+            options.setCleanStart(true);
+            options.setConnectionTimeout(10);
+            options.setKeepAliveInterval(30);
+            if (SocketsSemAtraso.aplicavel(brokerUrl)) {
+                options.setSocketFactory(SocketsSemAtraso.INSTANCIA);
+            }
+            options.setTopicAliasMaximum(aliasMaximo);
+            if (willTopic != null) {
+                MqttMessage will = new MqttMessage(willPayload.getBytes(StandardCharsets.UTF_8));
+                will.setQos(1);
+                options.setWill(willTopic, will);
+            }
+            IMqttToken resultado = client.connectWithResult(options);
+            MqttProperties connack = resultado.getResponseProperties();
+            aliasServidor = connack == null || connack.getTopicAliasMaximum() == null ? 0 : connack.getTopicAliasMaximum();
+        } catch (MqttException e) {
+            throw new TransporteException("Falha ao ligar a " + brokerUrl, e);
+        }
+    }
+
+    private MqttCallback criarCallback(Eventos eventos) {
+        return new MqttCallback() {
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+            }
+
+            @Override
+            public void disconnected(MqttDisconnectResponse resposta) {
+                eventos.ligacaoPerdida();
+            }
+
+            @Override
+            public void messageArrived(String topico, MqttMessage mensagem) {
+                byte[] payload = mensagem.getPayload();
+                for (Subscricao subscricao : subscricoes) {
+                    if (FiltroTopico.corresponde(subscricao.filtro(), topico)) {
+                        subscricao.handler().accept(topico, payload);
+                    }
+                }
+            }
+
+            @Override
+            public void mqttErrorOccurred(MqttException exception) {
+            }
+
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+            }
+
+            @Override
+            public void authPacketArrived(int reasonCode, MqttProperties properties) {
+            }
+        };
+    }
+
+    @Override
+    public boolean isLigado() {
+        return client != null && client.isConnected();
+    }
+
+    @Override
+    public void publicar(String topico, byte[] payload, int qos) throws TransporteException {
+        MqttMessage mensagem = new MqttMessage(payload);
+        mensagem.setQos(qos);
+        if (expiracaoSegundos > 0) {
+            MqttProperties propriedades = new MqttProperties();
+            propriedades.setMessageExpiryInterval(expiracaoSegundos);
+            mensagem.setProperties(propriedades);
+        }
+        try {
+            client.publish(topico, mensagem);
+        } catch (MqttException e) {
+            throw new TransporteException("Falha ao publicar em " + topico, e);
+        }
+    }
+
+    @Override
+    public void subscrever(Map<String, BiConsumer<String, byte[]>> handlers) throws TransporteException {
+        String[] filtros = new String[handlers.size()];
+        int[] qos = new int[filtros.length];
+        int i = 0;
+        for (Map.Entry<String, BiConsumer<String, byte[]>> entrada : handlers.entrySet()) {
+            // Re-subscribing after a reconnect must not register the handler twice
+            String local = FiltroTopico.semPartilha(entrada.getKey());
+            subscricoes.removeIf(subscricao -> subscricao.filtro().equals(local));
+            subscricoes.add(new Subscricao(local, entrada.getValue()));
+            filtros[i++] = entrada.getKey();
+        }
+        try {
+            client.subscribe(filtros, qos);
+        } catch (MqttException e) {
+            throw new TransporteException("Falha ao subscrever " + String.join(", ", filtros), e);
+        }
+    }
+
+    @Override
+    public void fechar() {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.disconnectForcibly(1000, 1000);
+            client.close(true);
+        } catch (MqttException ignored) {
+        }
+    }
+
+    int getAliasServidor() {
+        return aliasServidor;
+    }
+
+    @Override
+    public String descricao() {
+        return "MQTT 5";
+    }
+}
@@ -0,0 +1,95 @@
+package pt.monitorizapt.sensors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.monitorizapt.alert.MotorAlertas;
+import pt.monitorizapt.domain.CanalEstacao;
+import pt.monitorizapt.domain.DadosSensor;
+import pt.monitorizapt.domain.HistoricoLeituras;
+import pt.monitorizapt.domain.SensorAbstrato;
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.util.Configuracao;
+import pt.monitorizapt.util.JsonPayloadBuilder;
+
+/**
+ * A station measuring several metrics at one location ({@code estacoes.ativo=true}).
+ *
+ * Every tick samples all of them on the one station thread and publishes a single payload
+ * with a single hash ({@link JsonPayloadBuilder#buildPayloadEstacao}), instead of one thread,
+ * message and hash per metric. The main metric is the station itself (same ID, topic and
+ * fields as the single-metric sensor it replaces); the others are {@link CanalEstacao}s, so
+ * the listeners (table, CSV, rollups, dashboard) still get one reading per metric.
+ *
+ * Activation, interval and adaptive sampling are per station (adaptive mode follows the main
+ * metric); alert rules and history are per metric.
+ */
+public class EstacaoMultimetrica extends SensorAbstrato {
+    private final JsonPayloadBuilder payloadBuilder;
+    private final List<CanalEstacao> canais;
+
+    public EstacaoMultimetrica(SensorLocalizacao localizacao,
+                               SensorTipo principal,
+                               List<SensorTipo> metricas,
+                               JsonPayloadBuilder payloadBuilder,
+                               MqttClientManager mqttClientManager,
+                               MotorAlertas motorAlertas,
+                               Configuracao configuracao) {
+        super(principal, localizacao, payloadBuilder, mqttClientManager, motorAlertas, configuracao);
+        this.payloadBuilder = payloadBuilder;
+        List<CanalEstacao> extra = new ArrayList<>();
+        for (SensorTipo tipo : metricas) {
+            if (tipo != principal) {
+                extra.add(new CanalEstacao(this, tipo, motorAlertas,
+                        HistoricoLeituras.criar((int) configuracao.inteiro("historico.capacidade", 1024L),
+                                configuracao.booleano("historico.foraHeap", false))));
+            }
+        }
+        this.canais = List.copyOf(extra);
+    }
+
+    @Override
+    public List<CanalEstacao> getCanais() {
+        return canais;
+    }
+
+    @Override
+    protected DadosSensor gerarDadosEspecificos() {
+        // One timestamp for the whole tick: the metrics are one observation
+        long timestamp = System.currentTimeMillis();
+        for (CanalEstacao canal : canais) {
+            canal.amostrar(GeradorValores.gerar(canal.getTipo()), timestamp);
+        }
+        double valor = GeradorValores.gerar(getTipo());
+        boolean alerta = avaliarAlerta(valor, timestamp);
+        return new DadosSensor(valor, getTipo().unidadePadrao(), alerta, timestamp);
+    }
+
+    @Override
+    protected String construirPayload(DadosSensor leitura) {
+        return payloadBuilder.buildPayloadEstacao(this, leitura, canais);
+    }
+
+    // Any metric in alert sends the whole tick through the alert lane
+    @Override
+    protected boolean alertaNoCiclo(DadosSensor leitura) {
+        if (leitura.alerta()) {
+            return true;
+        }
+        for (CanalEstacao canal : canais) {
+            if (canal.ultimaLeitura().alerta()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void notificarCanais(String payload) {
+        for (CanalEstacao canal : canais) {
+            notificar(canal, canal.ultimaLeitura(), payload);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pt.monitorizapt.sensors;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import pt.monitorizapt.domain.SensorTipo;
+
+/**
+ * Simulated value of each metric, shared by the single-metric sensors and the stations so
+ * both produce the same distributions.
+ */
+public final class GeradorValores {
+    private GeradorValores() {
+    }
+
+    public static double gerar(SensorTipo tipo) {
+        // ThreadLocalRandom is preferred over Random in multi-threaded apps
+        // to reduce contention.
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (tipo) {
+            case TEMPERATURA -> temperatura(random);
+            case HUMIDADE -> humidade(random);
+            case QUALIDADE_AR -> qualidadeAr(random);
+        };
+    }
+
+    private static double temperatura(ThreadLocalRandom random) {
+        // Simulate normal range
+        double valor = random.nextDouble(16.0, 31.5);
+
+        // 8% chance of extreme cold, 12% chance of extreme heat (outliers)
+        if (random.nextDouble() < 0.08) {
+            valor = random.nextDouble(-45.0, -5.0);
+        } else if (random.nextDouble() < 0.12) {
+            valor = random.nextDouble(31.5, 48.0);
+        }
+        return valor;
+    }
+
+    private static double humidade(ThreadLocalRandom random) {
+        // Normal range for humidity
+        double valor = random.nextDouble(45.0, 78.0);
+
+        // Simulate sensor errors or extreme weather
+        if (random.nextDouble() < 0.10) {
+            valor = random.nextDouble(0.0, 15.0); // Too dry
+        } else if (random.nextDouble() < 0.10) {
+            valor = random.nextDouble(81.0, 95.0); // Too humid
+        }
+        return valor;
+    }
+
+    private static double qualidadeAr(ThreadLocalRandom random) {
+        double valor = random.nextDouble(5.0, 45.0);
+
+        // 15% chance of pollution spike
+        if (random.nextDouble() < 0.15) {
+            valor = random.nextDouble(51.0, 120.0);
+        } else if (random.nextDouble() < 0.05) {
+            valor = random.nextDouble(-10.0, 0.0); // Simulation of hardware error
+        }
+        return valor;
+    }
+}
@@ -1,36 +1,28 @@
 package pt.monitorizapt.sensors;
 
-import java.util.concurrent.ThreadLocalRandom;
-
+import pt.monitorizapt.alert.MotorAlertas;
 import pt.monitorizapt.domain.DadosSensor;
 import pt.monitorizapt.domain.SensorAbstrato;
 import pt.monitorizapt.domain.SensorLocalizacao;
 import pt.monitorizapt.domain.SensorTipo;
 import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.util.Configuracao;
 import pt.monitorizapt.util.JsonPayloadBuilder;
 
 public class SensorHumidade extends SensorAbstrato {
     public SensorHumidade(SensorLocalizacao localizacao,
                           JsonPayloadBuilder payloadBuilder,
-                          MqttClientManager mqttClientManager) {
-        super(SensorTipo.HUMIDADE, localizacao, payloadBuilder, mqttClientManager);
+                          MqttClientManager mqttClientManager,
+                          MotorAlertas motorAlertas,
+                          Configuracao configuracao) {
+        super(SensorTipo.HUMIDADE, localizacao, payloadBuilder, mqttClientManager, motorAlertas, configuracao);
     }
 
     @Override
     protected DadosSensor gerarDadosEspecificos() {
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        
-        // Normal range for humidity
-        double valor = random.nextDouble(45.0, 78.0);
-        
-        // Simulate sensor errors or extreme weather
-        if (random.nextDouble() < 0.10) {
-            valor = random.nextDouble(0.0, 15.0); // Too dry
-        } else if (random.nextDouble() < 0.10) {
-            valor = random.nextDouble(81.0, 95.0); // Too humid
-        }
-        
-        boolean alerta = valor > 80.0;
-        return new DadosSensor(valor, SensorTipo.HUMIDADE.unidadePadrao(), alerta, System.currentTimeMillis());
+        double valor = GeradorValores.gerar(SensorTipo.HUMIDADE);
+        long timestamp = System.currentTimeMillis();
+        boolean alerta = avaliarAlerta(valor, timestamp);
+        return new DadosSensor(valor, SensorTipo.HUMIDADE.unidadePadrao(), alerta, timestamp);
     }
-}
\ No newline at end of file
+}
@@ -1,38 +1,28 @@
 package pt.monitorizapt.sensors;
 
-import java.util.concurrent.ThreadLocalRandom;
-
+import pt.monitorizapt.alert.MotorAlertas;
 import pt.monitorizapt.domain.DadosSensor;
 import pt.monitorizapt.domain.SensorAbstrato;
 import pt.monitorizapt.domain.SensorLocalizacao;
 import pt.monitorizapt.domain.SensorTipo;
 import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.util.Configuracao;
 import pt.monitorizapt.util.JsonPayloadBuilder;
 
 public class SensorTemperatura extends SensorAbstrato {
     public SensorTemperatura(SensorLocalizacao localizacao,
                              JsonPayloadBuilder payloadBuilder,
-                             MqttClientManager mqttClientManager) {
-        super(SensorTipo.TEMPERATURA, localizacao, payloadBuilder, mqttClientManager);
+                             MqttClientManager mqttClientManager,
+                             MotorAlertas motorAlertas,
+                             Configuracao configuracao) {
+        super(SensorTipo.TEMPERATURA, localizacao, payloadBuilder, mqttClientManager, motorAlertas, configuracao);
     }
 
     @Override
     protected DadosSensor gerarDadosEspecificos() {
-        // ThreadLocalRandom is preferred over Random in multi-threaded apps 
-        // to reduce contention.
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        
-        // Simulate normal range
-        double valor = random.nextDouble(16.0, 31.5);
-        
-        // 8% chance of extreme cold, 12% chance of extreme heat (outliers)
-        if (random.nextDouble() < 0.08) {
-            valor = random.nextDouble(-45.0, -5.0);
-        } else if (random.nextDouble() < 0.12) {
-            valor = random.nextDouble(31.5, 48.0);
-        }
-        
-        boolean alerta = valor > 30.0;
-        return new DadosSensor(valor, SensorTipo.TEMPERATURA.unidadePadrao(), alerta, System.currentTimeMillis());
+        double valor = GeradorValores.gerar(SensorTipo.TEMPERATURA);
+        long timestamp = System.currentTimeMillis();
+        boolean alerta = avaliarAlerta(valor, timestamp);
+        return new DadosSensor(valor, SensorTipo.TEMPERATURA.unidadePadrao(), alerta, timestamp);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package pt.monitorizapt.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import pt.monitorizapt.util.BaldeTokens;
+import pt.monitorizapt.util.Configuracao;
+
+/**
+ * Admission of remote commands, checked before a command is even parsed.
+ *
+ * Anyone can publish on the command topics, and commands arrive on the MQTT client's delivery
+ * thread: a flood handled there would hold back every other subscription. So each message is
+ * first compared with the last command admitted for the same sensor (an identical one inside
+ * {@code comandos.coalescerMs} is a repeat and is ignored), then has to take a token from the
+ * bucket of its topic and from the global one. A refused message costs a string compare and
+ * two bucket checks; only the counters remember it.
+ */
+public class AdmissaoComandos {
+    public enum Decisao {
+        ADMITIDO, REPETIDO, EXCESSO_TOPICO, EXCESSO_GLOBAL
+    }
+
+    /**
+     * Counters since start.
+     */
+    public record Estatisticas(long admitidos, long repetidos, long excessoTopico, long excessoGlobal, long invalidos) {
+        public long rejeitados() {
+            return repetidos + excessoTopico + excessoGlobal + invalidos;
+        }
+    }
+
+    private final BaldeTokens global;
+    private final Topico[] topicos;
+    private final long janelaRepeticaoNanos;
+
+    private final LongAdder admitidos = new LongAdder();
+    private final LongAdder repetidos = new LongAdder();
+    private final LongAdder excessoTopico = new LongAdder();
+    private final LongAdder excessoGlobal = new LongAdder();
+    private final LongAdder invalidos = new LongAdder();
+
+    public AdmissaoComandos(int numeroTopicos, Configuracao config) {
+        double taxa = config.decimal("comandos.taxaPorSegundo", 2.0);
+        double rajada = config.decimal("comandos.rajada", 5.0);
+        this.global = new BaldeTokens(config.decimal("comandos.taxaGlobal", 20.0), config.decimal("comandos.rajadaGlobal", 40.0));
+        this.topicos = new Topico[numeroTopicos];
+        for (int i = 0; i < numeroTopicos; i++) {
+            topicos[i] = new Topico(new BaldeTokens(taxa, rajada));
+        }
+        this.janelaRepeticaoNanos = TimeUnit.MILLISECONDS.toNanos(config.inteiro("comandos.coalescerMs", 2000L));
+    }
+
+    /**
+     * @param topico index of the command topic (the sensor ordinal)
+     */
+    public Decisao admitir(int topico, String comando) {
+        Decisao decisao = topicos[topico].admitir(comando, global, janelaRepeticaoNanos);
+        switch (decisao) {
+            case ADMITIDO -> admitidos.increment();
+            case REPETIDO -> repetidos.increment();
+            case EXCESSO_TOPICO -> excessoTopico.increment();
+            case EXCESSO_GLOBAL -> excessoGlobal.increment();
+        }
+        return decisao;
+    }
+
+    /**
+     * An admitted message that turned out not to be a command.
+     */
+    public void registarInvalido() {
+        admitidos.decrement();
+        invalidos.increment();
+    }
+
+    public Estatisticas estatisticas() {
+        return new Estatisticas(admitidos.sum(), repetidos.sum(), excessoTopico.sum(), excessoGlobal.sum(), invalidos.sum());
+    }
+
+    private static final class Topico {
+        private final BaldeTokens balde;
+        // Last admitted command and when (guarded by 'this')
+        private String ultimo;
+        private long ultimoNanos;
+
+        Topico(BaldeTokens balde) {
+            this.balde = balde;
+        }
+
+        synchronized Decisao admitir(String comando, BaldeTokens global, long janelaNanos) {
+            long agora = System.nanoTime();
+            if (comando.equals(ultimo) && agora - ultimoNanos < janelaNanos) {
+                return Decisao.REPETIDO;
+            }
+            if (!balde.tentar()) {
+                return Decisao.EXCESSO_TOPICO;
+            }
+            if (!global.tentar()) {
+                balde.devolver(); // this topic did not get to use it
+                return Decisao.EXCESSO_GLOBAL;
+            }
+            ultimo = comando;
+            ultimoNanos = agora;
+            return Decisao.ADMITIDO;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package pt.monitorizapt.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import pt.monitorizapt.util.Configuracao;
+import pt.monitorizapt.util.FormatadorDecimal;
+
+/**
+ * Retention-driven downsampling of the CSV logs, run by {@link ManutencaoCsv} on its thread.
+ *
+ * Raw daily logs older than {@code csv.compactacao.horarioDias} are rolled into one row per
+ * sensor and hour ({@code horario/<local>_<dia>.csv}); hourly files older than
+ * {@code csv.compactacao.diarioDias} are rolled into one row per sensor and day
+ * ({@code diario/<local>_<mes>.csv}). Each row keeps count, min, max, mean and readings in
+ * alert, and the files keep the TIMESTAMP_ISO/TIMESTAMP_UNIX header, so the history panel
+ * opens them like any log.
+ *
+ * Every source is streamed once, line by line. The result is written to a temp file and
+ * renamed, then a marker ({@code <target>.feito}) listing the sources is written, and only
+ * then are the sources deleted (or moved to {@code arquivo/}) and the marker removed. A crash
+ * before the marker just redoes the same work on the next sweep (every source is still there,
+ * and a period already present in the target is replaced, never added twice). A crash after
+ * it leaves the target complete: the next sweep first retires the sources the marker lists,
+ * without reading them again, so a day whose parts were only partly removed is never
+ * re-aggregated from what is left. A part that exists both as {@code .csv} and {@code .csv.gz}
+ * (compression renamed the archive but did not get to delete the original) is read once,
+ * from the archive.
+ */
+class CompactacaoCsv {
+    static final String CABECALHO = "TIMESTAMP_ISO;TIMESTAMP_UNIX;SENSOR_ID;LOCALIZACAO;TIPO;UNIDADE;"
+            + "CONTAGEM;MINIMO;MAXIMO;MEDIA;ALERTAS";
+    static final String DIRETORIA_HORARIA = "horario";
+    static final String DIRETORIA_DIARIA = "diario";
+    static final String DIRETORIA_ARQUIVO = "arquivo";
+    static final String SUFIXO_MARCA = ".feito";
+
+    // <local>_<yyyy-MM-dd>[_<parte>].csv[.gz], as written by CsvLogService
+    private static final Pattern NOME_BRUTO = Pattern.compile("(.+)_(\\d{4}-\\d{2}-\\d{2})(?:_\\d+)?\\.csv(?:\\.gz)?");
+    private static final Pattern NOME_HORARIO = Pattern.compile("(.+)_(\\d{4}-\\d{2})-\\d{2}\\.csv");
+    private static final DateTimeFormatter ISO = DateTimeFormatter.ISO_INSTANT;
+
+    private final File diretoria;
+    private final int horarioDias;
+    private final int diarioDias;
+    private final boolean arquivar;
+    private final ZoneId zona = ZoneId.systemDefault();
+
+    CompactacaoCsv(File diretoria, int horarioDias, int diarioDias, boolean arquivar) {
+        this.diretoria = diretoria;
+        this.horarioDias = horarioDias;
+        this.diarioDias = Math.max(horarioDias, diarioDias);
+        this.arquivar = arquivar;
+    }
+
+    /**
+     * @return the job configured for this directory, or null when {@code csv.compactacao.ativo} is off
+     */
+    static CompactacaoCsv deConfig(File diretoria, Configuracao config) {
+        if (!config.booleano("csv.compactacao.ativo", false)) {
+            return null;
+        }
+        return new CompactacaoCsv(diretoria, (int) config.inteiro("csv.compactacao.horarioDias", 7L),
+                (int) config.inteiro("csv.compactacao.diarioDias", 90L),
+                config.booleano("csv.compactacao.arquivar", false));
+    }
+
+    /**
+     * One pass over the directory. Raw files the writer still holds are left for the next sweep.
+     */
+    void compactar(Predicate<File> reservar, Consumer<File> libertar) {
+        concluirPendentes(DIRETORIA_HORARIA, reservar, libertar);
+        concluirPendentes(DIRETORIA_DIARIA, reservar, libertar);
+        LocalDate hoje = LocalDate.now(zona);
+        compactarBrutos(hoje.minusDays(horarioDias), reservar, libertar);
+        compactarHorarios(hoje.minusDays(diarioDias));
+    }
+
+    /**
+     * Finishes what a sweep interrupted after writing a target: retires the sources its marker
+     * lists (those still present are already in the target) and removes the marker.
+     */
+    private void concluirPendentes(String subdiretoria, Predicate<File> reservar, Consumer<File> libertar) {
+        File[] marcas = diretoria.toPath().resolve(subdiretoria).toFile()
+                .listFiles(ficheiro -> ficheiro.isFile() && ficheiro.getName().endsWith(SUFIXO_MARCA));
+        if (marcas == null) {
+            return;
+        }
+        for (File marca : marcas) {
+            boolean concluida = true;
+            try {
+                for (String nome : Files.readAllLines(marca.toPath(), StandardCharsets.UTF_8)) {
+                    File origem = diretoria.toPath().resolve(nome).toFile();
+                    if (nome.isBlank() || !origem.exists()) {
+                        continue;
+                    }
+                    if (!reservar.test(origem)) {
+                        concluida = false; // still held by the writer: next sweep
+                        continue;
+                    }
+                    try {
+                        retirar(origem);
+                    } finally {
+                        libertar.accept(origem);
+                    }
+                    concluida &= !origem.exists();
+                }
+                if (concluida) {
+                    Files.deleteIfExists(marca.toPath());
+                }
+            } catch (IOException e) {
+                System.err.println("Falha ao concluir " + marca.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void compactarBrutos(LocalDate limite, Predicate<File> reservar, Consumer<File> libertar) {
+        File[] ficheiros = diretoria.listFiles(File::isFile);
+        if (ficheiros == null) {
+            return;
+        }
+        // All parts of one location and day go into the same hourly file
+        Map<String, List<File>> grupos = new TreeMap<>();
+        for (File ficheiro : ficheiros) {
+            Matcher nome = NOME_BRUTO.matcher(ficheiro.getName());
+            if (nome.matches() && LocalDate.parse(nome.group(2)).isBefore(limite)) {
+                grupos.computeIfAbsent(nome.group(1) + "_" + nome.group(2), chave -> new ArrayList<>()).add(ficheiro);
+            }
+        }
+        for (Map.Entry<String, List<File>> grupo : grupos.entrySet()) {
+            List<File> reservados = new ArrayList<>();
+            try {
+                for (File ficheiro : grupo.getValue()) {
+                    if (!reservar.test(ficheiro)) {
+                        break;
+                    }
+                    reservados.add(ficheiro);
+                }
+                if (reservados.size() == grupo.getValue().size()) {
+                    Path destino = diretoria.toPath().resolve(DIRETORIA_HORARIA).resolve(grupo.getKey() + ".csv");
+                    compactarGrupo(grupo.getValue(), destino, ChronoUnit.HOURS, false);
+                }
+            } finally {
+                reservados.forEach(libertar);
+            }
+        }
+    }
+
+    private void compactarHorarios(LocalDate limite) {
+        File[] ficheiros = diretoria.toPath().resolve(DIRETORIA_HORARIA).toFile().listFiles(File::isFile);
+        if (ficheiros == null) {
+            return;
+        }
+        // One daily file per location and month
+        Map<String, List<File>> grupos = new TreeMap<>();
+        for (File ficheiro : ficheiros) {
+            Matcher nome = NOME_HORARIO.matcher(ficheiro.getName());
+            if (nome.matches() && diaDe(ficheiro.getName()).isBefore(limite)) {
+                grupos.computeIfAbsent(nome.group(1) + "_" + nome.group(2), chave -> new ArrayList<>()).add(ficheiro);
+            }
+        }
+        for (Map.Entry<String, List<File>> grupo : grupos.entrySet()) {
+            Path destino = diretoria.toPath().resolve(DIRETORIA_DIARIA).resolve(grupo.getKey() + ".csv");
+            compactarGrupo(grupo.getValue(), destino, ChronoUnit.DAYS, true);
+        }
+    }
+
+    /**
+     * Merges the sources into the target (rows already there for other periods are kept)
+     * and then retires the sources, behind a marker (see the class comment).
+     */
+    private void compactarGrupo(List<File> origens, Path destino, ChronoUnit unidade, boolean agregadas) {
+        if (Files.exists(marca(destino))) {
+            return; // sources still being retired by concluirPendentes
+        }
+        Map<Long, Map<String, Acumulador>> novos = new TreeMap<>();
+        try {
+            for (File origem : origens) {
+                if (!comprimidoAoLado(origem)) {
+                    ler(origem.toPath(), unidade, agregadas, novos);
+                }
+            }
+            Map<Long, Map<String, Acumulador>> periodos = new TreeMap<>();
+            if (Files.exists(destino)) {
+                ler(destino, unidade, true, periodos);
+            }
+            // A period coming from the sources replaces whatever an interrupted sweep left
+            periodos.putAll(novos);
+            escrever(destino, periodos);
+            marcar(destino, origens);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Falha ao compactar " + origens.get(0).getName() + ": " + e.getMessage());
+            return;
+        }
+        boolean retiradas = true;
+        for (File origem : origens) {
+            retirar(origem);
+            retiradas &= !origem.exists();
+        }
+        if (retiradas) {
+            try {
+                Files.deleteIfExists(marca(destino));
+            } catch (IOException e) {
+                System.err.println("Falha ao apagar " + marca(destino) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // A .csv whose .csv.gz is already in place is a compression that stopped before deleting
+    // the original: the .gz is complete, so only it is read (both are still retired)
+    private static boolean comprimidoAoLado(File origem) {
+        return origem.getName().endsWith(".csv")
+                && new File(origem.getParentFile(), origem.getName() + ".gz").isFile();
+    }
+
+    // Sources relative to the log directory, one per line; written like the target (temp + rename)
+    private void marcar(Path destino, List<File> origens) throws IOException {
+        List<String> nomes = new ArrayList<>(origens.size());
+        for (File origem : origens) {
+            nomes.add(diretoria.toPath().relativize(origem.toPath()).toString());
+        }
+        Path marca = marca(destino);
+        Path temporario = marca.resolveSibling(marca.getFileName() + ".tmp");
+        Files.write(temporario, nomes, StandardCharsets.UTF_8);
+        Files.move(temporario, marca, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path marca(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + SUFIXO_MARCA);
+    }
+
+    // Single pass: raw rows (ISO;UNIX;ID;LOCAL;TIPO;VALOR;UNIDADE;ALERTA) or aggregate rows
+    private void ler(Path ficheiro, ChronoUnit unidade, boolean agregadas,
+                     Map<Long, Map<String, Acumulador>> periodos) throws IOException {
+        long inicioPeriodo = Long.MIN_VALUE;
+        long fimPeriodo = Long.MIN_VALUE;
+        Map<String, Acumulador> atual = null;
+        String[] campos = new String[agregadas ? 11 : 8];
+        try (BufferedReader leitor = LeitorCsv.abrir(ficheiro)) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                if (linha.startsWith("TIMESTAMP_") || !separar(linha, campos)) {
+                    continue; // header, or a line cut short by a crash
+                }
+                long timestamp;
+                long contagem;
+                double minimo;
+                double maximo;
+                double soma;
+                long alertas;
+                try {
+                    timestamp = Long.parseLong(campos[1]);
+                    if (agregadas) {
+                        contagem = Long.parseLong(campos[6]);
+                        minimo = Double.parseDouble(campos[7]);
+                        maximo = Double.parseDouble(campos[8]);
+                        soma = Double.parseDouble(campos[9]) * contagem;
+                        alertas = Long.parseLong(campos[10]);
+                    } else {
+                        contagem = 1L;
+                        minimo = maximo = soma = Double.parseDouble(campos[5]);
+                        alertas = "SIM".equals(campos[7]) ? 1L : 0L;
+                    }
+                } catch (NumberFormatException e) {
+                    continue; // a damaged row must not hold back the whole file
+                }
+                if (timestamp < inicioPeriodo || timestamp >= fimPeriodo) {
+                    ZonedDateTime inicio = Instant.ofEpochMilli(timestamp).atZone(zona).truncatedTo(unidade);
+                    inicioPeriodo = inicio.toInstant().toEpochMilli();
+                    fimPeriodo = inicio.plus(1, unidade).toInstant().toEpochMilli();
+                    atual = periodos.computeIfAbsent(inicioPeriodo, periodo -> new LinkedHashMap<>());
+                }
+                atual.computeIfAbsent(campos[2],
+                        id -> new Acumulador(campos[2], campos[3], campos[4], agregadas ? campos[5] : campos[6]))
+                        .juntar(contagem, minimo, maximo, soma, alertas);
+            }
+        }
+    }
+
+    // Splits on ';' without a regex; false when the line has a different number of fields
+    private static boolean separar(String linha, String[] campos) {
+        int inicio = 0;
+        for (int i = 0; i < campos.length - 1; i++) {
+            int fim = linha.indexOf(';', inicio);
+            if (fim < 0) {
+                return false;
+            }
+            campos[i] = linha.substring(inicio, fim);
+            inicio = fim + 1;
+        }
+        campos[campos.length - 1] = linha.substring(inicio);
+        return linha.indexOf(';', inicio) < 0 && !campos[1].isEmpty();
+    }
+
+    private void escrever(Path destino, Map<Long, Map<String, Acumulador>> periodos) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        StringBuilder linha = new StringBuilder(160);
+        try (BufferedWriter escritor = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+            escritor.write(CABECALHO);
+            escritor.newLine();
+            for (Map.Entry<Long, Map<String, Acumulador>> periodo : periodos.entrySet()) {
+                for (Acumulador acumulador : periodo.getValue().values()) {
+                    linha.setLength(0);
+                    ISO.formatTo(Instant.ofEpochMilli(periodo.getKey()), linha);
+                    linha.append(';').append(periodo.getKey())
+                            .append(';').append(acumulador.sensorId)
+                            .append(';').append(acumulador.localizacao)
+                            .append(';').append(acumulador.tipo)
+                            .append(';').append(acumulador.unidade)
+                            .append(';').append(acumulador.contagem);
+                    FormatadorDecimal.escrever(acumulador.minimo, linha.append(';'));
+                    FormatadorDecimal.escrever(acumulador.maximo, linha.append(';'));
+                    FormatadorDecimal.escrever(acumulador.soma / acumulador.contagem, linha.append(';'));
+                    linha.append(';').append(acumulador.alertas);
+                    escritor.append(linha);
+                    escritor.newLine();
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporario);
+            throw e;
+        }
+        Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Raw files go to arquivo/ when configured; rolled-up hourly files are always deleted
+    private void retirar(File origem) {
+        try {
+            if (arquivar && origem.getParentFile().equals(diretoria)) {
+                Path arquivo = diretoria.toPath().resolve(DIRETORIA_ARQUIVO);
+                Files.createDirectories(arquivo);
+                Files.move(origem.toPath(), arquivo.resolve(origem.getName()), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(origem.toPath());
+            }
+        } catch (IOException e) {
+            System.err.println("Falha ao retirar " + origem + " depois de compactado: " + e.getMessage());
+        }
+    }
+
+    // <local>_<yyyy-MM-dd>.csv -> the day
+    private static LocalDate diaDe(String nome) {
+        int fim = nome.length() - ".csv".length();
+        return LocalDate.parse(nome.substring(fim - 10, fim));
+    }
+
+    private static final class Acumulador {
+        private final String sensorId;
+        private final String localizacao;
+        private final String tipo;
+        private final String unidade;
+        private long contagem;
+        private double minimo = Double.POSITIVE_INFINITY;
+        private double maximo = Double.NEGATIVE_INFINITY;
+        private double soma;
+        private long alertas;
+
+        Acumulador(String sensorId, String localizacao, String tipo, String unidade) {
+            this.sensorId = sensorId;
+            this.localizacao = localizacao;
+            this.tipo = tipo;
+            this.unidade = unidade;
+        }
+
+        void juntar(long contagem, double minimo, double maximo, double soma, long alertas) {
+            this.contagem += contagem;
+            this.minimo = Math.min(this.minimo, minimo);
+            this.maximo = Math.max(this.maximo, maximo);
+            this.soma += soma;
+            this.alertas += alertas;
+        }
+    }
+}
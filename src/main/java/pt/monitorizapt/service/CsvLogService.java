@@ -4,21 +4,36 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import pt.monitorizapt.diagnostico.EventoCsv;
+import pt.monitorizapt.util.Configuracao;
+import pt.monitorizapt.util.FormatadorDecimal;
 
 /**
  * Service responsible for persisting sensor data into CSV files.
  * It organizes files by Location and Date to ensure manageability and facilitate auditing.
+ *
+ * Files rotate daily and also when they reach a maximum size
+ * (Lisboa___Campus_IPLuso_2024-01-23.csv, then ..._2024-01-23_1.csv, ...).
+ * Closed files are handed to {@link ManutencaoCsv}, which compresses them, rolls old days
+ * into hourly/daily aggregates and applies the retention policy on a low-priority thread,
+ * so the writer never waits for gzip.
  */
 public class CsvLogService {
-    
+
     // Directory where CSV files will be stored (relative to project root)
-    private static final String LOG_DIRECTORY = "registos_csv";
-    
+    static final String LOG_DIRECTORY = "registos_csv";
+
+    static final String CABECALHO = "TIMESTAMP_ISO;TIMESTAMP_UNIX;SENSOR_ID;LOCALIZACAO;TIPO;VALOR;UNIDADE;ALERTA";
+
     // Date formatter for the FILENAME (Daily rotation, e.g., 2024-01-23)
     private static final DateTimeFormatter FILE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd")
             .withZone(ZoneId.systemDefault());
@@ -26,12 +41,43 @@ public class CsvLogService {
     // Date formatter for the CONTENT (ISO-8601 standard)
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_INSTANT;
 
+    private final String diretoria;
+    private final long tamanhoMaximoBytes;
+    private final ManutencaoCsv manutencao;
+
+    // One open file per location: avoids reopening the file for every single row
+    private final Map<String, FicheiroAberto> abertos = new HashMap<>();
+    // Closed files handed to the background thread: the writer must never reopen them
+    private final Set<File> reservados = new HashSet<>();
+
+    // Reused for every row (access is serialized by 'synchronized')
+    private final StringBuilder linha = new StringBuilder(160);
+    private char[] caracteres = new char[160];
+
     public CsvLogService() {
+        this(Configuracao.vazia());
+    }
+
+    public CsvLogService(Configuracao config) {
+        this(config, LOG_DIRECTORY);
+    }
+
+    /**
+     * @param diretoria target directory (the ingest service keeps its rows apart from the local log)
+     */
+    public CsvLogService(Configuracao config, String diretoria) {
+        this.diretoria = diretoria;
         criarDiretoria();
+        this.tamanhoMaximoBytes = config.inteiro("csv.tamanhoMaximoMb", 16L) * 1024L * 1024L;
+        this.manutencao = new ManutencaoCsv(new File(diretoria),
+                config.booleano("csv.comprimir", true),
+                (int) config.inteiro("csv.retencaoDias", 30L),
+                CompactacaoCsv.deConfig(new File(diretoria), config));
+        this.manutencao.iniciar(this::reservar, this::libertar);
     }
 
     private void criarDiretoria() {
-        File directory = new File(LOG_DIRECTORY);
+        File directory = new File(diretoria);
         if (!directory.exists()) {
             directory.mkdirs();
         }
@@ -42,45 +88,175 @@ public class CsvLogService {
      * Synchronized to prevent concurrent write issues from multiple sensor threads.
      */
     public synchronized void registarLeitura(SensorSnapshot dados) {
+        EventoCsv evento = new EventoCsv();
+        evento.begin();
         String fileDate = FILE_DATE_FORMATTER.format(Instant.now());
-        
-        // Sanitizes the location name to be OS-safe
-        // Ex: "Lisboa - Campus IPLuso" -> "Lisboa___Campus_IPLuso"
-        String safeLocationName = dados.localizacao().replaceAll("[^a-zA-Z0-9._-]", "_");
-        
-        // Path structure: registos_csv/Lisboa___Campus_IPLuso_2024-01-23.csv
-        String filePath = String.format("%s/%s_%s.csv", LOG_DIRECTORY, safeLocationName, fileDate);
-
-        File file = new File(filePath);
-        boolean isNewFile = !file.exists();
 
-        // Try-with-resources ensures the file writer is closed properly
-        // 'true' in FileWriter constructor enables append mode
-        try (FileWriter fw = new FileWriter(file, StandardCharsets.UTF_8, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
+        // Write the data row.
+        // Using semicolon (;) as separator. The value always uses '.' as decimal separator,
+        // whatever the JVM default locale is.
+        linha.setLength(0);
+        ISO_FORMATTER.formatTo(Instant.ofEpochMilli(dados.timestamp()), linha);
+        linha.append(';').append(dados.timestamp())
+                .append(';').append(dados.id())
+                .append(';').append(dados.localizacao())
+                .append(';').append(dados.tipo().name()); // Uses the technical ENUM name
+        FormatadorDecimal.escrever(dados.valor(), linha.append(';'));
+        linha.append(';').append(dados.unidade())
+                .append(';').append(dados.alerta() ? "SIM" : "NAO")
+                .append(System.lineSeparator());
 
-            // If the file is new, write the CSV header first
-            if (isNewFile) {
-                out.println("TIMESTAMP_ISO;TIMESTAMP_UNIX;SENSOR_ID;LOCALIZACAO;TIPO;VALOR;UNIDADE;ALERTA");
+        try {
+            FicheiroAberto ficheiro = ficheiroPara(dados.localizacao(), fileDate);
+            int tamanho = linha.length();
+            if (caracteres.length < tamanho) {
+                caracteres = new char[tamanho * 2];
             }
-
-            // Write the data row.
-            // Using semicolon (;) as separator because comma is the decimal separator in PT locale.
-            out.printf("%s;%d;%s;%s;%s;%.2f;%s;%s%n",
-                    ISO_FORMATTER.format(Instant.ofEpochMilli(dados.timestamp())),
-                    dados.timestamp(),
-                    dados.id(),
-                    dados.localizacao(),
-                    dados.tipo().name(), // Uses the technical ENUM name 
-                    dados.valor(),
-                    dados.unidade(),
-                    dados.alerta() ? "SIM" : "NAO"
-            );
-
+            linha.getChars(0, tamanho, caracteres, 0);
+            ficheiro.writer.write(caracteres, 0, tamanho);
+            // Flushed per row: a crash or kill never loses buffered rows, and the file on disk
+            // always ends on a complete line
+            ficheiro.writer.flush();
+            // The size limit is in bytes on disk (UTF-8), not in chars ('°', accented names)
+            ficheiro.bytes += bytesUtf8(caracteres, tamanho);
         } catch (IOException e) {
             // In a real scenario, this should be logged to a dedicated error stream
             System.err.println("CRITICAL ERROR: Failed to write to CSV: " + e.getMessage());
         }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.sensorId = dados.id();
+            evento.tipo = dados.tipo().tipoJson();
+            evento.bytes = linha.length();
+            evento.commit();
+        }
+    }
+
+    /**
+     * Closes every open file. They are not compressed right away: a restart later today
+     * keeps appending to the same file, and the periodic sweep compresses it once idle.
+     */
+    public synchronized void fechar() {
+        for (FicheiroAberto ficheiro : abertos.values()) {
+            try {
+                ficheiro.writer.close();
+            } catch (IOException e) {
+                System.err.println("CRITICAL ERROR: Failed to close CSV: " + e.getMessage());
+            }
+        }
+        abertos.clear();
+        manutencao.desligar();
+    }
+
+    /**
+     * Returns the open file for this location, rotating it if the day changed
+     * or the size limit was reached.
+     */
+    private FicheiroAberto ficheiroPara(String localizacao, String fileDate) throws IOException {
+        FicheiroAberto atual = abertos.get(localizacao);
+        if (atual != null && atual.data.equals(fileDate) && atual.bytes < tamanhoMaximoBytes) {
+            return atual;
+        }
+        int parte = 0;
+        String safeLocationName;
+        if (atual != null) {
+            fecharFicheiro(atual);
+            safeLocationName = atual.nomeSeguro;
+            parte = atual.data.equals(fileDate) ? atual.parte + 1 : 0;
+        } else {
+            // Sanitizes the location name to be OS-safe
+            // Ex: "Lisboa - Campus IPLuso" -> "Lisboa___Campus_IPLuso"
+            safeLocationName = localizacao.replaceAll("[^a-zA-Z0-9._-]", "_");
+        }
+
+        // Skip parts that are already full (or already compressed) from a previous run
+        File file = ficheiroParte(safeLocationName, fileDate, parte);
+        while (reservados.contains(file)
+                || new File(file.getPath() + ManutencaoCsv.EXTENSAO_GZIP).exists()
+                || (file.exists() && file.length() >= tamanhoMaximoBytes)) {
+            file = ficheiroParte(safeLocationName, fileDate, ++parte);
+        }
+
+        boolean isNewFile = !file.exists();
+        // 'true' in FileWriter constructor enables append mode
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, true));
+        // If the file is new, write the CSV header first
+        if (isNewFile) {
+            writer.write(CABECALHO);
+            writer.newLine();
+        }
+        FicheiroAberto novo = new FicheiroAberto(file, safeLocationName, fileDate, parte, writer, file.length());
+        abertos.put(localizacao, novo);
+        return novo;
+    }
+
+    // Path structure: registos_csv/Lisboa___Campus_IPLuso_2024-01-23.csv (then _1, _2, ...)
+    private File ficheiroParte(String safeLocationName, String fileDate, int parte) {
+        String sufixo = parte == 0 ? "" : "_" + parte;
+        return new File(String.format("%s/%s_%s%s.csv", diretoria, safeLocationName, fileDate, sufixo));
+    }
+
+    // Rotation: the file is complete, so it goes straight to the compression queue
+    private void fecharFicheiro(FicheiroAberto ficheiro) {
+        try {
+            ficheiro.writer.close();
+        } catch (IOException e) {
+            System.err.println("CRITICAL ERROR: Failed to close CSV: " + e.getMessage());
+        }
+        // Without compression the file is simply left behind (the size check skips it)
+        if (manutencao.agendarCompressao(ficheiro.file)) {
+            reservados.add(ficheiro.file);
+        }
+    }
+
+    /**
+     * Called by the maintenance thread before compressing or deleting a file.
+     * Returns false for files currently being written.
+     */
+    private synchronized boolean reservar(File file) {
+        for (FicheiroAberto aberto : abertos.values()) {
+            if (aberto.file.equals(file)) {
+                return false;
+            }
+        }
+        reservados.add(file);
+        return true;
+    }
+
+    /**
+     * Called by the maintenance thread once it is done with a reserved file.
+     */
+    private synchronized void libertar(File file) {
+        reservados.remove(file);
+    }
+
+    private static int bytesUtf8(char[] texto, int tamanho) {
+        int bytes = tamanho;
+        for (int i = 0; i < tamanho; i++) {
+            char c = texto[i];
+            if (c >= 0x80) {
+                // 2 bytes up to U+07FF, 3 for the rest of the BMP; a surrogate pair is 4 (2 + 2)
+                bytes += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+            }
+        }
+        return bytes;
+    }
+
+    private static final class FicheiroAberto {
+        private final File file;
+        private final String nomeSeguro;
+        private final String data;
+        private final int parte;
+        private final BufferedWriter writer;
+        private long bytes;
+
+        private FicheiroAberto(File file, String nomeSeguro, String data, int parte, BufferedWriter writer, long bytes) {
+            this.file = file;
+            this.nomeSeguro = nomeSeguro;
+            this.data = data;
+            this.parte = parte;
+            this.writer = writer;
+            this.bytes = bytes;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,318 @@
+package pt.monitorizapt.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Random access to the rows of a CSV log of any size.
+ *
+ * The file is memory-mapped (in 1 GiB segments, so multi-gigabyte logs work too) and scanned
+ * once in the background for line ends. Only every {@value #PASSO}th line start is kept, with
+ * its timestamp, so the index costs 16 bytes per {@value #PASSO} rows; a row is found by
+ * jumping to its sample and walking at most {@value #PASSO} lines. Rows are decoded only when
+ * asked for, a block at a time, and the last few blocks are cached for the table repaints.
+ *
+ * Rows are usable while the scan is still running ({@link #linhas()} grows). A log that is
+ * still being written is indexed up to its size when it was opened; compressed logs are
+ * expanded to a temporary file first (see {@link LeitorCsv#paraLeituraDireta}).
+ *
+ * One thread builds the index; reads may come from any thread.
+ */
+public class IndiceCsv implements AutoCloseable {
+    // Lines per index sample (and per decoded block)
+    static final int PASSO = 128;
+    private static final int BITS_SEGMENTO = 30;
+    private static final long TAMANHO_SEGMENTO = 1L << BITS_SEGMENTO;
+    private static final int BLOCOS_EM_CACHE = 8;
+    private static final int COLUNA_TIMESTAMP = 1;
+
+    private final Path original;
+    private final Path ficheiro;
+    private final FileChannel canal;
+    private final long tamanho;
+    // Mapped lazily; read by the indexing thread and by whoever reads rows
+    private final AtomicReferenceArray<MappedByteBuffer> segmentos;
+    private final String[] colunas;
+    // Offset of the first data row (after the header)
+    private final long inicioDados;
+
+    // Written by the indexing thread; the arrays are always published before the count
+    private volatile long[] deslocamentos = new long[1024];
+    private volatile long[] tempos = new long[1024];
+    private volatile int linhas;
+    private volatile boolean completo;
+    private volatile boolean fechado;
+
+    // Decoded blocks, replaced round-robin (guarded by 'this')
+    private final int[] blocoEmCache = new int[BLOCOS_EM_CACHE];
+    private final String[][][] linhasEmCache = new String[BLOCOS_EM_CACHE][][];
+    private int proximoSlot;
+    private byte[] bytesLinha = new byte[256];
+
+    public IndiceCsv(Path original) throws IOException {
+        this.original = original;
+        this.ficheiro = LeitorCsv.paraLeituraDireta(original);
+        this.canal = FileChannel.open(ficheiro, StandardOpenOption.READ);
+        this.tamanho = canal.size();
+        this.segmentos = new AtomicReferenceArray<>((int) ((tamanho + TAMANHO_SEGMENTO - 1) >>> BITS_SEGMENTO));
+        Arrays.fill(blocoEmCache, -1);
+
+        // The header names the columns; a file without one starts with data right away
+        long fimPrimeira = fimLinha(0L);
+        String primeira = fimPrimeira < 0 ? "" : texto(0L, fimPrimeira);
+        if (primeira.startsWith("TIMESTAMP_")) {
+            this.colunas = primeira.split(";", -1);
+            this.inicioDados = fimPrimeira + 1;
+        } else {
+            this.colunas = CsvLogService.CABECALHO.split(";", -1);
+            this.inicioDados = 0L;
+        }
+    }
+
+    public Path getOriginal() {
+        return original;
+    }
+
+    public long getTamanho() {
+        return tamanho;
+    }
+
+    public String[] colunas() {
+        return colunas.clone();
+    }
+
+    /**
+     * Complete data rows indexed so far.
+     */
+    public int linhas() {
+        return linhas;
+    }
+
+    public boolean isCompleto() {
+        return completo;
+    }
+
+    /**
+     * Scans the file for line ends. Long-running: call it on a background thread. Stops early
+     * (leaving a partial index) when the index is closed or the thread interrupted.
+     */
+    public void construir() throws IOException {
+        long posicao = inicioDados;
+        int contagem = 0;
+        for (int s = (int) (inicioDados >>> BITS_SEGMENTO); s < segmentos.length() && !parar(); s++) {
+            MappedByteBuffer segmento = segmento(s);
+            long base = (long) s << BITS_SEGMENTO;
+            int limite = segmento.limit();
+            for (int i = (int) Math.max(0L, posicao - base); i < limite; i++) {
+                if (segmento.get(i) != '\n') {
+                    continue;
+                }
+                // Line [posicao, base + i] is complete
+                if (contagem % PASSO == 0) {
+                    adicionarAmostra(contagem / PASSO, posicao);
+                }
+                contagem++;
+                posicao = base + i + 1;
+                if ((contagem & 0xFFFF) == 0) {
+                    linhas = contagem;
+                    if (parar()) {
+                        return;
+                    }
+                }
+                if (contagem == Integer.MAX_VALUE) {
+                    linhas = contagem;
+                    completo = true;
+                    return;
+                }
+            }
+        }
+        linhas = contagem;
+        completo = !parar();
+    }
+
+    /**
+     * The row as its CSV fields (an empty array once closed or for a row not indexed yet).
+     */
+    public synchronized String[] ler(int linha) {
+        if (fechado || linha < 0 || linha >= linhas) {
+            return new String[0];
+        }
+        int bloco = linha / PASSO;
+        for (int i = 0; i < BLOCOS_EM_CACHE; i++) {
+            if (blocoEmCache[i] == bloco && linhasEmCache[i].length > linha % PASSO) {
+                return linhasEmCache[i][linha % PASSO];
+            }
+        }
+        String[][] descodificadas = descodificarBloco(bloco);
+        int slot = proximoSlot;
+        proximoSlot = (proximoSlot + 1) % BLOCOS_EM_CACHE;
+        blocoEmCache[slot] = bloco;
+        linhasEmCache[slot] = descodificadas;
+        return descodificadas[linha % PASSO];
+    }
+
+    /**
+     * Binary search over the index samples, then a walk inside one block.
+     *
+     * @return the first row at or after {@code timestamp} (the last row when all are older,
+     *         -1 when nothing is indexed). Assumes rows are in time order, as the log writes them.
+     */
+    public int procurar(long timestamp) {
+        int n = linhas;
+        if (n == 0) {
+            return -1;
+        }
+        long[] t = tempos;
+        int amostras = (n + PASSO - 1) / PASSO;
+        int baixo = 0;
+        int alto = amostras - 1;
+        int bloco = 0;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (t[meio] <= timestamp) {
+                bloco = meio;
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        if (bloco == 0 && t[0] > timestamp) {
+            return 0;
+        }
+        long posicao = deslocamentos[bloco];
+        int fim = Math.min(n, (bloco + 1) * PASSO);
+        for (int linha = bloco * PASSO; linha < fim; linha++) {
+            long fimAtual = fimLinha(posicao);
+            if (fimAtual < 0 || lerTimestamp(posicao, fimAtual) >= timestamp) {
+                return linha;
+            }
+            posicao = fimAtual + 1;
+        }
+        return Math.min(fim, n - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fechado = true;
+        synchronized (this) {
+            Arrays.fill(linhasEmCache, null);
+        }
+        canal.close();
+        if (!ficheiro.equals(original)) {
+            Files.deleteIfExists(ficheiro);
+        }
+    }
+
+    private boolean parar() {
+        return fechado || Thread.currentThread().isInterrupted();
+    }
+
+    private void adicionarAmostra(int amostra, long posicao) {
+        long[] d = deslocamentos;
+        long[] t = tempos;
+        if (amostra == d.length) {
+            d = Arrays.copyOf(d, d.length * 2);
+            t = Arrays.copyOf(t, t.length * 2);
+        }
+        d[amostra] = posicao;
+        t[amostra] = lerTimestamp(posicao, fimLinha(posicao));
+        // Readers only look at samples below the published row count, so the new entry is
+        // safe to write before the arrays are (re)published
+        deslocamentos = d;
+        tempos = t;
+    }
+
+    private String[][] descodificarBloco(int bloco) {
+        int primeira = bloco * PASSO;
+        int quantas = Math.min(PASSO, linhas - primeira);
+        String[][] resultado = new String[quantas][];
+        long posicao = deslocamentos[bloco];
+        for (int i = 0; i < quantas; i++) {
+            long fim = fimLinha(posicao);
+            resultado[i] = texto(posicao, fim).split(";", -1);
+            posicao = fim + 1;
+        }
+        return resultado;
+    }
+
+    /**
+     * Decodes [inicio, fim) as UTF-8, without the '\r' of CRLF files.
+     */
+    private String texto(long inicio, long fim) {
+        if (fim > inicio && byteEm(fim - 1) == '\r') {
+            fim--;
+        }
+        int tamanhoLinha = (int) (fim - inicio);
+        if (bytesLinha.length < tamanhoLinha) {
+            bytesLinha = new byte[tamanhoLinha * 2];
+        }
+        for (int i = 0; i < tamanhoLinha; i++) {
+            bytesLinha[i] = byteEm(inicio + i);
+        }
+        return new String(bytesLinha, 0, tamanhoLinha, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the TIMESTAMP_UNIX field straight from the mapped bytes (no String).
+     */
+    private long lerTimestamp(long inicio, long fim) {
+        long posicao = inicio;
+        for (int separadores = 0; separadores < COLUNA_TIMESTAMP && posicao < fim; posicao++) {
+            if (byteEm(posicao) == ';') {
+                separadores++;
+            }
+        }
+        long valor = 0L;
+        boolean algum = false;
+        for (; posicao < fim; posicao++) {
+            byte b = byteEm(posicao);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            valor = valor * 10 + (b - '0');
+            algum = true;
+        }
+        return algum ? valor : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return offset of the '\n' ending the line that starts at {@code inicio}, or -1 if the
+     *         line is not complete within the indexed size
+     */
+    private long fimLinha(long inicio) {
+        for (long posicao = inicio; posicao < tamanho; posicao++) {
+            if (byteEm(posicao) == '\n') {
+                return posicao;
+            }
+        }
+        return -1L;
+    }
+
+    private byte byteEm(long posicao) {
+        return segmento((int) (posicao >>> BITS_SEGMENTO)).get((int) (posicao & (TAMANHO_SEGMENTO - 1)));
+    }
+
+    private MappedByteBuffer segmento(int indice) {
+        MappedByteBuffer segmento = segmentos.get(indice);
+        if (segmento == null) {
+            long inicio = (long) indice << BITS_SEGMENTO;
+            try {
+                segmento = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(TAMANHO_SEGMENTO, tamanho - inicio));
+            } catch (IOException e) {
+                throw new IllegalStateException("Falha ao mapear " + ficheiro + ": " + e.getMessage(), e);
+            }
+            // Two threads may map the same segment: both mappings are valid, one is kept
+            if (!segmentos.compareAndSet(indice, null, segmento)) {
+                segmento = segmentos.get(indice);
+            }
+        }
+        return segmento;
+    }
+}
@@ -0,0 +1,58 @@
+package pt.monitorizapt.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens CSV logs for reading, whether they are still plain text or were already compressed.
+ * Callers just read lines and don't need to care about the .gz suffix.
+ */
+public final class LeitorCsv {
+    private static final int BUFFER = 64 * 1024;
+
+    private LeitorCsv() {
+    }
+
+    public static BufferedReader abrir(Path ficheiro) throws IOException {
+        InputStream in = Files.newInputStream(ficheiro);
+        if (isComprimido(ficheiro)) {
+            in = new GZIPInputStream(in, BUFFER);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER);
+    }
+
+    /**
+     * Path whose bytes are the plain CSV, for readers that map the file instead of streaming it:
+     * the file itself, or a temporary expanded copy of a compressed log (the caller deletes it
+     * when it is not the original).
+     */
+    public static Path paraLeituraDireta(Path ficheiro) throws IOException {
+        if (!isComprimido(ficheiro)) {
+            return ficheiro;
+        }
+        Path temporario = Files.createTempFile("monitorizapt-", ".csv");
+        try (BufferedReader leitor = abrir(ficheiro);
+             BufferedWriter escritor = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+            leitor.transferTo(escritor);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporario);
+            throw e;
+        }
+        return temporario;
+    }
+
+    public static boolean isComprimido(Path ficheiro) {
+        return ficheiro.getFileName().toString().endsWith(ManutencaoCsv.EXTENSAO_GZIP);
+    }
+
+    public static Path diretoria() {
+        return Path.of(CsvLogService.LOG_DIRECTORY);
+    }
+}
@@ -0,0 +1,92 @@
+package pt.monitorizapt.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import pt.monitorizapt.agregacao.AgregadorRegional;
+import pt.monitorizapt.domain.DadosSensor;
+import pt.monitorizapt.domain.Sensor;
+import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.domain.SensorUpdateListener;
+import pt.monitorizapt.log.RegistoAssincrono;
+
+/**
+ * The per-reading listener {@link SensorController} registers on every sensor: latest-value
+ * table, counters, regional rollups, snapshot observers (UI, web dashboard), the DEBUG log
+ * line and the CSV/SQL sinks.
+ *
+ * Its own class so that {@code OrcamentoAlocacaoTest} measures exactly this code with only the
+ * sinks stubbed.
+ */
+public class ListenerLeituras implements SensorUpdateListener {
+    private final TabelaUltimosValores tabela;
+    private final AgregadorRegional agregador;
+    private final LongAdder leiturasTotais;
+    private final LongAdder alertasTotais;
+    private final List<Consumer<SensorSnapshot>> observadores;
+    private final RegistoAssincrono registo;
+    private final Consumer<SensorSnapshot> csv;
+    // null when the SQL sink is off
+    private final Consumer<SensorSnapshot> sql;
+
+    /**
+     * @param observadores live list (observers registered later are notified too)
+     * @param csv          normally {@link CsvLogService#registarLeitura}
+     * @param sql          normally {@link RegistoSql#registarLeitura}, or null
+     */
+    public ListenerLeituras(TabelaUltimosValores tabela, AgregadorRegional agregador,
+                            LongAdder leiturasTotais, LongAdder alertasTotais,
+                            List<Consumer<SensorSnapshot>> observadores, RegistoAssincrono registo,
+                            Consumer<SensorSnapshot> csv, Consumer<SensorSnapshot> sql) {
+        this.tabela = tabela;
+        this.agregador = agregador;
+        this.leiturasTotais = leiturasTotais;
+        this.alertasTotais = alertasTotais;
+        this.observadores = observadores;
+        this.registo = registo;
+        this.csv = csv;
+        this.sql = sql;
+    }
+
+    @Override
+    public void onDadosPublicados(Sensor sensor, DadosSensor dados, String jsonPayload) {
+        // Runs on the sensor thread, so each slot keeps a single writer
+        tabela.publicar(sensor.getOrdinal(), dados.valor(), dados.timestamp(), dados.alerta());
+        leiturasTotais.increment();
+        if (dados.alerta()) {
+            alertasTotais.increment();
+        }
+        agregador.registar(sensor.getOrdinal(), sensor.getLocalizacao(), sensor.getTipo(),
+                dados.valor(), dados.alerta());
+
+        // Convert domain data into a snapshot (DTO) for the CSV log and external observers
+        SensorSnapshot snapshot = new SensorSnapshot(sensor.getIDUnico(),
+                sensor.getLocalizacao().descricao(),
+                sensor.getTipo(),
+                dados.valor(),
+                dados.unidade(),
+                dados.alerta(),
+                dados.timestamp());
+
+        // Notify other observers (the table reads the shared table directly)
+        observadores.forEach(observer -> observer.accept(snapshot));
+
+        // One line per reading only at DEBUG: with the level off this is a single compare
+        registo.debug("Sensor {} publicou {}{}", sensor.getIDUnico(), dados.valor(), sufixoUnidade(sensor.getTipo()));
+
+        // Log to CSV file
+        csv.accept(snapshot);
+        if (sql != null) {
+            sql.accept(snapshot);
+        }
+    }
+
+    private static String sufixoUnidade(SensorTipo tipo) {
+        return switch (tipo) {
+            case TEMPERATURA -> "\u00B0C";
+            case HUMIDADE -> "%";
+            case QUALIDADE_AR -> " AQI";
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package pt.monitorizapt.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Background housekeeping of the CSV directory: gzip compression of closed files,
+ * downsampling of old logs into hourly and daily aggregates ({@link CompactacaoCsv}, when
+ * enabled) and deletion of files older than the retention period.
+ *
+ * Everything runs on a single low-priority daemon thread, so sensor threads writing rows
+ * never wait for compression.
+ */
+class ManutencaoCsv {
+    static final String EXTENSAO_GZIP = ".gz";
+
+    // Files untouched for this long are considered closed by the periodic sweep
+    private static final long IDADE_MINIMA_VARRIMENTO_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long PERIODO_VARRIMENTO_MINUTOS = 60L;
+
+    private final File diretoria;
+    private final boolean comprimir;
+    private final int retencaoDias;
+    // null = raw logs are kept at full resolution until the retention deletes them
+    private final CompactacaoCsv compactacao;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "csv-manutencao");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Asks the writer for permission before touching a file (false = still open)
+    private Predicate<File> reservar = file -> true;
+    // Tells the writer the file is done with (compressed, deleted or left as is after a failure)
+    private Consumer<File> libertar = file -> { };
+
+    ManutencaoCsv(File diretoria, boolean comprimir, int retencaoDias, CompactacaoCsv compactacao) {
+        this.diretoria = diretoria;
+        this.comprimir = comprimir;
+        this.retencaoDias = retencaoDias;
+        this.compactacao = compactacao;
+    }
+
+    void iniciar(Predicate<File> reservar, Consumer<File> libertar) {
+        this.reservar = reservar;
+        this.libertar = libertar;
+        // First sweep right away picks up files left behind by a previous run
+        executor.scheduleWithFixedDelay(this::varrer, 0L, PERIODO_VARRIMENTO_MINUTOS, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return false when nothing was scheduled (compression disabled or shutting down)
+     */
+    boolean agendarCompressao(File ficheiro) {
+        if (!comprimir || executor.isShutdown()) {
+            return false;
+        }
+        executor.execute(() -> comprimir(ficheiro));
+        return true;
+    }
+
+    /**
+     * Lets the queued compressions finish in the background (daemon thread).
+     */
+    void desligar() {
+        executor.shutdown();
+    }
+
+    private void varrer() {
+        if (compactacao != null) {
+            // Before the retention below, so old raw days are summarized rather than just deleted
+            compactacao.compactar(reservar, libertar);
+        }
+        File[] ficheiros = diretoria.listFiles((dir, nome) -> nome.endsWith(".csv") || nome.endsWith(".csv" + EXTENSAO_GZIP));
+        if (ficheiros == null) {
+            return;
+        }
+        long agora = System.currentTimeMillis();
+        long limiteRetencao = agora - TimeUnit.DAYS.toMillis(retencaoDias);
+        for (File ficheiro : ficheiros) {
+            long modificado = ficheiro.lastModified();
+            if (retencaoDias > 0 && modificado < limiteRetencao) {
+                if (reservar.test(ficheiro)) {
+                    if (!ficheiro.delete()) {
+                        System.err.println("Falha ao apagar registo antigo: " + ficheiro);
+                    }
+                    libertar.accept(ficheiro);
+                }
+            } else if (comprimir && ficheiro.getName().endsWith(".csv")
+                    && agora - modificado > IDADE_MINIMA_VARRIMENTO_MS
+                    && reservar.test(ficheiro)) {
+                comprimir(ficheiro);
+            }
+        }
+    }
+
+    /**
+     * Writes file.csv.gz next to the original (via a temp file and atomic rename)
+     * and only then deletes the original, so a crash never loses data.
+     */
+    private void comprimir(File ficheiro) {
+        try {
+            comprimirFicheiro(ficheiro);
+        } finally {
+            libertar.accept(ficheiro);
+        }
+    }
+
+    private void comprimirFicheiro(File ficheiro) {
+        if (!ficheiro.exists()) {
+            return;
+        }
+        Path origem = ficheiro.toPath();
+        Path destino = Path.of(ficheiro.getPath() + EXTENSAO_GZIP);
+        Path temporario = Path.of(ficheiro.getPath() + EXTENSAO_GZIP + ".tmp");
+        try (InputStream in = Files.newInputStream(origem);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporario), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Falha ao comprimir " + ficheiro + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(origem);
+        } catch (IOException e) {
+            System.err.println("Falha ao finalizar compressão de " + ficheiro + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package pt.monitorizapt.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import pt.monitorizapt.domain.Sensor;
+
+/**
+ * Compact binary snapshot of the controller state, used for a fast warm start.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header: magic(int) version(int) sensores(int) guardadoEm(long) leiturasTotais(long) alertasTotais(long)
+ * record: id(48 bytes, UTF-8, zero padded) intervalo(long) ativo(byte) temLeitura(byte) alerta(byte)
+ *         adaptativo(byte) padding(4 bytes) valor(double) timestamp(long)
+ * </pre>
+ * Fixed-width records mean restoring is a single pass over a memory-mapped file.
+ * The file is written to a temporary name and atomically renamed, so a crash while saving
+ * never leaves a half-written snapshot behind.
+ */
+public class PersistenciaEstado {
+    private static final int MAGIA = 0x4D505453; // "MPTS"
+    private static final int VERSAO = 1;
+    private static final int BYTES_CABECALHO = 4 + 4 + 4 + 8 + 8 + 8;
+    private static final int BYTES_ID = 48;
+    private static final int BYTES_REGISTO = BYTES_ID + 8 + 8 + 8 + 8;
+
+    private final Path ficheiro;
+
+    public PersistenciaEstado(Path ficheiro) {
+        this.ficheiro = ficheiro;
+    }
+
+    /**
+     * Header of a restored snapshot.
+     */
+    public record Cabecalho(int sensores, long guardadoEm, long leiturasTotais, long alertasTotais) {
+    }
+
+    /**
+     * Receives each stored sensor during {@link #restaurar}.
+     */
+    @FunctionalInterface
+    public interface Visitante {
+        void sensor(String id, long intervaloMillis, boolean ativo, boolean adaptativo,
+                    boolean temLeitura, double valor, boolean alerta, long timestamp);
+    }
+
+    /**
+     * Synchronized: every save goes through the same temporary file.
+     */
+    public synchronized void guardar(Collection<? extends Sensor> sensores,
+                        TabelaUltimosValores tabela,
+                        long leiturasTotais,
+                        long alertasTotais) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES_CABECALHO + sensores.size() * BYTES_REGISTO);
+        buffer.putInt(MAGIA).putInt(VERSAO).putInt(sensores.size())
+                .putLong(System.currentTimeMillis()).putLong(leiturasTotais).putLong(alertasTotais);
+
+        TabelaUltimosValores.Leitura leitura = new TabelaUltimosValores.Leitura();
+        for (Sensor sensor : sensores) {
+            byte[] id = sensor.getIDUnico().getBytes(StandardCharsets.UTF_8);
+            int inicio = buffer.position();
+            buffer.put(id, 0, Math.min(id.length, BYTES_ID));
+            buffer.position(inicio + BYTES_ID);
+
+            boolean temLeitura = tabela.ler(sensor.getOrdinal(), leitura);
+            buffer.putLong(sensor.getIntervaloMillis())
+                    .put((byte) (sensor.isAtivo() ? 1 : 0))
+                    .put((byte) (temLeitura ? 1 : 0))
+                    .put((byte) (leitura.alerta() ? 1 : 0))
+                    .put((byte) (sensor.isAdaptativo() ? 1 : 0));
+            buffer.position(buffer.position() + 4);
+            buffer.putDouble(leitura.valor()).putLong(leitura.timestamp());
+        }
+        buffer.flip();
+
+        Files.createDirectories(ficheiro.toAbsolutePath().getParent());
+        Path temporario = ficheiro.resolveSibling(ficheiro.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(true);
+        }
+        Files.move(temporario, ficheiro, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Memory-maps the snapshot and hands every record to the visitor.
+     *
+     * @return the header, or null when there is no (valid) snapshot to restore
+     */
+    public Cabecalho restaurar(Visitante visitante) throws IOException {
+        if (!Files.isRegularFile(ficheiro)) {
+            return null;
+        }
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho < BYTES_CABECALHO) {
+                return null;
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            if (mapa.getInt() != MAGIA || mapa.getInt() != VERSAO) {
+                return null;
+            }
+            Cabecalho cabecalho = new Cabecalho(mapa.getInt(), mapa.getLong(), mapa.getLong(), mapa.getLong());
+            if (tamanho < BYTES_CABECALHO + (long) cabecalho.sensores() * BYTES_REGISTO) {
+                return null; // truncated file: better to start clean than restore garbage
+            }
+
+            byte[] id = new byte[BYTES_ID];
+            for (int i = 0; i < cabecalho.sensores(); i++) {
+                mapa.get(id);
+                int comprimento = 0;
+                while (comprimento < BYTES_ID && id[comprimento] != 0) {
+                    comprimento++;
+                }
+                long intervalo = mapa.getLong();
+                boolean ativo = mapa.get() != 0;
+                boolean temLeitura = mapa.get() != 0;
+                boolean alerta = mapa.get() != 0;
+                boolean adaptativo = mapa.get() != 0;
+                mapa.position(mapa.position() + 4);
+                double valor = mapa.getDouble();
+                long timestamp = mapa.getLong();
+                visitante.sensor(new String(id, 0, comprimento, StandardCharsets.UTF_8),
+                        intervalo, ativo, adaptativo, temLeitura, valor, alerta, timestamp);
+            }
+            return cabecalho;
+        }
+    }
+}
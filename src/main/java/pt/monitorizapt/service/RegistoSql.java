@@ -0,0 +1,238 @@
+package pt.monitorizapt.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import pt.monitorizapt.util.Configuracao;
+
+/**
+ * Persists readings into an embedded H2 database (file mode), next to the CSV log, for ad-hoc
+ * SQL over the history.
+ *
+ * Sensor threads only offer the snapshot to a bounded queue; one background thread takes up
+ * to {@code sql.lote} rows at a time and inserts them with prepared statements in one JDBC
+ * batch and one transaction. When the queue is full the reading is dropped and counted, so a
+ * slow disk never holds back a sensor.
+ *
+ * Rows go into one table per month ({@code leituras_2024_01}, ...), each indexed on
+ * (sensor_id, ts) and on ts, so old months can be dropped or moved without touching the
+ * current one. The view {@code leituras} is the union of all months.
+ */
+public class RegistoSql {
+    private static final String PREFIXO_TABELA = "LEITURAS_";
+    private static final String VISTA = "LEITURAS";
+    private static final SensorSnapshot FIM = new SensorSnapshot("", "", null, 0.0, "", false, 0L);
+
+    /**
+     * Counters since start.
+     *
+     * @param descartadas readings refused because the queue was full
+     * @param perdidas    readings of batches that failed to insert
+     */
+    public record Estatisticas(long inseridas, long lotes, long descartadas, long perdidas, int pendentes) {
+    }
+
+    private final String url;
+    private final int lote;
+    private final BlockingQueue<SensorSnapshot> fila;
+    private final Thread escritor;
+    private final ZoneId zona = ZoneId.systemDefault();
+
+    private final LongAdder inseridas = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder perdidas = new LongAdder();
+
+    // Only touched by the writer thread
+    private Connection ligacao;
+    private final Map<YearMonth, PreparedStatement> insercoes = new HashMap<>();
+
+    private volatile boolean ativo = true;
+
+    public RegistoSql(Configuracao config) {
+        this(config, "sql", "jdbc:h2:file:./dados/monitorizapt");
+    }
+
+    /**
+     * @param prefixo configuration prefix (the ingest service keeps its rows in a database of its own)
+     */
+    public RegistoSql(Configuracao config, String prefixo, String urlPadrao) {
+        this.url = config.texto(prefixo + ".url", urlPadrao);
+        this.lote = (int) Math.max(1L, config.inteiro(prefixo + ".lote", 500L));
+        this.fila = new ArrayBlockingQueue<>((int) Math.max(1L, config.inteiro(prefixo + ".fila", 16_384L)));
+        this.escritor = new Thread(this::escrever, "sql-escrita");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Non-blocking: safe to call from the sensor threads.
+     */
+    public void registarLeitura(SensorSnapshot dados) {
+        if (!ativo || !fila.offer(dados)) {
+            descartadas.increment();
+        }
+    }
+
+    public Estatisticas estatisticas() {
+        return new Estatisticas(inseridas.sum(), lotes.sum(), descartadas.sum(), perdidas.sum(), fila.size());
+    }
+
+    /**
+     * Inserts what is still queued and closes the database.
+     */
+    public void fechar() {
+        if (!ativo) {
+            return;
+        }
+        ativo = false;
+        try {
+            // Bounded wait: a writer that is gone never drains the queue
+            if (!fila.offer(FIM, 10, TimeUnit.SECONDS)) {
+                System.err.println("Escrita SQL parada: " + fila.size() + " leituras por gravar em " + url);
+            }
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writer thread
+    private void escrever() {
+        List<SensorSnapshot> pendentes = new ArrayList<>(lote);
+        boolean fim = false;
+        try {
+            while (!fim) {
+                // Whatever queued up meanwhile, up to a batch: under load rows pile up while the
+                // previous batch is inserted, so batches grow with the write rate
+                pendentes.add(fila.take());
+                fila.drainTo(pendentes, lote - 1);
+                fim = pendentes.removeIf(leitura -> leitura == FIM);
+                if (!pendentes.isEmpty()) {
+                    inserir(pendentes);
+                }
+                pendentes.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fecharLigacao();
+        }
+    }
+
+    private void inserir(List<SensorSnapshot> leituras) {
+        try {
+            if (ligacao == null || ligacao.isClosed()) {
+                abrir();
+            }
+            Map<YearMonth, PreparedStatement> usadas = new LinkedHashMap<>();
+            for (SensorSnapshot leitura : leituras) {
+                YearMonth mes = YearMonth.from(Instant.ofEpochMilli(leitura.timestamp()).atZone(zona));
+                PreparedStatement insercao = insercaoPara(mes);
+                insercao.setLong(1, leitura.timestamp());
+                insercao.setString(2, leitura.id());
+                insercao.setString(3, leitura.localizacao());
+                insercao.setString(4, leitura.tipo().name());
+                insercao.setDouble(5, leitura.valor());
+                insercao.setString(6, leitura.unidade());
+                insercao.setBoolean(7, leitura.alerta());
+                insercao.addBatch();
+                usadas.put(mes, insercao);
+            }
+            for (PreparedStatement insercao : usadas.values()) {
+                insercao.executeBatch();
+            }
+            ligacao.commit();
+            inseridas.add(leituras.size());
+            lotes.increment();
+        } catch (SQLException | RuntimeException e) {
+            // Any failure costs this batch only; the writer thread keeps going
+            perdidas.add(leituras.size());
+            System.err.println("Falha ao inserir " + leituras.size() + " leituras em " + url + ": " + e.getMessage());
+            // Reopened on the next batch
+            fecharLigacao();
+        }
+    }
+
+    private void abrir() throws SQLException {
+        ligacao = DriverManager.getConnection(url);
+        ligacao.setAutoCommit(false);
+        atualizarVista();
+    }
+
+    private PreparedStatement insercaoPara(YearMonth mes) throws SQLException {
+        PreparedStatement insercao = insercoes.get(mes);
+        if (insercao == null) {
+            String tabela = tabela(mes);
+            try (Statement ddl = ligacao.createStatement()) {
+                ddl.execute("CREATE TABLE IF NOT EXISTS " + tabela + " ("
+                        + "ts BIGINT NOT NULL, sensor_id VARCHAR(64) NOT NULL, localizacao VARCHAR(64) NOT NULL, "
+                        + "tipo VARCHAR(16) NOT NULL, valor DOUBLE PRECISION NOT NULL, unidade VARCHAR(16), "
+                        + "alerta BOOLEAN NOT NULL)");
+                ddl.execute("CREATE INDEX IF NOT EXISTS " + tabela + "_SENSOR_TS ON " + tabela + " (sensor_id, ts)");
+                ddl.execute("CREATE INDEX IF NOT EXISTS " + tabela + "_TS ON " + tabela + " (ts)");
+            }
+            ligacao.commit();
+            atualizarVista();
+            insercao = ligacao.prepareStatement("INSERT INTO " + tabela
+                    + " (ts, sensor_id, localizacao, tipo, valor, unidade, alerta) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            insercoes.put(mes, insercao);
+        }
+        return insercao;
+    }
+
+    // The "leituras" view spans every monthly table (rebuilt when a month is added)
+    private void atualizarVista() throws SQLException {
+        TreeSet<String> tabelas = new TreeSet<>();
+        try (ResultSet resultado = ligacao.getMetaData().getTables(null, null, PREFIXO_TABELA + "%", new String[] {"TABLE"})) {
+            while (resultado.next()) {
+                String nome = resultado.getString("TABLE_NAME");
+                if (nome.matches(PREFIXO_TABELA + "\\d{4}_\\d{2}")) {
+                    tabelas.add(nome);
+                }
+            }
+        }
+        if (tabelas.isEmpty()) {
+            return;
+        }
+        try (Statement ddl = ligacao.createStatement()) {
+            ddl.execute("CREATE OR REPLACE VIEW " + VISTA + " AS "
+                    + String.join(" UNION ALL ", tabelas.stream().map(tabela -> "SELECT * FROM " + tabela).toList()));
+        }
+        ligacao.commit();
+    }
+
+    private void fecharLigacao() {
+        insercoes.clear();
+        if (ligacao == null) {
+            return;
+        }
+        try {
+            ligacao.close(); // also closes the prepared statements
+        } catch (SQLException e) {
+            System.err.println("Falha ao fechar " + url + ": " + e.getMessage());
+        }
+        ligacao = null;
+    }
+
+    private static String tabela(YearMonth mes) {
+        return String.format("%s%04d_%02d", PREFIXO_TABELA, mes.getYear(), mes.getMonthValue());
+    }
+}
@@ -1,52 +1,159 @@
 package pt.monitorizapt.service;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
-import pt.monitorizapt.domain.DadosSensor;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import pt.monitorizapt.agregacao.AgregadorRegional;
+import pt.monitorizapt.alert.MotorAlertas;
+import pt.monitorizapt.alert.RegraAlerta;
+import pt.monitorizapt.alert.TransicaoAlerta;
+import pt.monitorizapt.cluster.AnelConsistente;
+import pt.monitorizapt.cluster.CoordenadorCluster;
+import pt.monitorizapt.domain.CanalEstacao;
+import pt.monitorizapt.domain.ComandoSensor;
+import pt.monitorizapt.domain.HistoricoLeituras;
 import pt.monitorizapt.domain.Sensor;
 import pt.monitorizapt.domain.SensorAbstrato;
 import pt.monitorizapt.domain.SensorLocalizacao;
 import pt.monitorizapt.domain.SensorTipo;
 import pt.monitorizapt.domain.SensorUpdateListener;
+import pt.monitorizapt.ingest.DestinoCsv;
+import pt.monitorizapt.ingest.DestinoSql;
+import pt.monitorizapt.ingest.ServicoIngestao;
+import pt.monitorizapt.log.DestinoConsola;
+import pt.monitorizapt.log.DestinoFicheiro;
+import pt.monitorizapt.log.DestinoLog;
+import pt.monitorizapt.log.Nivel;
+import pt.monitorizapt.log.RegistoAssincrono;
 import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.sensors.EstacaoMultimetrica;
 import pt.monitorizapt.sensors.SensorHumidade;
 import pt.monitorizapt.sensors.SensorQualidadeAr;
 import pt.monitorizapt.sensors.SensorTemperatura;
+import pt.monitorizapt.util.Configuracao;
 import pt.monitorizapt.util.JsonPayloadBuilder;
+import pt.monitorizapt.web.ServidorDashboard;
 
 /**
  * The Controller class acts as the bridge between the UI, the Sensors, and MQTT.
  * It manages the lifecycle of all sensors and notifies the UI when data changes.
  */
 public class SensorController {
-    // Formatter for log messages (thread-safe compared to SimpleDateFormat)
-    private static final DateTimeFormatter LOG_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")
-            .withZone(ZoneId.systemDefault());
+    // How often config.properties is checked for rule changes
+    private static final long VERIFICACAO_CONFIG_SEGUNDOS = 5L;
+    private static final Gson GSON = new Gson();
 
     // We use EnumMap for efficiency since keys are Enums
     private final Map<SensorLocalizacao, SensorAbstrato> sensoresPorLocalizacao = new EnumMap<>(SensorLocalizacao.class);
     
-    // Thread-safe lists to store UI observers (Snapshot for table, String for logs)
+    // Thread-safe list of snapshot observers (CSV-like consumers, web dashboard)
     private final List<Consumer<SensorSnapshot>> snapshotObservers = new CopyOnWriteArrayList<>();
-    private final List<Consumer<String>> logObservers = new CopyOnWriteArrayList<>();
+    // Asynchronous log: callers only enqueue, the sinks (UI, file, stdout) are fed in batches
+    private final RegistoAssincrono registo;
     
     private final JsonPayloadBuilder payloadBuilder = new JsonPayloadBuilder();
     private final MqttClientManager mqttClientManager;
     private final CsvLogService csvLogService;
+    // Optional embedded SQL copy of the log (null when sql.ativo is off)
+    private final RegistoSql registoSql;
+    private long falhasSqlReportadas;
+    private final MotorAlertas motorAlertas;
+    // Current state of every sensor (off-heap), read by the UI instead of copying snapshots
+    private final TabelaUltimosValores tabelaUltimosValores;
+    // Periodic binary snapshot used to restore the state after a restart
+    private final PersistenciaEstado persistenciaEstado;
+    // City, type and national rollups, updated by every reading
+    private final AgregadorRegional agregadorRegional;
+
+    // Aggregate counters (LongAdder scales better than AtomicLong with many sensor threads)
+    private final LongAdder leiturasTotais = new LongAdder();
+    private final LongAdder alertasTotais = new LongAdder();
+
+    // Single background thread for housekeeping tasks (config reload, ...)
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "monitorizapt-agendador");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Configuracao configuracao;
+    private volatile FileTime ultimaModificacaoConfig;
+
+    // Cluster mode (null when this process owns the whole fleet)
+    private final CoordenadorCluster coordenadorCluster;
+    // Sensors waiting for the hand-over delay before this node starts publishing them
+    private final Map<String, ScheduledFuture<?>> aquisicoesPendentes = new ConcurrentHashMap<>();
+
+    // Optional consumer of the data topics (verifies hashes of every publisher on the broker)
+    private final ServicoIngestao servicoIngestao;
+    private final AtomicReference<String> ultimaFalhaIngestao = new AtomicReference<>();
+    private long falhasIngestaoReportadas;
+    // Connection drops already reported in the log (only the connection thread touches it)
+    private long quedasReportadas;
+    // Metrics of every station (estacoes.ativo), or null for one single-metric sensor per location
+    private final List<SensorTipo> metricasEstacao;
+    // Rate limits and repeat filter of the remote commands, applied before parsing
+    private final AdmissaoComandos admissaoComandos;
+    private long comandosRejeitadosReportados;
+    // Alert lane figures already reported (housekeeping thread only)
+    private long alertasReportados;
+    private long falhasAlertasReportadas;
+    // Batch envelopes already reported (housekeeping thread only)
+    private long envelopesReportados;
+
+    // Optional web dashboard for operators (null when disabled)
+    private final ServidorDashboard servidorDashboard;
 
     public SensorController(MqttClientManager mqttClientManager) {
+        this(mqttClientManager, Configuracao.vazia());
+    }
+
+    public SensorController(MqttClientManager mqttClientManager, Configuracao configuracao) {
         this.mqttClientManager = mqttClientManager;
-        this.csvLogService = new CsvLogService();
-        
+        this.configuracao = configuracao;
+        this.registo = criarRegisto(configuracao);
+        this.csvLogService = new CsvLogService(configuracao);
+        this.registoSql = configuracao.booleano("sql.ativo", false) ? new RegistoSql(configuracao) : null;
+        this.metricasEstacao = configuracao.booleano("estacoes.ativo", false) ? metricasEstacao(configuracao) : null;
+        // One slot per metric: a station takes one per metric it measures
+        int capacidade = SensorLocalizacao.values().length * (metricasEstacao == null ? 1 : metricasEstacao.size());
+        this.motorAlertas = new MotorAlertas(capacidade, RegraAlerta.carregar(configuracao));
+        this.motorAlertas.registarTransicaoListener(this::registarTransicao);
+        this.tabelaUltimosValores = new TabelaUltimosValores(capacidade);
+        this.persistenciaEstado = new PersistenciaEstado(Path.of(configuracao.texto("estado.ficheiro", "estado/monitorizapt.estado")));
+        this.agregadorRegional = new AgregadorRegional(capacidade);
+        this.admissaoComandos = new AdmissaoComandos(SensorLocalizacao.values().length, configuracao);
+
+        this.coordenadorCluster = configuracao.booleano("cluster.ativo", false)
+                ? new CoordenadorCluster(mqttClientManager,
+                        configuracao.texto("cluster.no", "no-" + ProcessHandle.current().pid()),
+                        configuracao.inteiro("cluster.heartbeatMs", 2000L))
+                : null;
+
         // Initialize all sensors immediately
         criarSensores();
+
+        // Warm start: must happen before the threads start, while we are still the only writer
+        restaurarEstado();
         
         // Start all sensor threads
         sensoresPorLocalizacao.values().forEach(Sensor::iniciar);
@@ -56,8 +163,49 @@ public class SensorController {
             mqttClientManager.registerCommandHandler(localizacao, comando -> processarComandoRemoto(localizacao, comando));
         }
         
+        // In cluster mode nothing is published until the membership is known
+        if (coordenadorCluster != null) {
+            sensoresPorLocalizacao.values().forEach(sensor -> sensor.definirPosse(false));
+            coordenadorCluster.registarAnelListener(this::aplicarAnel);
+            coordenadorCluster.iniciar(agendador);
+        }
+
+        this.servicoIngestao = configuracao.booleano("ingestao.ativo", false) ? criarIngestao() : null;
+        this.servidorDashboard = configuracao.booleano("web.ativo", false) ? criarDashboard() : null;
+
         // Connect to the broker in background
+        mqttClientManager.registerConnectionListener(ligado -> {
+            if (ligado) {
+                reportarRecuperacao();
+            }
+        });
         mqttClientManager.connectAsync();
+
+        // Alert rules are hot-reloaded when config.properties changes on disk
+        if (configuracao.origem() != null) {
+            ultimaModificacaoConfig = modificacaoConfig();
+            agendador.scheduleWithFixedDelay(this::verificarConfig,
+                    VERIFICACAO_CONFIG_SEGUNDOS, VERIFICACAO_CONFIG_SEGUNDOS, TimeUnit.SECONDS);
+        }
+
+        long periodoEstado = configuracao.inteiro("estado.intervaloSegundos", 10L);
+        if (periodoEstado > 0) {
+            agendador.scheduleWithFixedDelay(this::guardarEstado, periodoEstado, periodoEstado, TimeUnit.SECONDS);
+        }
+
+        long periodoAgregados = configuracao.inteiro("agregados.intervaloMs", 5000L);
+        if (periodoAgregados > 0) {
+            agendador.scheduleWithFixedDelay(this::fecharAgregados, periodoAgregados, periodoAgregados, TimeUnit.MILLISECONDS);
+        }
+
+        agendador.scheduleWithFixedDelay(this::reportarAlertas, 30L, 30L, TimeUnit.SECONDS);
+        agendador.scheduleWithFixedDelay(this::reportarComandos, 10L, 10L, TimeUnit.SECONDS);
+        if (registoSql != null) {
+            agendador.scheduleWithFixedDelay(this::reportarSql, 30L, 30L, TimeUnit.SECONDS);
+        }
+        if (mqttClientManager.isLotesAtivo()) {
+            agendador.scheduleWithFixedDelay(this::reportarLotes, 30L, 30L, TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -65,45 +213,188 @@ public class SensorController {
      * to instantiate based on the location.
      */
     private void criarSensores() {
+        boolean adaptativo = configuracao.booleano("amostragem.adaptativa", false);
         for (SensorLocalizacao localizacao : SensorLocalizacao.values()) {
             SensorAbstrato sensor = criarSensorPorLocalizacao(localizacao);
+            sensor.setAdaptativo(adaptativo);
             // Register a listener to update the UI whenever the sensor reads data
             sensor.registrarListener(criarListener());
+            tabelaUltimosValores.registar(sensor.getOrdinal(), sensor.getIDUnico(),
+                    sensor.getLocalizacao().descricao(), sensor.getTipo());
+            // Extra metrics of a station get rows of their own
+            for (CanalEstacao canal : sensor.getCanais()) {
+                tabelaUltimosValores.registar(canal.getOrdinal(), canal.getIDUnico(),
+                        localizacao.descricao(), canal.getTipo());
+            }
             sensoresPorLocalizacao.put(localizacao, sensor);
         }
     }
 
+    private ServicoIngestao criarIngestao() {
+        ServicoIngestao servico = new ServicoIngestao((int) configuracao.inteiro("ingestao.trabalhadores", 0L),
+                (int) configuracao.inteiro("ingestao.fila", 8192L));
+        if (configuracao.booleano("ingestao.csv", true)) {
+            servico.adicionarDestino(new DestinoCsv(new CsvLogService(configuracao,
+                    configuracao.texto("ingestao.diretoria", "ingestao_csv"))));
+        }
+        if (configuracao.booleano("ingestao.sql", false)) {
+            servico.adicionarDestino(new DestinoSql(new RegistoSql(configuracao, "ingestao.sql",
+                    "jdbc:h2:file:./dados/ingestao")));
+        }
+        servico.registarFalhaListener(ultimaFalhaIngestao::set);
+        servico.iniciar(mqttClientManager);
+        // Failures are summarized instead of logged one by one (a bad publisher could flood the log)
+        agendador.scheduleWithFixedDelay(this::reportarIngestao, 10L, 10L, TimeUnit.SECONDS);
+        registo.info("Ingestão ativa em {} ({} trabalhadores)", ServicoIngestao.TOPICO_DADOS, servico.getNumeroTrabalhadores());
+        return servico;
+    }
+
+    private ServidorDashboard criarDashboard() {
+        int porta = (int) configuracao.inteiro("web.porta", 8080L);
+        try {
+            ServidorDashboard servidor = new ServidorDashboard(porta, configuracao.inteiro("web.tickMs", 250L));
+            registerSnapshotObserver(servidor::publicar);
+            servidor.iniciar();
+            registo.info("Dashboard web em http://localhost:{}/", servidor.getPorta());
+            return servidor;
+        } catch (IOException e) {
+            registo.error("Falha ao iniciar o dashboard web na porta {}: {}", porta, e.getMessage());
+            return null;
+        }
+    }
+
+    private void reportarRecuperacao() {
+        MqttClientManager.MetricasLigacao metricas = mqttClientManager.getMetricasLigacao();
+        if (metricas.quedas() == quedasReportadas) {
+            return;
+        }
+        quedasReportadas = metricas.quedas();
+        registo.info("Ligação MQTT recuperada em {} ms (máximo {} ms, {} quedas, {} tentativas falhadas, "
+                        + "{} leituras descartadas)",
+                metricas.recuperacaoUltimaMs(), metricas.recuperacaoMaximaMs(), metricas.quedas(),
+                metricas.tentativasFalhadas(), metricas.descartadas());
+    }
+
+    // Alert lane latency against its SLO, only when alerts went out since the last report
+    private void reportarAlertas() {
+        MqttClientManager.MetricasAlertas metricas = mqttClientManager.getMetricasAlertas();
+        long tratados = metricas.publicados() + metricas.expirados() + metricas.descartados();
+        if (tratados == alertasReportados) {
+            return;
+        }
+        alertasReportados = tratados;
+        // Late, expired or dropped alerts since the last report raise the level
+        long falhas = metricas.violacoes() + metricas.descartados();
+        boolean violado = falhas > falhasAlertasReportadas;
+        falhasAlertasReportadas = falhas;
+        registo.registar(violado ? Nivel.WARN : Nivel.INFO,
+                "Alertas: {} publicados, p50 {} ms, p99 {} ms, máximo {} ms (SLO {} ms: {} violações, "
+                        + "{} expirados, {} descartados, {} pendentes)",
+                metricas.publicados(), metricas.p50Ms(), metricas.p99Ms(), metricas.maximoMs(), metricas.sloMs(),
+                metricas.violacoes(), metricas.expirados(), metricas.descartados(), metricas.pendentes());
+    }
+
+    // Gateway batching: how many readings each message carried and how long they waited
+    private void reportarLotes() {
+        MqttClientManager.MetricasLotes metricas = mqttClientManager.getMetricasLotes();
+        if (metricas.envelopes() == envelopesReportados) {
+            return;
+        }
+        envelopesReportados = metricas.envelopes();
+        registo.info("Lotes: {} leituras em {} envelopes ({} por mensagem), espera p99 {} ms, máximo {} ms",
+                metricas.leituras(), metricas.envelopes(), metricas.leiturasPorEnvelope(),
+                metricas.esperaP99Ms(), metricas.esperaMaximaMs());
+    }
+
+    // The SQL sink drops rows rather than block the sensors: say so when it happens
+    private void reportarSql() {
+        RegistoSql.Estatisticas estatisticas = registoSql.estatisticas();
+        long falhas = estatisticas.descartadas() + estatisticas.perdidas();
+        if (falhas == falhasSqlReportadas) {
+            return;
+        }
+        falhasSqlReportadas = falhas;
+        registo.warn("SQL: {} leituras inseridas em {} lotes, {} descartadas (fila cheia), {} perdidas em lotes falhados",
+                estatisticas.inseridas(), estatisticas.lotes(), estatisticas.descartadas(), estatisticas.perdidas());
+    }
+
+    // Refused commands are summarized, never logged one by one (that would let a flood fill the log)
+    private void reportarComandos() {
+        AdmissaoComandos.Estatisticas estatisticas = admissaoComandos.estatisticas();
+        if (estatisticas.rejeitados() == comandosRejeitadosReportados) {
+            return;
+        }
+        comandosRejeitadosReportados = estatisticas.rejeitados();
+        registo.warn("Comandos: {} aplicados, {} repetidos ignorados, {} acima do limite do tópico, "
+                        + "{} acima do limite global, {} inválidos",
+                estatisticas.admitidos(), estatisticas.repetidos(), estatisticas.excessoTopico(),
+                estatisticas.excessoGlobal(), estatisticas.invalidos());
+    }
+
+    private void reportarIngestao() {
+        ServicoIngestao.Estatisticas estatisticas = servicoIngestao.estatisticas();
+        long falhas = estatisticas.falhas() + estatisticas.descartadas();
+        if (falhas == falhasIngestaoReportadas) {
+            return;
+        }
+        falhasIngestaoReportadas = falhas;
+        registo.warn("Ingestão: {} válidas, {} hash inválido, {} malformadas, {} desconhecidas, {} duplicadas, "
+                        + "{} descartadas. Última falha: {}",
+                estatisticas.validas(), estatisticas.hashInvalido(), estatisticas.malformadas(),
+                estatisticas.desconhecidas(), estatisticas.duplicadas(), estatisticas.descartadas(), ultimaFalhaIngestao.get());
+    }
+
+    public ServicoIngestao getServicoIngestao() {
+        return servicoIngestao;
+    }
+
     private SensorAbstrato criarSensorPorLocalizacao(SensorLocalizacao localizacao) {
+        if (metricasEstacao != null) {
+            return new EstacaoMultimetrica(localizacao, tipoPrincipal(localizacao), metricasEstacao,
+                    payloadBuilder, mqttClientManager, motorAlertas, configuracao);
+        }
+        return switch (tipoPrincipal(localizacao)) {
+            case TEMPERATURA -> new SensorTemperatura(localizacao, payloadBuilder, mqttClientManager, motorAlertas, configuracao);
+            case HUMIDADE -> new SensorHumidade(localizacao, payloadBuilder, mqttClientManager, motorAlertas, configuracao);
+            case QUALIDADE_AR -> new SensorQualidadeAr(localizacao, payloadBuilder, mqttClientManager, motorAlertas, configuracao);
+        };
+    }
+
+    // Metric of the sensor installed at each location (the main metric of its station)
+    private static SensorTipo tipoPrincipal(SensorLocalizacao localizacao) {
         return switch (localizacao) {
-            case LISBOA_CAMPUS_IPLUSO, COIMBRA_CENTRO, EVORA_UNIVERSIDADE ->
-                    new SensorTemperatura(localizacao, payloadBuilder, mqttClientManager);
-            case LISBOA_BAIXA, FARO_MARINA ->
-                    new SensorHumidade(localizacao, payloadBuilder, mqttClientManager);
-            case PORTO_MATOSINHOS, BRAGA_SAMEIRO ->
-                    new SensorQualidadeAr(localizacao, payloadBuilder, mqttClientManager);
+            case LISBOA_CAMPUS_IPLUSO, COIMBRA_CENTRO, EVORA_UNIVERSIDADE -> SensorTipo.TEMPERATURA;
+            case LISBOA_BAIXA, FARO_MARINA -> SensorTipo.HUMIDADE;
+            case PORTO_MATOSINHOS, BRAGA_SAMEIRO -> SensorTipo.QUALIDADE_AR;
         };
     }
 
+    // estacoes.metricas: comma-separated types (all of them by default)
+    private static List<SensorTipo> metricasEstacao(Configuracao configuracao) {
+        List<SensorTipo> metricas = new ArrayList<>();
+        for (String nome : configuracao.texto("estacoes.metricas", "TEMPERATURA,HUMIDADE,QUALIDADE_AR").split(",")) {
+            try {
+                SensorTipo tipo = SensorTipo.valueOf(nome.trim().toUpperCase(Locale.ROOT));
+                if (!metricas.contains(tipo)) {
+                    metricas.add(tipo);
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Unknown names are skipped
+            }
+        }
+        // The main metric of every location is always measured, so the table needs room for all
+        for (SensorLocalizacao localizacao : SensorLocalizacao.values()) {
+            if (!metricas.contains(tipoPrincipal(localizacao))) {
+                metricas.add(tipoPrincipal(localizacao));
+            }
+        }
+        return List.copyOf(metricas);
+    }
+
     private SensorUpdateListener criarListener() {
-        return (sensor, dados, payload) -> {
-            // Convert domain data into a snapshot (DTO) optimized for the UI table
-            SensorSnapshot snapshot = new SensorSnapshot(sensor.getIDUnico(),
-                    sensor.getLocalizacao().descricao(),
-                    sensor.getTipo(),
-                    dados.valor(),
-                    dados.unidade(),
-                    dados.alerta(),
-                    dados.timestamp());
-            
-            // Notify the Table
-            snapshotObservers.forEach(observer -> observer.accept(snapshot));
-            
-            // Notify the Log text area
-            log(String.format("Sensor %s publicou %s", sensor.getIDUnico(), formatValor(sensor.getTipo(), dados)));
-
-            // Log to CSV file
-            csvLogService.registarLeitura(snapshot);
-        };
+        return new ListenerLeituras(tabelaUltimosValores, agregadorRegional, leiturasTotais, alertasTotais,
+                snapshotObservers, registo, csvLogService::registarLeitura,
+                registoSql == null ? null : registoSql::registarLeitura);
     }
 
     public void registerSnapshotObserver(Consumer<SensorSnapshot> observer) {
@@ -111,7 +402,18 @@ public class SensorController {
     }
 
     public void registerLogObserver(Consumer<String> observer) {
-        logObservers.add(observer);
+        registo.adicionarDestino(linhas -> linhas.forEach(observer));
+    }
+
+    /**
+     * Receives the log lines in batches (one call per batch, on the logger thread).
+     */
+    public void registarDestinoLog(DestinoLog destino) {
+        registo.adicionarDestino(destino);
+    }
+
+    public RegistoAssincrono getRegisto() {
+        return registo;
     }
 
     // --- Actions triggered by UI buttons ---
@@ -123,7 +425,16 @@ public class SensorController {
         }
         sensor.setIntervaloMillis(intervaloMillis);
         sensor.ativar();
-        log(String.format("Sensor %s ativado (intervalo %d ms)", sensor.getIDUnico(), sensor.getIntervaloMillis()));
+        registo.info("Sensor {} ativado (intervalo {} ms)", sensor.getIDUnico(), sensor.getIntervaloMillis());
+    }
+
+    public void definirAdaptativo(SensorLocalizacao localizacao, boolean adaptativo) {
+        SensorAbstrato sensor = sensoresPorLocalizacao.get(localizacao);
+        if (sensor == null || sensor.isAdaptativo() == adaptativo) {
+            return;
+        }
+        sensor.setAdaptativo(adaptativo);
+        registo.info("Sensor {} em modo {}", sensor.getIDUnico(), adaptativo ? "adaptativo" : "intervalo fixo");
     }
 
     public void desativarLocalizacao(SensorLocalizacao localizacao) {
@@ -132,36 +443,234 @@ public class SensorController {
             return;
         }
         sensor.desativar();
-        log(String.format("Sensor %s desativado", sensor.getIDUnico()));
+        registo.info("Sensor {} desativado", sensor.getIDUnico());
     }
 
     /**
      * Handles commands received via MQTT (e.g., from a mobile app dashboard).
+     * Runs on the MQTT delivery thread: anything refused is dropped before it is parsed.
      */
     private void processarComandoRemoto(SensorLocalizacao localizacao, String comandoJson) {
         SensorAbstrato sensor = sensoresPorLocalizacao.get(localizacao);
-        if (sensor == null) {
+        if (sensor == null || admissaoComandos.admitir(localizacao.ordinal(), comandoJson) != AdmissaoComandos.Decisao.ADMITIDO) {
+            return;
+        }
+        ComandoSensor comando = ComandoSensor.ler(comandoJson);
+        if (comando == null) {
+            admissaoComandos.registarInvalido();
             return;
         }
-        sensor.processarComando(comandoJson);
-        log(String.format("Comando MQTT aplicado a %s: %s", sensor.getIDUnico(), comandoJson));
+        sensor.aplicarComando(comando);
+        registo.info("Comando MQTT aplicado a {}: {}", sensor.getIDUnico(), comandoJson);
     }
 
-    private void log(String mensagem) {
-        String linha = LOG_FORMATTER.format(Instant.now()) + " [INFO] " + mensagem;
-        logObservers.forEach(observer -> observer.accept(linha));
+    public AdmissaoComandos.Estatisticas getEstatisticasComandos() {
+        return admissaoComandos.estatisticas();
     }
 
-    private String formatValor(SensorTipo tipo, DadosSensor dados) {
-        return switch (tipo) {
-            case TEMPERATURA -> String.format("%.2f\u00B0C", dados.valor());
-            case HUMIDADE -> String.format("%.2f%%", dados.valor());
-            case QUALIDADE_AR -> String.format("%.2f AQI", dados.valor());
-        };
+    /**
+     * Recompiles the alert rules from the current config file.
+     */
+    public void recarregarRegras() {
+        configuracao = configuracao.recarregar();
+        motorAlertas.recarregar(RegraAlerta.carregar(configuracao));
+        registo.info("Regras de alerta recarregadas: {}", motorAlertas.getRegras());
+    }
+
+    /**
+     * Recent readings of one sensor (lock-free, see {@link HistoricoLeituras#copiarRecentes}).
+     */
+    public HistoricoLeituras getHistorico(SensorLocalizacao localizacao) {
+        return sensoresPorLocalizacao.get(localizacao).getHistorico();
+    }
+
+    public TabelaUltimosValores getTabelaUltimosValores() {
+        return tabelaUltimosValores;
+    }
+
+    public MotorAlertas getMotorAlertas() {
+        return motorAlertas;
+    }
+
+    public AgregadorRegional getAgregadorRegional() {
+        return agregadorRegional;
+    }
+
+    // Closes the rollup window; in cluster mode each node publishes the rollups of the sensors it owns
+    private void fecharAgregados() {
+        if (configuracao.booleano("agregados.publicar", true)) {
+            agregadorRegional.fecharJanela(mqttClientManager::publish);
+        } else {
+            agregadorRegional.fecharJanela((topico, payload) -> { });
+        }
+    }
+
+    private void verificarConfig() {
+        FileTime atual = modificacaoConfig();
+        if (atual != null && !atual.equals(ultimaModificacaoConfig)) {
+            ultimaModificacaoConfig = atual;
+            recarregarRegras();
+        }
+    }
+
+    private FileTime modificacaoConfig() {
+        try {
+            return Files.getLastModifiedTime(configuracao.origem());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies a new cluster ring. Sensors we lose stop immediately; sensors we gain only
+     * start after one heartbeat. Every node derives the change from the same heartbeat
+     * message, so that is enough for the previous owner to stop first and the same reading
+     * is never published twice. A joining node is only added once it is ready (see
+     * CoordenadorCluster), so its sensors go unpublished for about one heartbeat.
+     */
+    private synchronized void aplicarAnel(AnelConsistente anel) {
+        String noId = coordenadorCluster.getNoId();
+        long atraso = coordenadorCluster.getHeartbeatMillis();
+        int meus = 0;
+        for (SensorAbstrato sensor : sensoresPorLocalizacao.values()) {
+            String id = sensor.getIDUnico();
+            if (!noId.equals(anel.dono(id))) {
+                ScheduledFuture<?> pendente = aquisicoesPendentes.remove(id);
+                if (pendente != null) {
+                    pendente.cancel(false);
+                }
+                sensor.definirPosse(false);
+                continue;
+            }
+            meus++;
+            if (!sensor.temPosse() && !aquisicoesPendentes.containsKey(id)) {
+                aquisicoesPendentes.put(id, agendador.schedule(() -> adquirir(sensor), atraso, TimeUnit.MILLISECONDS));
+            }
+        }
+        registo.info("Cluster com {} nós {}: {} sensores atribuídos a {}", anel.membros().size(), anel.membros(), meus, noId);
+    }
+
+    private synchronized void adquirir(SensorAbstrato sensor) {
+        aquisicoesPendentes.remove(sensor.getIDUnico());
+        // Re-check: the ring may have changed again during the delay
+        if (coordenadorCluster.getNoId().equals(coordenadorCluster.getAnel().dono(sensor.getIDUnico()))) {
+            sensor.definirPosse(true);
+        }
+    }
+
+    /**
+     * Restores per-sensor configuration, active flags, last reading and counters
+     * from the last snapshot (if any).
+     */
+    private void restaurarEstado() {
+        Map<String, SensorAbstrato> porId = new HashMap<>();
+        sensoresPorLocalizacao.values().forEach(sensor -> porId.put(sensor.getIDUnico(), sensor));
+        try {
+            long inicio = System.nanoTime();
+            PersistenciaEstado.Cabecalho cabecalho = persistenciaEstado.restaurar(
+                    (id, intervalo, ativo, adaptativo, temLeitura, valor, alerta, timestamp) -> {
+                SensorAbstrato sensor = porId.get(id);
+                if (sensor == null) {
+                    return; // sensor no longer exists in this version
+                }
+                sensor.setIntervaloMillis(intervalo);
+                sensor.setAdaptativo(adaptativo);
+                if (ativo) {
+                    sensor.ativar();
+                }
+                if (temLeitura) {
+                    tabelaUltimosValores.publicar(sensor.getOrdinal(), valor, timestamp, alerta);
+                    motorAlertas.restaurar(sensor.getOrdinal(), alerta, valor, timestamp);
+                }
+            });
+            if (cabecalho != null) {
+                leiturasTotais.add(cabecalho.leiturasTotais());
+                alertasTotais.add(cabecalho.alertasTotais());
+                registo.info("Estado restaurado: {} sensores em {} ms",
+                        cabecalho.sensores(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            }
+        } catch (IOException e) {
+            registo.error("Falha ao restaurar estado: {}", e.getMessage());
+        }
+    }
+
+    private void guardarEstado() {
+        try {
+            persistenciaEstado.guardar(sensoresPorLocalizacao.values(), tabelaUltimosValores,
+                    leiturasTotais.sum(), alertasTotais.sum());
+        } catch (IOException e) {
+            registo.error("Falha ao guardar estado: {}", e.getMessage());
+        }
+    }
+
+    public long getLeiturasTotais() {
+        return leiturasTotais.sum();
+    }
+
+    public long getAlertasTotais() {
+        return alertasTotais.sum();
+    }
+
+    // Only state changes are logged, not every reading above the limit. They also go out on the
+    // alert lane (runs on the sensor thread, before the reading itself is published)
+    private void registarTransicao(TransicaoAlerta transicao) {
+        JsonObject objeto = new JsonObject();
+        objeto.addProperty("sensor", transicao.sensorId());
+        objeto.addProperty("localizacao", transicao.localizacao().descricao());
+        objeto.addProperty("tipo", transicao.tipo().tipoJson());
+        objeto.addProperty("estado", transicao.estadoTexto());
+        objeto.addProperty("valor", transicao.valor());
+        objeto.addProperty("timestamp", transicao.timestamp());
+        mqttClientManager.publicarAlerta(transicao.localizacao().topicoAlertas() + "/estado", GSON.toJson(objeto));
+        registo.info("Sensor {} mudou para {} (valor {})", transicao.sensorId(), transicao.estadoTexto(), transicao.valor());
+    }
+
+    /**
+     * Logger with the sinks chosen in the config: a rolling file when {@code log.ficheiro} is
+     * set and stdout when {@code log.consola} is on (the default for headless nodes). The UI
+     * adds its own sink.
+     */
+    private static RegistoAssincrono criarRegisto(Configuracao configuracao) {
+        RegistoAssincrono registo = new RegistoAssincrono(
+                Nivel.de(configuracao.texto("log.nivel", "INFO"), Nivel.INFO),
+                (int) configuracao.inteiro("log.capacidade", 8192L));
+        String ficheiro = configuracao.texto("log.ficheiro", "");
+        if (!ficheiro.isBlank()) {
+            registo.adicionarDestino(new DestinoFicheiro(Path.of(ficheiro),
+                    configuracao.inteiro("log.tamanhoMaximoMb", 8L) * 1024L * 1024L,
+                    (int) configuracao.inteiro("log.copias", 5L)));
+        }
+        if (configuracao.booleano("log.consola", configuracao.booleano("headless", false))) {
+            registo.adicionarDestino(new DestinoConsola());
+        }
+        return registo;
     }
 
     public void shutdown() {
+        if (coordenadorCluster != null) {
+            coordenadorCluster.sair();
+        }
+        agendador.shutdownNow();
         sensoresPorLocalizacao.values().forEach(Sensor::desligar);
+        try {
+            // A periodic save may still be running: it must finish before the final one
+            agendador.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Last snapshot so the next start resumes exactly from here
+        guardarEstado();
+        csvLogService.fechar();
+        if (registoSql != null) {
+            registoSql.fechar();
+        }
+        if (servicoIngestao != null) {
+            servicoIngestao.parar();
+        }
+        if (servidorDashboard != null) {
+            servidorDashboard.parar();
+        }
         mqttClientManager.shutdown();
+        registo.parar();
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package pt.monitorizapt.service;
 
 import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.util.FormatadorDecimal;
 
 /**
  * A "Snapshot" acts as a Data Transfer Object (DTO) for the UI.
@@ -17,6 +18,6 @@ public record SensorSnapshot(String id,
     
     // Helper for table display
     public String valorFormatado() {
-        return String.format("%.2f %s", valor, unidade);
+        return FormatadorDecimal.formatar(valor) + " " + unidade;
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package pt.monitorizapt.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import pt.monitorizapt.domain.SensorTipo;
+
+/**
+ * Shared table with the current state of every sensor, stored off-heap.
+ *
+ * Each sensor owns a fixed-width slot (indexed by its ordinal) inside one direct buffer:
+ * <pre>
+ * [0]  sequence  (long)   odd while a write is in progress
+ * [8]  valor     (double)
+ * [16] timestamp (long)
+ * [24] flags     (int)    bit 0 = alerta, bit 1 = has a reading
+ * </pre>
+ * Writes follow the seqlock pattern: a single writer per slot (the sensor thread) bumps the
+ * sequence to odd, writes the fields and bumps it back to even. Readers retry if the sequence
+ * changed while they were reading. One million sensors take 32 MB outside the heap and
+ * updating a slot allocates nothing.
+ *
+ * Static metadata (id, location, type) never changes, so it stays in plain heap arrays.
+ */
+public class TabelaUltimosValores {
+    private static final int BYTES_POR_SLOT = 32;
+    private static final int OFFSET_VALOR = 8;
+    private static final int OFFSET_TIMESTAMP = 16;
+    private static final int OFFSET_FLAGS = 24;
+    private static final int FLAG_ALERTA = 1;
+    private static final int FLAG_PRESENTE = 2;
+
+    // Gives us acquire/release semantics on longs stored inside the ByteBuffer
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int capacidade;
+    private final ByteBuffer slots;
+    private final String[] ids;
+    private final String[] localizacoes;
+    private final SensorTipo[] tipos;
+
+    public TabelaUltimosValores(int capacidade) {
+        this.capacidade = capacidade;
+        this.slots = ByteBuffer.allocateDirect(capacidade * BYTES_POR_SLOT).order(ByteOrder.nativeOrder());
+        this.ids = new String[capacidade];
+        this.localizacoes = new String[capacidade];
+        this.tipos = new SensorTipo[capacidade];
+    }
+
+    public int capacidade() {
+        return capacidade;
+    }
+
+    public void registar(int ordinal, String id, String localizacao, SensorTipo tipo) {
+        ids[ordinal] = id;
+        localizacoes[ordinal] = localizacao;
+        tipos[ordinal] = tipo;
+    }
+
+    /**
+     * Single writer per slot: must only be called by the thread that owns the sensor.
+     */
+    public void publicar(int ordinal, double valor, long timestamp, boolean alerta) {
+        int base = ordinal * BYTES_POR_SLOT;
+        long seq = (long) LONGS.get(slots, base);
+        LONGS.setOpaque(slots, base, seq + 1);
+        VarHandle.storeStoreFence();
+        slots.putDouble(base + OFFSET_VALOR, valor);
+        slots.putLong(base + OFFSET_TIMESTAMP, timestamp);
+        slots.putInt(base + OFFSET_FLAGS, FLAG_PRESENTE | (alerta ? FLAG_ALERTA : 0));
+        LONGS.setRelease(slots, base, seq + 2);
+    }
+
+    /**
+     * Copies a consistent view of the slot into a reusable holder (no allocation).
+     *
+     * @return false if the sensor never published a reading
+     */
+    public boolean ler(int ordinal, Leitura destino) {
+        int base = ordinal * BYTES_POR_SLOT;
+        while (true) {
+            long antes = (long) LONGS.getAcquire(slots, base);
+            if ((antes & 1L) != 0L) {
+                Thread.onSpinWait();
+                continue;
+            }
+            double valor = slots.getDouble(base + OFFSET_VALOR);
+            long timestamp = slots.getLong(base + OFFSET_TIMESTAMP);
+            int flags = slots.getInt(base + OFFSET_FLAGS);
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getAcquire(slots, base) == antes) {
+                destino.valor = valor;
+                destino.timestamp = timestamp;
+                destino.alerta = (flags & FLAG_ALERTA) != 0;
+                destino.presente = (flags & FLAG_PRESENTE) != 0;
+                return destino.presente;
+            }
+        }
+    }
+
+    /**
+     * Changes every time the slot is written. Cheap way for readers to detect updates.
+     */
+    public long versao(int ordinal) {
+        return (long) LONGS.getAcquire(slots, ordinal * BYTES_POR_SLOT);
+    }
+
+    public String id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public String localizacao(int ordinal) {
+        return localizacoes[ordinal];
+    }
+
+    public SensorTipo tipo(int ordinal) {
+        return tipos[ordinal];
+    }
+
+    /**
+     * Mutable holder filled by {@link #ler}. Meant to be reused by a single reader thread.
+     */
+    public static final class Leitura {
+        private double valor;
+        private long timestamp;
+        private boolean alerta;
+        private boolean presente;
+
+        public double valor() {
+            return valor;
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public boolean alerta() {
+            return alerta;
+        }
+
+        public boolean presente() {
+            return presente;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pt.monitorizapt.ui;
+
+import javax.swing.table.AbstractTableModel;
+
+import pt.monitorizapt.service.IndiceCsv;
+
+/**
+ * Rows of one CSV log, read through its {@link IndiceCsv}: only the rows the table paints are
+ * decoded, so the model costs the same for a small file and a multi-gigabyte one.
+ * The row count follows the background indexing through {@link #sincronizar()}.
+ */
+public class HistoricoCsvTableModel extends AbstractTableModel {
+    private IndiceCsv indice;
+    private String[] colunas = new String[0];
+    // Rows announced to the table (may lag behind the index until the next refresh)
+    private int linhas;
+
+    public void setIndice(IndiceCsv indice) {
+        this.indice = indice;
+        this.colunas = indice == null ? new String[0] : indice.colunas();
+        this.linhas = indice == null ? 0 : indice.linhas();
+        fireTableStructureChanged();
+    }
+
+    public IndiceCsv getIndice() {
+        return indice;
+    }
+
+    @Override
+    public int getRowCount() {
+        return linhas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return colunas.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return colunas[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        String[] campos = indice.ler(rowIndex);
+        return columnIndex < campos.length ? campos[columnIndex] : "";
+    }
+
+    /**
+     * Called periodically on the EDT while the index is being built.
+     */
+    public void sincronizar() {
+        if (indice == null) {
+            return;
+        }
+        int atuais = indice.linhas();
+        if (atuais > linhas) {
+            int anteriores = linhas;
+            linhas = atuais;
+            fireTableRowsInserted(anteriores, atuais - 1);
+        }
+    }
+}
@@ -10,21 +10,23 @@ import java.util.concurrent.CompletableFuture;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
 import javax.swing.JTable;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import pt.monitorizapt.domain.SensorLocalizacao;
 import pt.monitorizapt.mqtt.MqttClientManager;
 import pt.monitorizapt.service.SensorController;
-import pt.monitorizapt.service.SensorSnapshot;
 
 /**
  * The main View class.
@@ -32,10 +34,19 @@ import pt.monitorizapt.service.SensorSnapshot;
  */
 public class MonitorizaPTFrame extends JFrame {
     private static final int MAX_LOG_LINES = 1000;
+    // Table refresh period: many readings in between are coalesced into one repaint
+    private static final int REFRESH_TABELA_MS = 250;
+    // Regional rollups change slowly (extremes only move when a window closes)
+    private static final int REFRESH_REGIOES_MS = 1000;
 
     private final SensorController controller;
     private final MqttClientManager mqttClientManager;
-    private final SensorTableModel tableModel = new SensorTableModel();
+    private final SensorTableModel tableModel;
+    private final Timer refreshTabela;
+    private final PainelGrafico painelGrafico;
+    private final RegioesTableModel regioesModel;
+    private final Timer refreshRegioes;
+    private final PainelHistorico painelHistorico = new PainelHistorico();
 
     // UI Components
     private final JLabel estadoMqttLabel = new JLabel("Estado MQTT: VERMELHO");
@@ -43,6 +54,7 @@ public class MonitorizaPTFrame extends JFrame {
     private final JComboBox<SensorLocalizacao> localizacaoCombo = new JComboBox<>(SensorLocalizacao.values());
     private final JLabel intervaloLabel = new JLabel("Intervalo (ms):");
     private final JTextField intervaloField = new JTextField("3333", 6);
+    private final JCheckBox adaptativoCheck = new JCheckBox("Adaptativo");
     private final JButton iniciarButton = new JButton("INICIAR");
     private final JButton pararButton = new JButton("PARAR");
     private final JButton limparLogsButton = new JButton("LIMPAR LOGS");
@@ -52,6 +64,11 @@ public class MonitorizaPTFrame extends JFrame {
         super("MonitorizaPT - Sensores Ambientais v1.0");
         this.controller = controller;
         this.mqttClientManager = mqttClientManager;
+        this.tableModel = new SensorTableModel(controller.getTabelaUltimosValores());
+        this.refreshTabela = new Timer(REFRESH_TABELA_MS, event -> tableModel.sincronizar());
+        this.painelGrafico = new PainelGrafico(controller);
+        this.regioesModel = new RegioesTableModel(controller.getAgregadorRegional());
+        this.refreshRegioes = new Timer(REFRESH_REGIOES_MS, event -> regioesModel.sincronizar());
         configurarJanela();
         registrarCallbacks();
     }
@@ -66,7 +83,12 @@ public class MonitorizaPTFrame extends JFrame {
         setLocationRelativeTo(null); // Centers on screen
 
         add(criarPainelNorte(), BorderLayout.NORTH);
-        add(criarTabela(), BorderLayout.CENTER);
+        JTabbedPane separadores = new JTabbedPane();
+        separadores.addTab("Tabela", criarTabela());
+        separadores.addTab("Gráfico", painelGrafico);
+        separadores.addTab("Regiões", criarTabelaRegioes());
+        separadores.addTab("Histórico", painelHistorico);
+        add(separadores, BorderLayout.CENTER);
         add(criarPainelSul(), BorderLayout.SOUTH);
 
         logArea.setEditable(false);
@@ -133,6 +155,14 @@ public class MonitorizaPTFrame extends JFrame {
         return scrollPane;
     }
 
+    private JScrollPane criarTabelaRegioes() {
+        JTable tabela = new JTable(regioesModel);
+        tabela.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(tabela);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        return scrollPane;
+    }
+
     private JPanel criarPainelSul() {
         JPanel painelSul = new JPanel(new BorderLayout(10, 10));
 
@@ -141,6 +171,8 @@ public class MonitorizaPTFrame extends JFrame {
         painelControlo.add(intervaloLabel);
         intervaloField.setPreferredSize(new Dimension(80, 24));
         painelControlo.add(intervaloField);
+        adaptativoCheck.setToolTipText("O intervalo passa a acompanhar a volatilidade do sinal");
+        painelControlo.add(adaptativoCheck);
         painelControlo.add(iniciarButton);
         painelControlo.add(pararButton);
         painelControlo.add(limparLogsButton);
@@ -156,11 +188,17 @@ public class MonitorizaPTFrame extends JFrame {
      * Connects UI events to Controller methods and listens for updates.
      */
     private void registrarCallbacks() {
+        // The table polls the shared latest-value table instead of receiving one event per reading
+        refreshTabela.start();
+        refreshRegioes.start();
+        // Draws on its own thread, and only while its tab is visible
+        painelGrafico.iniciar();
+
         // Data comes from background threads (Sensors/MQTT).
         // Swing isn't thread-safe so we need to use invokeLater to update the UI components
         // on the Event Dispatch Thread (EDT).
-        controller.registerSnapshotObserver(snapshot -> SwingUtilities.invokeLater(() -> atualizarTabela(snapshot)));
-        controller.registerLogObserver(log -> SwingUtilities.invokeLater(() -> appendLog(log)));
+        // Log lines arrive in batches from the logger thread: one EDT task per batch
+        controller.registarDestinoLog(linhas -> SwingUtilities.invokeLater(() -> linhas.forEach(this::appendLog)));
         mqttClientManager.registerConnectionListener(conectado -> SwingUtilities.invokeLater(() -> atualizarEstado(conectado)));
 
         testarBrokerButton.addActionListener(event -> testarBroker());
@@ -169,10 +207,6 @@ public class MonitorizaPTFrame extends JFrame {
         limparLogsButton.addActionListener(event -> logArea.setText(""));
     }
 
-    private void atualizarTabela(SensorSnapshot snapshot) {
-        tableModel.upsert(snapshot);
-    }
-
     private void appendLog(String linha) {
         // prevent the log area from growing infinitely to protect memory overflow
         if (logArea.getLineCount() > MAX_LOG_LINES) {
@@ -233,6 +267,7 @@ public class MonitorizaPTFrame extends JFrame {
             return;
         }
 
+        controller.definirAdaptativo(localizacao, adaptativoCheck.isSelected());
         controller.ativarLocalizacao(localizacao, intervalo);
     }
 
@@ -249,6 +284,10 @@ public class MonitorizaPTFrame extends JFrame {
                 JOptionPane.QUESTION_MESSAGE);
 
         if (resposta == JOptionPane.YES_OPTION) {
+            refreshTabela.stop();
+            refreshRegioes.stop();
+            painelGrafico.parar();
+            painelHistorico.parar();
             controller.shutdown();
             dispose();
             System.exit(0);
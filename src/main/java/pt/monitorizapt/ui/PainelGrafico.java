@@ -0,0 +1,252 @@
+package pt.monitorizapt.ui;
+
+import java.awt.BasicStroke;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+
+import pt.monitorizapt.domain.HistoricoLeituras;
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.service.SensorController;
+import pt.monitorizapt.util.FormatadorDecimal;
+
+/**
+ * Live chart of the history of the selected sensors, one horizontal strip per sensor (each
+ * with its own scale, since the units differ).
+ *
+ * Drawing happens on a background thread into a back buffer; the EDT only blits the finished
+ * image, so a long history never stalls the UI. Each series is downsampled with LTTB to the
+ * strip width and kept up to date incrementally ({@link SerieLttb}), and every buffer is
+ * reused between frames. A frame is only redrawn when a selected sensor has new readings or
+ * the panel was resized.
+ */
+public class PainelGrafico extends JPanel {
+    private static final long REFRESH_MS = 500L;
+    private static final int MARGEM = 8;
+    private static final Color[] CORES = {
+            new Color(31, 119, 180), new Color(214, 39, 40), new Color(44, 160, 44), new Color(255, 127, 14),
+            new Color(148, 103, 189), new Color(140, 86, 75), new Color(23, 190, 207)};
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("dd/MM HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private final SensorController controller;
+    private final SensorLocalizacao[] localizacoes = SensorLocalizacao.values();
+    private final JCheckBox[] seletores = new JCheckBox[localizacoes.length];
+    private final Tela tela = new Tela();
+    private final ScheduledExecutorService render = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "grafico-render");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Written on the EDT, read by the render thread
+    private volatile boolean[] selecionados = new boolean[localizacoes.length];
+    private volatile int largura;
+    private volatile int altura;
+
+    // Render thread only: downsampled series and reused point buffers
+    private final SerieLttb[] series = new SerieLttb[localizacoes.length];
+    private long[] xReduzido = new long[0];
+    private double[] yReduzido = new double[0];
+    private int[] xPixeis = new int[0];
+    private int[] yPixeis = new int[0];
+    private final long[] escritasDesenhadas = new long[localizacoes.length];
+    private int larguraDesenhada;
+    private int alturaDesenhada;
+    private BufferedImage traseira;
+
+    // Image shown by the EDT, swapped under the lock
+    private final Object troca = new Object();
+    private BufferedImage frente;
+
+    public PainelGrafico(SensorController controller) {
+        super(new BorderLayout());
+        this.controller = controller;
+        for (int i = 0; i < localizacoes.length; i++) {
+            series[i] = new SerieLttb(controller.getHistorico(localizacoes[i]));
+        }
+
+        JPanel painelSeletores = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 2));
+        for (int i = 0; i < localizacoes.length; i++) {
+            JCheckBox seletor = new JCheckBox(localizacoes[i].descricao(), i == 0);
+            seletor.setForeground(CORES[i % CORES.length]);
+            seletor.addActionListener(event -> atualizarSelecao());
+            seletores[i] = seletor;
+            painelSeletores.add(seletor);
+        }
+        atualizarSelecao();
+        add(painelSeletores, BorderLayout.NORTH);
+
+        tela.setBackground(Color.WHITE);
+        tela.setOpaque(true);
+        tela.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        tela.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                largura = tela.getWidth();
+                altura = tela.getHeight();
+            }
+        });
+        add(tela, BorderLayout.CENTER);
+    }
+
+    public void iniciar() {
+        render.scheduleWithFixedDelay(this::desenhar, 0L, REFRESH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void parar() {
+        render.shutdownNow();
+    }
+
+    private void atualizarSelecao() {
+        boolean[] novos = new boolean[seletores.length];
+        for (int i = 0; i < seletores.length; i++) {
+            novos[i] = seletores[i].isSelected();
+        }
+        selecionados = novos;
+        // Force a redraw even if no new reading arrived
+        render.execute(() -> larguraDesenhada = -1);
+    }
+
+    // Render thread
+    private void desenhar() {
+        int w = largura;
+        int h = altura;
+        if (w <= 0 || h <= 0 || !isShowing()) {
+            return;
+        }
+        boolean[] selecao = selecionados;
+        boolean mudou = w != larguraDesenhada || h != alturaDesenhada;
+        int visiveis = 0;
+        for (int i = 0; i < selecao.length; i++) {
+            if (selecao[i]) {
+                visiveis++;
+                mudou |= controller.getHistorico(localizacoes[i]).totalEscritas() != escritasDesenhadas[i];
+            }
+        }
+        if (!mudou) {
+            return;
+        }
+
+        if (traseira == null || traseira.getWidth() != w || traseira.getHeight() != h) {
+            traseira = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = traseira.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, w, h);
+            if (visiveis == 0) {
+                g.setColor(Color.GRAY);
+                g.drawString("Selecione pelo menos um sensor", MARGEM, 2 * MARGEM);
+            }
+            int faixa = visiveis == 0 ? h : h / visiveis;
+            int posicao = 0;
+            for (int i = 0; i < selecao.length; i++) {
+                if (selecao[i]) {
+                    escritasDesenhadas[i] = desenharSerie(g, i, posicao * faixa, w, faixa);
+                    posicao++;
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        larguraDesenhada = w;
+        alturaDesenhada = h;
+
+        synchronized (troca) {
+            BufferedImage anterior = frente;
+            frente = traseira;
+            traseira = anterior;
+        }
+        tela.repaint();
+    }
+
+    /**
+     * @return the write count of the history that was drawn
+     */
+    private long desenharSerie(Graphics2D g, int indice, int topo, int w, int h) {
+        HistoricoLeituras historico = controller.getHistorico(localizacoes[indice]);
+        long escritas = historico.totalEscritas();
+        int larguraUtil = Math.max(4, w - 2 * MARGEM);
+        if (xReduzido.length < larguraUtil) {
+            xReduzido = new long[larguraUtil];
+            yReduzido = new double[larguraUtil];
+            xPixeis = new int[larguraUtil];
+            yPixeis = new int[larguraUtil];
+        }
+        int pontos = series[indice].atualizar(larguraUtil, xReduzido, yReduzido);
+        int n = historico.tamanho();
+
+        g.setColor(new Color(235, 235, 235));
+        g.drawLine(0, topo + h - 1, w, topo + h - 1);
+        g.setColor(CORES[indice % CORES.length]);
+        String titulo = localizacoes[indice].descricao() + " (" + n + " leituras)";
+        if (pontos < 2) {
+            g.drawString(titulo + " - sem dados suficientes", MARGEM, topo + 2 * MARGEM);
+            return escritas;
+        }
+
+        double minimo = Double.POSITIVE_INFINITY;
+        double maximo = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < pontos; i++) {
+            minimo = Math.min(minimo, yReduzido[i]);
+            maximo = Math.max(maximo, yReduzido[i]);
+        }
+        double amplitude = maximo > minimo ? maximo - minimo : 1.0;
+        long inicio = xReduzido[0];
+        double duracao = Math.max(1L, xReduzido[pontos - 1] - inicio);
+        int alturaUtil = Math.max(1, h - 4 * MARGEM);
+        int base = topo + h - MARGEM;
+
+        for (int i = 0; i < pontos; i++) {
+            xPixeis[i] = MARGEM + (int) ((xReduzido[i] - inicio) / duracao * (larguraUtil - 1));
+            yPixeis[i] = base - (int) ((yReduzido[i] - minimo) / amplitude * alturaUtil);
+        }
+        g.setStroke(new BasicStroke(1.2f));
+        g.drawPolyline(xPixeis, yPixeis, pontos);
+
+        g.drawString(titulo + "  min " + FormatadorDecimal.formatar(minimo) + "  max "
+                + FormatadorDecimal.formatar(maximo), MARGEM, topo + 2 * MARGEM);
+        g.setColor(Color.GRAY);
+        String periodo = HORA.format(Instant.ofEpochMilli(inicio)) + " - "
+                + HORA.format(Instant.ofEpochMilli(xReduzido[pontos - 1]));
+        g.drawString(periodo, w - MARGEM - g.getFontMetrics().stringWidth(periodo), topo + 2 * MARGEM);
+        return escritas;
+    }
+
+    /**
+     * The drawing surface: just copies the latest finished frame.
+     */
+    private final class Tela extends JComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            synchronized (troca) {
+                if (frente != null) {
+                    g.drawImage(frente, 0, 0, null);
+                }
+            }
+        }
+    }
+
+}
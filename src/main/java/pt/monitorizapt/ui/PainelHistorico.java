@@ -0,0 +1,179 @@
+package pt.monitorizapt.ui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+import pt.monitorizapt.service.IndiceCsv;
+import pt.monitorizapt.service.LeitorCsv;
+
+/**
+ * Browser for the CSV logs, however large. Opening a file only maps it: the line index is
+ * built on a background thread and the table shows rows as soon as they are indexed, decoding
+ * just the visible ones. "Ir para" jumps to the first reading at or after a date with a binary
+ * search over the index.
+ */
+public class PainelHistorico extends JPanel {
+    private static final int REFRESH_MS = 250;
+    private static final DateTimeFormatter DATA = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final HistoricoCsvTableModel model = new HistoricoCsvTableModel();
+    private final JTable tabela = new JTable(model);
+    private final JButton abrirButton = new JButton("ABRIR CSV");
+    private final JTextField dataField = new JTextField(16);
+    private final JButton irButton = new JButton("IR PARA");
+    private final JLabel estadoLabel = new JLabel("Nenhum ficheiro aberto");
+    private final Timer refresh = new Timer(REFRESH_MS, event -> sincronizar());
+    private final ExecutorService indexador = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "historico-indice");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    public PainelHistorico() {
+        super(new BorderLayout(5, 5));
+        JPanel barra = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 2));
+        barra.add(abrirButton);
+        dataField.setToolTipText("dd-MM-yyyy HH:mm:ss ou instante ISO (2024-01-23T17:41:55Z)");
+        barra.add(new JLabel("Data:"));
+        barra.add(dataField);
+        barra.add(irButton);
+        barra.add(estadoLabel);
+        add(barra, BorderLayout.NORTH);
+
+        tabela.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(tabela);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        add(scrollPane, BorderLayout.CENTER);
+
+        abrirButton.addActionListener(event -> escolherFicheiro());
+        irButton.addActionListener(event -> irPara());
+        dataField.addActionListener(event -> irPara());
+    }
+
+    public void parar() {
+        refresh.stop();
+        indexador.shutdownNow();
+        fecharAtual();
+    }
+
+    private void escolherFicheiro() {
+        JFileChooser seletor = new JFileChooser(LeitorCsv.diretoria().toFile());
+        seletor.setFileFilter(new FileNameExtensionFilter("Registos CSV (.csv, .csv.gz)", "csv", "gz"));
+        if (seletor.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            abrir(seletor.getSelectedFile().toPath());
+        }
+    }
+
+    private void abrir(Path ficheiro) {
+        fecharAtual();
+        estadoLabel.setText(LeitorCsv.isComprimido(ficheiro) ? "A descomprimir " + ficheiro.getFileName() + "..."
+                : "A abrir " + ficheiro.getFileName() + "...");
+        abrirButton.setEnabled(false);
+        indexador.execute(() -> {
+            IndiceCsv indice;
+            try {
+                indice = new IndiceCsv(ficheiro);
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> falhou(ficheiro, e));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                abrirButton.setEnabled(true);
+                model.setIndice(indice);
+                refresh.start();
+            });
+            try {
+                indice.construir();
+            } catch (IOException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> estadoLabel.setText("Falha ao indexar: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void falhou(Path ficheiro, Exception erro) {
+        abrirButton.setEnabled(true);
+        estadoLabel.setText("Nenhum ficheiro aberto");
+        JOptionPane.showMessageDialog(this, "Não foi possível abrir " + ficheiro.getFileName() + ": " + erro.getMessage(),
+                "Histórico", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void fecharAtual() {
+        IndiceCsv atual = model.getIndice();
+        refresh.stop();
+        model.setIndice(null);
+        if (atual != null) {
+            try {
+                atual.close();
+            } catch (IOException e) {
+                System.err.println("Falha ao fechar " + atual.getOriginal() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void sincronizar() {
+        IndiceCsv indice = model.getIndice();
+        if (indice == null) {
+            return;
+        }
+        model.sincronizar();
+        estadoLabel.setText(String.format("%s: %,d leituras%s", indice.getOriginal().getFileName(), indice.linhas(),
+                indice.isCompleto() ? "" : " (a indexar...)"));
+        if (indice.isCompleto()) {
+            refresh.stop();
+        }
+    }
+
+    private void irPara() {
+        IndiceCsv indice = model.getIndice();
+        if (indice == null) {
+            return;
+        }
+        Long timestamp = lerData(dataField.getText().trim());
+        if (timestamp == null) {
+            JOptionPane.showMessageDialog(this, "Data inválida. Use dd-MM-yyyy HH:mm:ss ou um instante ISO.",
+                    "Erro de Input", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        model.sincronizar();
+        int linha = indice.procurar(timestamp);
+        if (linha >= 0 && linha < model.getRowCount()) {
+            tabela.setRowSelectionInterval(linha, linha);
+            tabela.scrollRectToVisible(tabela.getCellRect(linha, 0, true));
+        }
+    }
+
+    private static Long lerData(String texto) {
+        try {
+            return LocalDateTime.parse(texto, DATA).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return Instant.parse(texto).toEpochMilli();
+            } catch (DateTimeParseException e2) {
+                return null;
+            }
+        }
+    }
+}
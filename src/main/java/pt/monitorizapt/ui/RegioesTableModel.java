@@ -0,0 +1,77 @@
+package pt.monitorizapt.ui;
+
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import pt.monitorizapt.agregacao.AgregadorRegional;
+import pt.monitorizapt.agregacao.ResumoRegional;
+import pt.monitorizapt.util.FormatadorDecimal;
+
+/**
+ * Regional rollups (national and per city), one row per region and sensor type.
+ * The rows are taken from {@link AgregadorRegional#resumos()} on every refresh; there are only
+ * a handful of regions, so a full copy is cheaper than tracking changes.
+ */
+public class RegioesTableModel extends AbstractTableModel {
+    private static final String[] COLUNAS = {"Região", "Tipo", "Sensores", "Média", "Mínimo", "Máximo", "Em alerta", "Leituras"};
+
+    private final AgregadorRegional agregador;
+    private List<ResumoRegional> resumos = List.of();
+
+    public RegioesTableModel(AgregadorRegional agregador) {
+        this.agregador = agregador;
+    }
+
+    @Override
+    public int getRowCount() {
+        return resumos.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUNAS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        ResumoRegional resumo = resumos.get(rowIndex);
+        return switch (columnIndex) {
+            case 0 -> resumo.regiao();
+            case 1 -> resumo.tipo().etiqueta();
+            case 2 -> resumo.sensores();
+            case 3 -> formatar(resumo.media(), resumo);
+            case 4 -> formatar(resumo.minimo(), resumo);
+            case 5 -> formatar(resumo.maximo(), resumo);
+            case 6 -> resumo.emAlerta();
+            case 7 -> resumo.leituras();
+            default -> "";
+        };
+    }
+
+    /**
+     * Called periodically on the EDT.
+     */
+    public void sincronizar() {
+        List<ResumoRegional> novos = agregador.resumos();
+        if (novos.size() != resumos.size()) {
+            resumos = novos;
+            fireTableDataChanged();
+        } else {
+            resumos = novos;
+            fireTableRowsUpdated(0, resumos.size() - 1);
+        }
+    }
+
+    private static String formatar(double valor, ResumoRegional resumo) {
+        if (Double.isNaN(valor)) {
+            return "-";
+        }
+        return FormatadorDecimal.formatar(valor) + " " + resumo.tipo().unidadePadrao();
+    }
+}
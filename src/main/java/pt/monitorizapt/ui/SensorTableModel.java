@@ -1,23 +1,42 @@
 package pt.monitorizapt.ui;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import javax.swing.table.AbstractTableModel;
 
-import pt.monitorizapt.service.SensorSnapshot;
+import pt.monitorizapt.diagnostico.EventoTabela;
+import pt.monitorizapt.service.TabelaUltimosValores;
+import pt.monitorizapt.util.FormatadorDecimal;
 
 /**
- * Custom table model to display sensor snapshots.
- * Uses a LinkedHashMap to keep rows ordered by insertion but allow fast updates by ID.
+ * Custom table model to display the current value of each sensor.
+ * Instead of storing snapshots, it reads straight from the shared {@link TabelaUltimosValores}.
+ * Rows keep the order in which sensors published their first reading.
  */
 public class SensorTableModel extends AbstractTableModel {
     private static final String[] COLUNAS = {"ID", "Localização", "Tipo", "Valor Atual", "Alerta"};
-    private final LinkedHashMap<String, SensorSnapshot> linhas = new LinkedHashMap<>();
+
+    private final TabelaUltimosValores tabela;
+    // Reused holder: the model is only touched by the EDT
+    private final TabelaUltimosValores.Leitura leitura = new TabelaUltimosValores.Leitura();
+    private final StringBuilder texto = new StringBuilder(32);
+
+    private final int[] ordinalPorLinha;
+    private final int[] linhaPorOrdinal;
+    private final long[] versaoVista;
+    private int linhas;
+
+    public SensorTableModel(TabelaUltimosValores tabela) {
+        this.tabela = tabela;
+        this.ordinalPorLinha = new int[tabela.capacidade()];
+        this.linhaPorOrdinal = new int[tabela.capacidade()];
+        this.versaoVista = new long[tabela.capacidade()];
+        Arrays.fill(linhaPorOrdinal, -1);
+    }
 
     @Override
     public int getRowCount() {
-        return linhas.size();
+        return linhas;
     }
 
     @Override
@@ -32,53 +51,59 @@ public class SensorTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        SensorSnapshot snapshot = getSnapshot(rowIndex);
+        if (rowIndex >= linhas) {
+            throw new IndexOutOfBoundsException("Linha inexistente: " + rowIndex);
+        }
+        int ordinal = ordinalPorLinha[rowIndex];
         return switch (columnIndex) {
-            case 0 -> snapshot.id();
-            case 1 -> snapshot.localizacao();
-            case 2 -> snapshot.tipo().etiqueta();
-            case 3 -> String.format("%.2f %s", snapshot.valor(), snapshot.unidade());
-            case 4 -> snapshot.alerta() ? "ALERTA" : "OK";
+            case 0 -> tabela.id(ordinal);
+            case 1 -> tabela.localizacao(ordinal);
+            case 2 -> tabela.tipo(ordinal).etiqueta();
+            case 3 -> {
+                tabela.ler(ordinal, leitura);
+                texto.setLength(0);
+                FormatadorDecimal.escrever(leitura.valor(), texto).append(' ').append(tabela.tipo(ordinal).unidadePadrao());
+                yield texto.toString();
+            }
+            case 4 -> {
+                tabela.ler(ordinal, leitura);
+                yield leitura.alerta() ? "ALERTA" : "OK";
+            }
             default -> "";
         };
     }
 
     /**
-     * Update or Insert (Upsert) a sensor row.
+     * Called periodically on the EDT. Compares each slot version with the last one seen,
+     * so many readings between two refreshes result in a single repaint of the row.
      */
-    public void upsert(SensorSnapshot snapshot) {
-        boolean existente = linhas.containsKey(snapshot.id());
-        linhas.put(snapshot.id(), snapshot);
-        int rowIndex = indexOf(snapshot.id());
-        
-        if (existente && rowIndex >= 0) {
-            // Efficiently notifies the view that only this specific row changed
-            fireTableRowsUpdated(rowIndex, rowIndex);
-        } else {
-            // Notify that structure might have changed (new row)
-            fireTableDataChanged();
-        }
-    }
-
-    private int indexOf(String id) {
-        int idx = 0;
-        for (String key : linhas.keySet()) {
-            if (key.equals(id)) {
-                return idx;
+    public void sincronizar() {
+        EventoTabela evento = new EventoTabela();
+        evento.begin();
+        int atualizadas = 0;
+        for (int ordinal = 0; ordinal < versaoVista.length; ordinal++) {
+            long versao = tabela.versao(ordinal);
+            if (versao == versaoVista[ordinal] || (versao & 1L) != 0L) {
+                continue;
             }
-            idx++;
-        }
-        return -1;
-    }
-
-    private SensorSnapshot getSnapshot(int rowIndex) {
-        int idx = 0;
-        for (Map.Entry<String, SensorSnapshot> entry : linhas.entrySet()) {
-            if (idx == rowIndex) {
-                return entry.getValue();
+            versaoVista[ordinal] = versao;
+            atualizadas++;
+            int linha = linhaPorOrdinal[ordinal];
+            if (linha >= 0) {
+                // Efficiently notifies the view that only this specific row changed
+                fireTableRowsUpdated(linha, linha);
+            } else {
+                linha = linhas++;
+                ordinalPorLinha[linha] = ordinal;
+                linhaPorOrdinal[ordinal] = linha;
+                fireTableRowsInserted(linha, linha);
             }
-            idx++;
         }
-        throw new IndexOutOfBoundsException("Linha inexistente: " + rowIndex);
+        evento.end();
+        // Idle refreshes are not interesting
+        if (atualizadas > 0 && evento.shouldCommit()) {
+            evento.linhasAtualizadas = atualizadas;
+            evento.commit();
+        }
     }
-}
\ No newline at end of file
+}
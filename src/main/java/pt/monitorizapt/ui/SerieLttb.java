@@ -0,0 +1,152 @@
+package pt.monitorizapt.ui;
+
+import pt.monitorizapt.domain.HistoricoLeituras;
+import pt.monitorizapt.util.Lttb;
+
+/**
+ * LTTB view of one sensor history, kept up to date incrementally.
+ *
+ * Buckets have a fixed size and are aligned to the absolute sequence numbers of the history,
+ * so a bucket never moves once its readings are written: its chosen point is final as soon
+ * as the next bucket is complete (LTTB only looks at the previous choice and the next
+ * bucket's average). Each frame therefore reads just the new buckets from the history; the
+ * whole window is only processed again when the width changes or the history has grown
+ * enough to need bigger buckets (sized with some slack, so that stays rare). The last,
+ * incomplete buckets are summarized by one LTTB pick plus the newest reading, so the chart
+ * always ends at the latest value.
+ *
+ * Render thread only (not thread-safe).
+ */
+final class SerieLttb {
+    private final HistoricoLeituras historico;
+
+    private int limite;
+    // Readings per bucket (0 = nothing built yet)
+    private int balde;
+    // Buckets [primeiroBalde, proximoBalde) are final and stored in the ring
+    private long primeiroBalde;
+    private long proximoBalde;
+    private long[] xEscolhidos = new long[0];
+    private double[] yEscolhidos = new double[0];
+    // Last chosen point (first point of the next triangle)
+    private long xAnterior;
+    private double yAnterior;
+
+    // Two buckets of raw readings, reused
+    private long[] xTemp = new long[0];
+    private double[] yTemp = new double[0];
+    private final long[] xUm = new long[1];
+    private final double[] yUm = new double[1];
+
+    SerieLttb(HistoricoLeituras historico) {
+        this.historico = historico;
+    }
+
+    /**
+     * @param limite maximum number of points (at least 4)
+     * @return how many points were written to the arrays (which must hold {@code limite})
+     */
+    int atualizar(int limite, long[] xSaida, double[] ySaida) {
+        long fim = historico.totalEscritas();
+        long inicio = Math.max(0L, fim - historico.capacidade());
+        long n = fim - inicio;
+        if (n <= limite) {
+            // Few readings: draw them all
+            return Math.max(0, historico.copiarDesde(inicio, xSaida, ySaida));
+        }
+
+        // limite - 3 whole buckets at most: plus the first reading, the tail pick and the last one
+        long necessario = (n + limite - 4) / (limite - 3);
+        if (limite != this.limite || necessario > balde || proximoBalde * balde < inicio) {
+            if (!recomecar((int) (necessario + necessario / 8), limite, inicio)) {
+                return 0;
+            }
+        }
+        // Buckets that slid out of the history window
+        while (primeiroBalde < proximoBalde && primeiroBalde * balde < inicio) {
+            primeiroBalde++;
+        }
+        if (!finalizar(fim)) {
+            balde = 0; // overtaken by the writer while reading: rebuild on the next frame
+            return 0;
+        }
+
+        int saida = 0;
+        if (historico.copiarDesde(inicio, xUm, yUm) == 1) {
+            xSaida[saida] = xUm[0];
+            ySaida[saida++] = yUm[0];
+        }
+        for (long b = primeiroBalde; b < proximoBalde; b++) {
+            int slot = (int) (b % xEscolhidos.length);
+            xSaida[saida] = xEscolhidos[slot];
+            ySaida[saida++] = yEscolhidos[slot];
+        }
+        // Tail: readings of the buckets that are not final yet
+        int cauda = historico.copiarDesde(proximoBalde * balde, xTemp, yTemp);
+        if (cauda > 1) {
+            int escolhido = Lttb.maiorTriangulo(xTemp, yTemp, 0, cauda - 1, xAnterior, yAnterior,
+                    xTemp[cauda - 1] - xAnterior, yTemp[cauda - 1]);
+            xSaida[saida] = xTemp[escolhido];
+            ySaida[saida++] = yTemp[escolhido];
+        }
+        if (cauda > 0) {
+            xSaida[saida] = xTemp[cauda - 1];
+            ySaida[saida++] = yTemp[cauda - 1];
+        }
+        return saida;
+    }
+
+    private boolean recomecar(int tamanho, int limite, long inicio) {
+        this.balde = tamanho;
+        this.limite = limite;
+        if (xEscolhidos.length != limite) {
+            xEscolhidos = new long[limite];
+            yEscolhidos = new double[limite];
+        }
+        if (xTemp.length != 2 * tamanho) {
+            xTemp = new long[2 * tamanho];
+            yTemp = new double[2 * tamanho];
+        }
+        // First whole bucket of the window; the oldest reading is the first triangle vertex
+        primeiroBalde = (inicio + tamanho - 1) / tamanho;
+        proximoBalde = primeiroBalde;
+        if (historico.copiarDesde(inicio, xUm, yUm) != 1) {
+            balde = 0;
+            return false;
+        }
+        xAnterior = xUm[0];
+        yAnterior = yUm[0];
+        return true;
+    }
+
+    /**
+     * Fixes the choice of every bucket whose next bucket is complete.
+     *
+     * @return false when the history overwrote the readings being read
+     */
+    private boolean finalizar(long fim) {
+        while ((proximoBalde + 2) * balde <= fim) {
+            if (historico.copiarDesde(proximoBalde * balde, xTemp, yTemp) != 2 * balde) {
+                return false;
+            }
+            double mediaDx = 0.0;
+            double mediaY = 0.0;
+            for (int i = balde; i < 2 * balde; i++) {
+                mediaDx += xTemp[i] - xAnterior;
+                mediaY += yTemp[i];
+            }
+            int escolhido = Lttb.maiorTriangulo(xTemp, yTemp, 0, balde, xAnterior, yAnterior,
+                    mediaDx / balde, mediaY / balde);
+            int slot = (int) (proximoBalde % xEscolhidos.length);
+            xEscolhidos[slot] = xTemp[escolhido];
+            yEscolhidos[slot] = yTemp[escolhido];
+            xAnterior = xTemp[escolhido];
+            yAnterior = yTemp[escolhido];
+            proximoBalde++;
+            if (proximoBalde - primeiroBalde > xEscolhidos.length) {
+                primeiroBalde++;
+            }
+        }
+        return true;
+    }
+}
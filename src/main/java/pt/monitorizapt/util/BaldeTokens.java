@@ -0,0 +1,44 @@
+package pt.monitorizapt.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket: allows bursts of up to {@code capacidade} and a sustained {@code taxaPorSegundo}.
+ *
+ * Tokens are refilled lazily from the elapsed time on each call, so an idle bucket costs
+ * nothing and there is no timer thread.
+ */
+public class BaldeTokens {
+    private final double capacidade;
+    private final double tokensPorNano;
+    private double tokens;
+    private long ultimoNanos;
+
+    public BaldeTokens(double taxaPorSegundo, double capacidade) {
+        this.capacidade = Math.max(1.0, capacidade);
+        this.tokensPorNano = Math.max(0.0, taxaPorSegundo) / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = this.capacidade;
+        this.ultimoNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes one token if there is one.
+     */
+    public synchronized boolean tentar() {
+        long agora = System.nanoTime();
+        tokens = Math.min(capacidade, tokens + (agora - ultimoNanos) * tokensPorNano);
+        ultimoNanos = agora;
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    /**
+     * Gives back a token taken by {@link #tentar()} (e.g. when a later check refused the request).
+     */
+    public synchronized void devolver() {
+        tokens = Math.min(capacidade, tokens + 1.0);
+    }
+}
@@ -0,0 +1,84 @@
+package pt.monitorizapt.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Read-only view over the application settings.
+ * Priority: 1. System Property (-Dmonitorizapt.<key>) -> 2. config.properties -> 3. Default passed by the caller.
+ */
+public final class Configuracao {
+    private static final String PREFIXO_SISTEMA = "monitorizapt.";
+
+    private final Properties propriedades;
+    // File the settings came from (null when built in memory), used for hot reloads
+    private final Path origem;
+
+    public Configuracao(Properties propriedades, Path origem) {
+        this.propriedades = propriedades;
+        this.origem = origem;
+    }
+
+    /**
+     * Loads the given file. A missing file is not an error: the app falls back to the defaults.
+     */
+    public static Configuracao carregar(Path ficheiro) {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(ficheiro)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.out.println("Config file not found. Using internal defaults.");
+        }
+        return new Configuracao(props, ficheiro);
+    }
+
+    public static Configuracao vazia() {
+        return new Configuracao(new Properties(), null);
+    }
+
+    /**
+     * Re-reads the same file (used when the file changes on disk).
+     */
+    public Configuracao recarregar() {
+        return origem == null ? this : carregar(origem);
+    }
+
+    public Path origem() {
+        return origem;
+    }
+
+    public Properties propriedades() {
+        return propriedades;
+    }
+
+    public String texto(String chave, String padrao) {
+        String valor = System.getProperty(PREFIXO_SISTEMA + chave);
+        if (valor == null) {
+            valor = propriedades.getProperty(chave);
+        }
+        return valor == null ? padrao : valor.trim();
+    }
+
+    public long inteiro(String chave, long padrao) {
+        try {
+            return Long.parseLong(texto(chave, Long.toString(padrao)));
+        } catch (NumberFormatException e) {
+            return padrao;
+        }
+    }
+
+    public double decimal(String chave, double padrao) {
+        try {
+            return Double.parseDouble(texto(chave, Double.toString(padrao)));
+        } catch (NumberFormatException e) {
+            return padrao;
+        }
+    }
+
+    public boolean booleano(String chave, boolean padrao) {
+        return Boolean.parseBoolean(texto(chave, Boolean.toString(padrao)));
+    }
+}
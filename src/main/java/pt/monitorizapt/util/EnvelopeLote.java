@@ -0,0 +1,162 @@
+package pt.monitorizapt.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regional batch envelope: the reading payloads of one region, published as one message.
+ *
+ * <pre>{"regiao":"Lisboa","sequencia":12,"timestamp":1700000000000,"leituras":[{...},{...}],"hash_validacao":"..."}</pre>
+ *
+ * The readings are copied in verbatim (each keeps its own {@code hash_validacao}, so a
+ * consumer can still hand them to code written for single messages), and one SHA-256 covers
+ * the whole envelope: the exact text before {@code ,"hash_validacao"} followed by {@code }}.
+ * Nothing is parsed or re-serialized on either side; {@link #ler} only finds the boundaries
+ * of the array elements.
+ */
+public final class EnvelopeLote {
+    private static final String CAMPO_HASH = ",\"" + JsonPayloadBuilder.CAMPO_HASH + "\":\"";
+    private static final int TAMANHO_HASH = 64;
+
+    /**
+     * An envelope read by {@link #ler}.
+     *
+     * @param integro whether the envelope hash matches its content
+     */
+    public record Lote(String regiao, long sequencia, long timestamp, List<String> leituras, boolean integro) {
+    }
+
+    private EnvelopeLote() {
+    }
+
+    /**
+     * @param regiao    region name, safe for JSON without escaping (e.g. {@code segmentoCidade})
+     * @param leituras  complete reading payloads as produced by {@link JsonPayloadBuilder}
+     */
+    public static String construir(String regiao, long sequencia, long timestamp, List<String> leituras) {
+        int tamanho = 96 + regiao.length();
+        for (String leitura : leituras) {
+            tamanho += leitura.length() + 1;
+        }
+        StringBuilder texto = new StringBuilder(tamanho)
+                .append("{\"regiao\":\"").append(regiao)
+                .append("\",\"sequencia\":").append(sequencia)
+                .append(",\"timestamp\":").append(timestamp)
+                .append(",\"leituras\":[");
+        for (int i = 0; i < leituras.size(); i++) {
+            if (i > 0) {
+                texto.append(',');
+            }
+            texto.append(leituras.get(i));
+        }
+        texto.append(']');
+        String hash = HashUtil.sha256Hex(texto + "}");
+        return texto.append(CAMPO_HASH).append(hash).append("\"}").toString();
+    }
+
+    /**
+     * Splits an envelope into its reading payloads and checks its hash.
+     *
+     * @throws IllegalArgumentException when the text is not an envelope
+     */
+    public static Lote ler(String envelope) {
+        Leitor leitor = new Leitor(envelope);
+        leitor.esperar("{\"regiao\":\"");
+        String regiao = leitor.ate('"');
+        leitor.esperar("\",\"sequencia\":");
+        long sequencia = leitor.numero();
+        leitor.esperar(",\"timestamp\":");
+        long timestamp = leitor.numero();
+        leitor.esperar(",\"leituras\":[");
+        List<String> leituras = new ArrayList<>();
+        if (!leitor.consumir(']')) {
+            do {
+                leituras.add(leitor.objeto());
+            } while (leitor.consumir(','));
+            leitor.esperar("]");
+        }
+        int fimConteudo = leitor.pos;
+        leitor.esperar(CAMPO_HASH);
+        String hash = leitor.ate('"');
+        leitor.esperar("\"}");
+        if (hash.length() != TAMANHO_HASH || leitor.pos != envelope.length()) {
+            throw new IllegalArgumentException("Envelope sem hash no fim");
+        }
+        boolean integro = HashUtil.sha256Confere(envelope.substring(0, fimConteudo) + "}", hash);
+        return new Lote(regiao, sequencia, timestamp, leituras, integro);
+    }
+
+    private static final class Leitor {
+        private final String texto;
+        private int pos;
+
+        Leitor(String texto) {
+            this.texto = texto;
+        }
+
+        void esperar(String literal) {
+            if (!texto.startsWith(literal, pos)) {
+                throw new IllegalArgumentException("Esperado " + literal + " na posição " + pos);
+            }
+            pos += literal.length();
+        }
+
+        boolean consumir(char c) {
+            if (pos < texto.length() && texto.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        // Text up to (not including) the delimiter, which is left unread
+        String ate(char delimitador) {
+            int fim = texto.indexOf(delimitador, pos);
+            if (fim < 0) {
+                throw new IllegalArgumentException("Texto truncado na posição " + pos);
+            }
+            String valor = texto.substring(pos, fim);
+            pos = fim;
+            return valor;
+        }
+
+        long numero() {
+            int inicio = pos;
+            while (pos < texto.length() && Character.isDigit(texto.charAt(pos))) {
+                pos++;
+            }
+            if (pos == inicio || pos - inicio > 18) {
+                throw new IllegalArgumentException("Número inválido na posição " + inicio);
+            }
+            return Long.parseLong(texto, inicio, pos, 10);
+        }
+
+        // One JSON object, found by brace depth (braces inside strings do not count)
+        String objeto() {
+            if (pos >= texto.length() || texto.charAt(pos) != '{') {
+                throw new IllegalArgumentException("Esperado objeto na posição " + pos);
+            }
+            int inicio = pos;
+            int profundidade = 0;
+            boolean emString = false;
+            for (; pos < texto.length(); pos++) {
+                char c = texto.charAt(pos);
+                if (emString) {
+                    if (c == '\\') {
+                        pos++;
+                    } else if (c == '"') {
+                        emString = false;
+                    }
+                } else if (c == '"') {
+                    emString = true;
+                } else if (c == '{' || c == '[') {
+                    profundidade++;
+                } else if ((c == '}' || c == ']') && --profundidade == 0) {
+                    pos++;
+                    return texto.substring(inicio, pos);
+                }
+            }
+            throw new IllegalArgumentException("Objeto truncado na posição " + inicio);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package pt.monitorizapt.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed two-decimal formatter shared by the CSV log, the UI and the JSON payload.
+ *
+ * Output is always locale-independent ('.' as decimal separator) and uses HALF_UP rounding,
+ * giving the same result as {@code BigDecimal.valueOf(v).setScale(2, HALF_UP)}. The digits are
+ * written straight into the caller's char/byte buffer, so formatting doesn't allocate.
+ */
+public final class FormatadorDecimal {
+    // Above this magnitude the double arithmetic is no longer precise enough for the fast path
+    private static final double LIMITE_RAPIDO = 1e9;
+    // Fractions this close to .5 may be a tie in decimal: let BigDecimal decide
+    private static final double MARGEM_EMPATE = 1e-4;
+    // Beyond this the hundredths don't fit a long: fall back to Double.toString
+    private static final double LIMITE_FIXO = 1e15;
+    // Scratch space per thread, so the byte/StringBuilder variants don't allocate either
+    private static final ThreadLocal<char[]> BUFFER_LOCAL = ThreadLocal.withInitial(() -> new char[32]);
+
+    private FormatadorDecimal() {
+    }
+
+    /**
+     * Value multiplied by 100 and rounded HALF_UP (e.g. 23.456 -> 2346, -1.005 -> -101).
+     * Only meaningful for finite values below 1e15.
+     */
+    public static long centesimas(double valor) {
+        double absoluto = Math.abs(valor);
+        if (absoluto < LIMITE_RAPIDO) {
+            double escalado = absoluto * 100.0;
+            double inteiro = Math.floor(escalado);
+            double fracao = escalado - inteiro;
+            if (Math.abs(fracao - 0.5) > MARGEM_EMPATE) {
+                long resultado = (long) inteiro + (fracao > 0.5 ? 1L : 0L);
+                return valor < 0 ? -resultado : resultado;
+            }
+        }
+        // Rare path: ties and huge values use the exact decimal representation
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    /**
+     * Replacement for the old BigDecimal rounding used in the JSON payload.
+     */
+    public static double arredondar(double valor) {
+        if (!(Math.abs(valor) < LIMITE_FIXO)) {
+            return valor; // NaN, infinities and huge values have nothing to round
+        }
+        return centesimas(valor) / 100.0;
+    }
+
+    /**
+     * Writes the value into {@code destino} starting at {@code pos}.
+     * The buffer needs room for up to 24 chars.
+     *
+     * @return the position after the last written char
+     */
+    public static int escrever(double valor, char[] destino, int pos) {
+        if (!(Math.abs(valor) < LIMITE_FIXO)) {
+            String texto = Double.toString(valor);
+            texto.getChars(0, texto.length(), destino, pos);
+            return pos + texto.length();
+        }
+        long centesimas = centesimas(valor);
+        if (centesimas < 0) {
+            destino[pos++] = '-';
+            centesimas = -centesimas;
+        }
+        long inteiro = centesimas / 100;
+        int fracao = (int) (centesimas % 100);
+
+        int digitos = contarDigitos(inteiro);
+        for (int i = pos + digitos - 1; i >= pos; i--) {
+            destino[i] = (char) ('0' + inteiro % 10);
+            inteiro /= 10;
+        }
+        pos += digitos;
+        destino[pos++] = '.';
+        destino[pos++] = (char) ('0' + fracao / 10);
+        destino[pos++] = (char) ('0' + fracao % 10);
+        return pos;
+    }
+
+    /**
+     * Same as {@link #escrever(double, char[], int)} but for byte buffers (ASCII output).
+     */
+    public static int escrever(double valor, byte[] destino, int pos) {
+        char[] tmp = BUFFER_LOCAL.get();
+        int fim = escrever(valor, tmp, 0);
+        for (int i = 0; i < fim; i++) {
+            destino[pos + i] = (byte) tmp[i];
+        }
+        return pos + fim;
+    }
+
+    public static StringBuilder escrever(double valor, StringBuilder destino) {
+        char[] tmp = BUFFER_LOCAL.get();
+        int fim = escrever(valor, tmp, 0);
+        return destino.append(tmp, 0, fim);
+    }
+
+    /**
+     * Convenience for callers that really need a String (Swing cells, log lines).
+     */
+    public static String formatar(double valor) {
+        char[] tmp = BUFFER_LOCAL.get();
+        return new String(tmp, 0, escrever(valor, tmp, 0));
+    }
+
+    private static int contarDigitos(long valor) {
+        int digitos = 1;
+        while (valor >= 10) {
+            valor /= 10;
+            digitos++;
+        }
+        return digitos;
+    }
+}
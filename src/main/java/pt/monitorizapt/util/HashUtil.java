@@ -11,6 +11,16 @@ import java.security.NoSuchAlgorithmException;
 public final class HashUtil {
     // Fast lookup table for Hex conversion
     private static final char[] HEX_ARRAY = "0123456789abcdef".toCharArray();
+    // MessageDigest is not thread-safe and getInstance() is a provider lookup:
+    // each thread (sensor, ingest worker) keeps its own instance
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // This should never happen in a standard Java environment
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
 
     private HashUtil() {
     }
@@ -23,14 +33,26 @@ public final class HashUtil {
      * @return The hexadecimal representation of the hash.
      */
     public static String sha256Hex(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            return toHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            // This should never happen in a standard Java environment
-            throw new IllegalStateException("SHA-256 not available", e);
+        return toHex(SHA256.get().digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Checks a received hash without building the hex string of the computed one.
+     * Upper or lower case hex is accepted.
+     */
+    public static boolean sha256Confere(String input, String hexEsperado) {
+        if (hexEsperado == null || hexEsperado.length() != 64) {
+            return false;
+        }
+        byte[] hash = SHA256.get().digest(input.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < hash.length; i++) {
+            int alto = Character.digit(hexEsperado.charAt(i * 2), 16);
+            int baixo = Character.digit(hexEsperado.charAt(i * 2 + 1), 16);
+            if (alto < 0 || baixo < 0 || ((alto << 4) | baixo) != (hash[i] & 0xFF)) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -0,0 +1,82 @@
+package pt.monitorizapt.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with a fixed memory footprint, for percentiles of long-running counters.
+ *
+ * Values are kept in microseconds in log-linear buckets: four per power of two, so a
+ * percentile is reported as the upper bound of its bucket, at most 25% above the real value.
+ * Recording is a few arithmetic operations and one atomic increment; any thread may record
+ * and read at the same time (a read is a consistent-enough view, not a snapshot).
+ */
+public class HistogramaLatencia {
+    private static final int BITS_SUB = 2;
+    private static final int SUBDIVISOES = 1 << BITS_SUB;
+    private static final int BALDES = 64 * SUBDIVISOES;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(BALDES);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong maximoMicros = new AtomicLong();
+
+    public void registar(long nanos) {
+        long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos));
+        contagens.incrementAndGet(balde(micros));
+        total.increment();
+        if (micros > maximoMicros.get()) {
+            maximoMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    public long total() {
+        return total.sum();
+    }
+
+    public long maximoMicros() {
+        return maximoMicros.get();
+    }
+
+    /**
+     * @param p between 0 and 1 (e.g. 0.99)
+     * @return the upper bound of the bucket holding that percentile, in microseconds (never above
+     *         the largest value recorded), or 0 when nothing was recorded
+     */
+    public long percentilMicros(double p) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0L;
+        }
+        long alvo = Math.max(1L, (long) Math.ceil(p * n));
+        long acumulado = 0L;
+        for (int i = 0; i < BALDES; i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), maximoMicros.get());
+            }
+        }
+        return maximoMicros.get();
+    }
+
+    // 0..3 map to themselves; above that, the exponent picks the group and the next two bits the bucket
+    static int balde(long micros) {
+        if (micros < SUBDIVISOES) {
+            return (int) micros;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (expoente - BITS_SUB)) & (SUBDIVISOES - 1);
+        return (expoente - BITS_SUB + 1) * SUBDIVISOES + sub;
+    }
+
+    static long limiteSuperior(int balde) {
+        if (balde < SUBDIVISOES) {
+            return balde;
+        }
+        int expoente = balde / SUBDIVISOES + BITS_SUB - 1;
+        int sub = balde % SUBDIVISOES;
+        long inferior = (long) (SUBDIVISOES + sub) << (expoente - BITS_SUB);
+        return inferior + (1L << (expoente - BITS_SUB)) - 1;
+    }
+}
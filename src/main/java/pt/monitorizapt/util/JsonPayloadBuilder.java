@@ -1,12 +1,12 @@
 package pt.monitorizapt.util;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 
+import java.util.List;
+
+import pt.monitorizapt.domain.CanalEstacao;
 import pt.monitorizapt.domain.DadosSensor;
 import pt.monitorizapt.domain.Sensor;
 
@@ -17,8 +17,37 @@ import pt.monitorizapt.domain.Sensor;
 public class JsonPayloadBuilder {
     // We disable HTML escaping to ensure the JSON remains standard (e.g., using < or >)
     private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    public static final String CAMPO_HASH = "hash_validacao";
+    public static final String CAMPO_METRICAS = "metricas";
+    // The hash is always the last field, so a received payload ends with this suffix + 64 hex chars + "\"}"
+    private static final String PREFIXO_HASH = ",\"" + CAMPO_HASH + "\":\"";
+    private static final int SUFIXO_HASH = PREFIXO_HASH.length() + 64 + 2;
 
     public String buildPayload(Sensor sensor, DadosSensor dados) {
+        return finalizar(objetoLeitura(sensor, dados));
+    }
+
+    /**
+     * One message for a whole station tick: the main metric in the usual fields (so existing
+     * consumers keep working) and every extra metric under {@value #CAMPO_METRICAS}, keyed by
+     * type, all covered by a single hash.
+     */
+    public String buildPayloadEstacao(Sensor estacao, DadosSensor principal, List<CanalEstacao> canais) {
+        JsonObject objeto = objetoLeitura(estacao, principal);
+        JsonObject metricas = new JsonObject();
+        for (CanalEstacao canal : canais) {
+            DadosSensor dados = canal.ultimaLeitura();
+            JsonObject metrica = new JsonObject();
+            metrica.addProperty("valor", arredondar(dados.valor()));
+            metrica.addProperty("unidade", dados.unidade());
+            metrica.addProperty("alerta", dados.alerta());
+            metricas.add(canal.getTipo().tipoJson(), metrica);
+        }
+        objeto.add(CAMPO_METRICAS, metricas);
+        return finalizar(objeto);
+    }
+
+    private JsonObject objetoLeitura(Sensor sensor, DadosSensor dados) {
         JsonObject objeto = new JsonObject();
         
         // Add Metadata required by the project specification
@@ -33,25 +62,48 @@ public class JsonPayloadBuilder {
         objeto.addProperty("unidade", dados.unidade());
         objeto.addProperty("alerta", dados.alerta());
         objeto.addProperty("timestamp", dados.timestamp());
+        return objeto;
+    }
 
+    private String finalizar(JsonObject objeto) {
         // --- Integrity Check Logic ---
-        // 1. Convert the object to a String
-        String semHash = GSON.toJson(objeto);
-        
-        // 2. Canonicalize: Remove spaces to ensure the hash is consistent regardless of formatting
-        String semEspacos = semHash.replace(" ", "");
-        
-        // 3. Generate the hash and add it to the final object
-        objeto.addProperty("hash_validacao", HashUtil.sha256Hex(semEspacos));
+        // 1. Convert the object to a canonical String (see canonicalizar)
+        // 2. Generate the hash and add it to the final object
+        objeto.addProperty(CAMPO_HASH, HashUtil.sha256Hex(canonicalizar(objeto)));
         
         return GSON.toJson(objeto);
     }
 
     /**
-     * Rounds doubles to 2 decimal places using BigDecimal.
+     * Canonical text covered by the validation hash: the JSON without the hash field,
+     * with spaces removed so the hash is consistent regardless of formatting.
+     * Shared by the publisher and by the ingest side that verifies the hash.
+     */
+    public static String canonicalizar(JsonObject objetoSemHash) {
+        return GSON.toJson(objetoSemHash).replace(" ", "");
+    }
+
+    /**
+     * Canonical text of a received payload, i.e. what the publisher hashed.
+     * Payloads produced by this class end with the hash field, so it is simply cut off;
+     * anything else (reordered or reformatted JSON) goes through a full parse.
+     *
+     * @param objeto the parsed payload (only used in the slow path; the hash field is removed from it)
+     */
+    public static String canonicalizarRecebido(String payload, JsonObject objeto) {
+        int inicioHash = payload.length() - SUFIXO_HASH;
+        if (inicioHash > 0 && payload.startsWith(PREFIXO_HASH, inicioHash) && payload.endsWith("\"}")) {
+            return (payload.substring(0, inicioHash) + "}").replace(" ", "");
+        }
+        objeto.remove(CAMPO_HASH);
+        return canonicalizar(objeto);
+    }
+
+    /**
+     * Rounds doubles to 2 decimal places (HALF_UP, same result as the old BigDecimal code).
      * Essential for sensor data to avoid floating point artifacts (e.g., 23.999999994).
      */
     private double arredondar(double valor) {
-        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        return FormatadorDecimal.arredondar(valor);
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package pt.monitorizapt.util;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013).
+ *
+ * Reduces a time series to a fixed number of points while keeping its visual shape: the
+ * first and last points are kept, the rest is split into equal buckets and from each bucket
+ * the point forming the largest triangle with the previously chosen point and the average of
+ * the next bucket is kept. Peaks survive, unlike plain averaging or striding.
+ *
+ * O(n), and the caller owns every array, so charts can reuse them between frames.
+ * {@link #maiorTriangulo} is the single bucket step, for callers that keep the buckets
+ * themselves and only process the new ones.
+ */
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * @param limite maximum number of points wanted (typically the width in pixels)
+     * @return how many points were written to {@code xSaida}/{@code ySaida}
+     */
+    public static int reduzir(long[] x, double[] y, int n, int limite, long[] xSaida, double[] ySaida) {
+        if (n <= limite || limite < 3) {
+            int copiar = Math.min(n, Math.max(limite, 0));
+            System.arraycopy(x, 0, xSaida, 0, copiar);
+            System.arraycopy(y, 0, ySaida, 0, copiar);
+            return copiar;
+        }
+        double tamanhoBalde = (double) (n - 2) / (limite - 2);
+        int escolhido = 0;
+        int saida = 0;
+        xSaida[saida] = x[0];
+        ySaida[saida++] = y[0];
+
+        for (int balde = 0; balde < limite - 2; balde++) {
+            // Average of the next bucket (the last point for the final bucket)
+            int inicioSeguinte = (int) ((balde + 1) * tamanhoBalde) + 1;
+            int fimSeguinte = Math.min((int) ((balde + 2) * tamanhoBalde) + 1, n);
+            long ax = x[escolhido];
+            double mediaDx = 0.0;
+            double mediaY = 0.0;
+            for (int i = inicioSeguinte; i < fimSeguinte; i++) {
+                mediaDx += x[i] - ax;
+                mediaY += y[i];
+            }
+            int quantos = fimSeguinte - inicioSeguinte;
+
+            int melhor = maiorTriangulo(x, y, (int) (balde * tamanhoBalde) + 1, inicioSeguinte,
+                    ax, y[escolhido], mediaDx / quantos, mediaY / quantos);
+            xSaida[saida] = x[melhor];
+            ySaida[saida++] = y[melhor];
+            escolhido = melhor;
+        }
+
+        xSaida[saida] = x[n - 1];
+        ySaida[saida++] = y[n - 1];
+        return saida;
+    }
+
+    /**
+     * Picks the point of {@code [inicio, fim)} forming the largest triangle with the previous
+     * chosen point (ax, ay) and the average of the next bucket.
+     *
+     * @param mediaDx average time of the next bucket, relative to {@code ax} (keeps the
+     *                areas precise as doubles even with epoch-millisecond timestamps)
+     * @return index of the chosen point
+     */
+    public static int maiorTriangulo(long[] x, double[] y, int inicio, int fim,
+                                     long ax, double ay, double mediaDx, double mediaY) {
+        double maiorArea = -1.0;
+        int melhor = inicio;
+        for (int i = inicio; i < fim; i++) {
+            // Twice the triangle area; the factor does not change which one is largest
+            double area = Math.abs(mediaDx * (y[i] - ay) - (x[i] - ax) * (mediaY - ay));
+            if (area > maiorArea) {
+                maiorArea = area;
+                melhor = i;
+            }
+        }
+        return melhor;
+    }
+}
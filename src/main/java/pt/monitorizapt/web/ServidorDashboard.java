@@ -0,0 +1,264 @@
+package pt.monitorizapt.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import pt.monitorizapt.service.SensorSnapshot;
+
+/**
+ * Read-only web dashboard on the JDK {@link HttpServer}: {@code /} serves the page and
+ * {@code /eventos} streams the readings as Server-Sent Events.
+ *
+ * Readings are not forwarded one by one. Each snapshot only replaces the previous one of the
+ * same sensor in a pending map; once per tick the pending ones are serialized into a single
+ * SSE frame and that same byte array is queued for every viewer, so the cost per viewer is
+ * one write, never a serialization. With no viewer connected nothing is serialized at all: the
+ * full state sent to a new viewer is rebuilt when it connects, and only if something changed.
+ * Each viewer has a small bounded queue: a viewer too slow to keep up is disconnected (the
+ * browser reconnects by itself and starts again from the full state) instead of making the
+ * others or the sensors wait.
+ */
+public class ServidorDashboard {
+    private static final String RECURSO_PAGINA = "/web/index.html";
+    // Frames a viewer may lag behind before being dropped
+    private static final int FILA_CLIENTE = 32;
+    // SSE comment sent when nothing changes, so dead connections are noticed
+    private static final long KEEPALIVE_MS = 15_000L;
+    private static final byte[] KEEPALIVE = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIM = new byte[0];
+    private static final Gson GSON = new Gson();
+
+    private final HttpServer servidor;
+    private final long tickMillis;
+    private final byte[] pagina;
+    // One thread per open viewer (blocked on its queue), created on demand
+    private final ExecutorService ligacoes = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "web-dashboard-ligacao");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService tick = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "web-dashboard-tick");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Latest snapshot of each sensor since the last tick (written by the sensor threads)
+    private final Map<String, SensorSnapshot> pendentes = new ConcurrentHashMap<>();
+    private final List<Cliente> clientes = new CopyOnWriteArrayList<>();
+    // Guards the full state and the viewer list together, so a new viewer never misses a frame
+    private final Object fanOut = new Object();
+    // Last known reading of every sensor and its serialized frame, rebuilt only when a viewer
+    // connects after a change (both guarded by fanOut)
+    private final Map<String, SensorSnapshot> estado = new HashMap<>();
+    private byte[] estadoCompleto = frame(List.of());
+    private boolean estadoSujo;
+    private long ultimoEnvio = System.currentTimeMillis();
+
+    private final LongAdder framesEnviados = new LongAdder();
+    private final LongAdder clientesLentos = new LongAdder();
+
+    public ServidorDashboard(int porta, long tickMillis) throws IOException {
+        this.tickMillis = Math.max(50L, tickMillis);
+        this.pagina = carregarPagina();
+        this.servidor = HttpServer.create(new InetSocketAddress(porta), 0);
+        servidor.setExecutor(ligacoes);
+        servidor.createContext("/", this::servirPagina);
+        servidor.createContext("/eventos", this::servirEventos);
+    }
+
+    public void iniciar() {
+        servidor.start();
+        tick.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called on the sensor threads for every reading: just a map put, no I/O.
+     */
+    public void publicar(SensorSnapshot snapshot) {
+        pendentes.put(snapshot.id(), snapshot);
+    }
+
+    public void parar() {
+        tick.shutdownNow();
+        synchronized (fanOut) {
+            for (Cliente cliente : clientes) {
+                cliente.terminar();
+            }
+        }
+        servidor.stop(0);
+        ligacoes.shutdownNow();
+    }
+
+    public int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    public int getClientes() {
+        return clientes.size();
+    }
+
+    public long getFramesEnviados() {
+        return framesEnviados.sum();
+    }
+
+    public long getClientesLentos() {
+        return clientesLentos.sum();
+    }
+
+    private void tick() {
+        List<SensorSnapshot> alterados = new ArrayList<>();
+        synchronized (fanOut) {
+            boolean comClientes = !clientes.isEmpty();
+            for (String id : pendentes.keySet()) {
+                // remove() hands over the latest value atomically: a newer put is kept for the next tick
+                SensorSnapshot snapshot = pendentes.remove(id);
+                if (snapshot != null) {
+                    estado.put(id, snapshot);
+                    estadoSujo = true;
+                    if (comClientes) {
+                        alterados.add(snapshot);
+                    }
+                }
+            }
+            if (!comClientes) {
+                return; // nobody watching: a viewer that connects gets the full state anyway
+            }
+        }
+
+        long agora = System.currentTimeMillis();
+        byte[] mensagem;
+        if (!alterados.isEmpty()) {
+            mensagem = frame(alterados);
+        } else if (agora - ultimoEnvio >= KEEPALIVE_MS) {
+            mensagem = KEEPALIVE;
+        } else {
+            return;
+        }
+        ultimoEnvio = agora;
+
+        // A viewer that joined since the drain already has these readings in its full state:
+        // receiving them again is harmless
+        synchronized (fanOut) {
+            for (Cliente cliente : clientes) {
+                if (!cliente.fila.offer(mensagem)) {
+                    clientesLentos.increment();
+                    clientes.remove(cliente);
+                    cliente.terminar();
+                }
+            }
+        }
+        framesEnviados.increment();
+    }
+
+    private void servirEventos(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        Cliente cliente = new Cliente();
+        synchronized (fanOut) {
+            if (estadoSujo) {
+                estadoCompleto = frame(estado.values());
+                estadoSujo = false;
+            }
+            cliente.fila.offer(estadoCompleto);
+            clientes.add(cliente);
+        }
+        try (OutputStream saida = exchange.getResponseBody()) {
+            while (true) {
+                byte[] mensagem = cliente.fila.take();
+                if (mensagem == FIM) {
+                    break;
+                }
+                saida.write(mensagem);
+                saida.flush();
+            }
+        } catch (IOException e) {
+            // Viewer went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clientes.remove(cliente);
+            exchange.close();
+        }
+    }
+
+    private void servirPagina(HttpExchange exchange) throws IOException {
+        if (!"/".equals(exchange.getRequestURI().getPath())) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, pagina.length);
+        try (OutputStream saida = exchange.getResponseBody()) {
+            saida.write(pagina);
+        }
+    }
+
+    private static JsonObject paraJson(SensorSnapshot snapshot) {
+        JsonObject objeto = new JsonObject();
+        objeto.addProperty("id", snapshot.id());
+        objeto.addProperty("localizacao", snapshot.localizacao());
+        objeto.addProperty("tipo", snapshot.tipo().etiqueta());
+        objeto.addProperty("valor", snapshot.valor());
+        objeto.addProperty("unidade", snapshot.unidade());
+        objeto.addProperty("alerta", snapshot.alerta());
+        objeto.addProperty("timestamp", snapshot.timestamp());
+        return objeto;
+    }
+
+    private static byte[] frame(Collection<SensorSnapshot> snapshots) {
+        JsonArray leituras = new JsonArray();
+        for (SensorSnapshot snapshot : snapshots) {
+            leituras.add(paraJson(snapshot));
+        }
+        return ("data: " + GSON.toJson(leituras) + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] carregarPagina() {
+        try (InputStream entrada = ServidorDashboard.class.getResourceAsStream(RECURSO_PAGINA)) {
+            if (entrada == null) {
+                throw new IllegalStateException("Recurso em falta: " + RECURSO_PAGINA);
+            }
+            return entrada.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Cliente {
+        private final BlockingQueue<byte[]> fila = new ArrayBlockingQueue<>(FILA_CLIENTE);
+
+        void terminar() {
+            // Make room for the end marker even when the queue is full
+            fila.clear();
+            fila.offer(FIM);
+        }
+    }
+}
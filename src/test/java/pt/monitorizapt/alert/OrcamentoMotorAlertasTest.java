@@ -0,0 +1,76 @@
+package pt.monitorizapt.alert;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the evaluation budget of the alert engine: at least 100k evaluations per second
+ * on a single core, with every rule feature on (limits, hysteresis, rate, sustained samples).
+ * Runs with {@code mvn test}, so a change that slows the engine below the budget fails the build.
+ */
+class OrcamentoMotorAlertasTest {
+    private static final long OBJETIVO_POR_SEGUNDO = 100_000L;
+    private static final int SENSORES = 1024;
+    private static final int AVALIACOES = 10_000_000;
+
+    @Test
+    void avaliacoesDentroDoOrcamento() {
+        List<RegraAlerta> regras = List.of(
+                new RegraAlerta(SensorTipo.TEMPERATURA, null, 30.0, 5.0, 1.0, 2.0, 3),
+                new RegraAlerta(SensorTipo.HUMIDADE, null, 80.0, 20.0, 2.0, 5.0, 2),
+                new RegraAlerta(SensorTipo.QUALIDADE_AR, SensorLocalizacao.PORTO_MATOSINHOS, 50.0, Double.NaN, 5.0, Double.NaN, 1));
+        MotorAlertas motor = new MotorAlertas(SENSORES, regras);
+        LongAdder transicoes = new LongAdder();
+        motor.registarTransicaoListener(transicao -> transicoes.increment());
+
+        SensorTipo[] tipos = SensorTipo.values();
+        SensorLocalizacao[] localizacoes = SensorLocalizacao.values();
+        for (int i = 0; i < SENSORES; i++) {
+            motor.registar("BENCH-" + i, tipos[i % tipos.length], localizacoes[i % localizacoes.length]);
+        }
+
+        // Mean-reverting random walk around the upper limits, so transitions really happen
+        double[] valores = new double[SENSORES];
+        Arrays.fill(valores, 29.0);
+        SplittableRandom aleatorio = new SplittableRandom(42);
+        double[] passos = new double[4096];
+        for (int i = 0; i < passos.length; i++) {
+            passos[i] = aleatorio.nextDouble(-1.5, 1.5);
+        }
+
+        correr(motor, valores, passos, AVALIACOES / 5); // warm-up (JIT)
+        double melhor = 0.0;
+        for (int ronda = 0; ronda < 3; ronda++) {
+            long inicio = System.nanoTime();
+            correr(motor, valores, passos, AVALIACOES);
+            double porSegundo = AVALIACOES / ((System.nanoTime() - inicio) / 1e9);
+            melhor = Math.max(melhor, porSegundo);
+            System.out.printf("Ronda %d: %.0f avaliacoes/s%n", ronda + 1, porSegundo);
+        }
+        System.out.printf("Melhor: %.0f avaliacoes/s (objetivo %d), %d transicoes%n",
+                melhor, OBJETIVO_POR_SEGUNDO, transicoes.sum());
+        assertTrue(melhor >= OBJETIVO_POR_SEGUNDO, "Abaixo de " + OBJETIVO_POR_SEGUNDO + " avaliacoes/s");
+    }
+
+    private static void correr(MotorAlertas motor, double[] valores, double[] passos, int avaliacoes) {
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < avaliacoes; i++) {
+            int ordinal = i & (SENSORES - 1);
+            double valor = valores[ordinal];
+            valores[ordinal] = valor + passos[((i >>> 10) + ordinal * 7) & (passos.length - 1)] + 0.1 * (29.0 - valor);
+            if (ordinal == 0) {
+                timestamp += 1000L;
+            }
+            motor.avaliar(ordinal, valores[ordinal], timestamp);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package pt.monitorizapt.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import pt.monitorizapt.mqtt.FiltroTopico;
+
+/**
+ * Minimal MQTT 3.1.1 broker for testing the cluster on one machine without installing one.
+ *
+ * Usage: {@code mvn -q test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=pt.monitorizapt.cluster.BrokerLocal -Dexec.args="1883"} and then start the headless nodes against {@code tcp://127.0.0.1:1883} (see README).
+ *
+ * Only what the application uses is supported: CONNECT with a last will, SUBSCRIBE/UNSUBSCRIBE
+ * with wildcards, PUBLISH (QoS 0/1/2 accepted, always delivered at QoS 0), PINGREQ and
+ * DISCONNECT. No retained messages, no sessions, no authentication, and {@code $share/...}
+ * filters are treated as plain subscriptions. A client that drops without DISCONNECT (or
+ * misses its keep-alive) gets its will published, which is exactly what the cluster needs to
+ * notice a killed node.
+ */
+public final class BrokerLocal {
+    private static final int CONNECT = 1;
+    private static final int PUBLISH = 3;
+    private static final int PUBREL = 6;
+    private static final int SUBSCRIBE = 8;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int PINGREQ = 12;
+    private static final int DISCONNECT = 14;
+
+    private final List<Ligacao> ligacoes = new CopyOnWriteArrayList<>();
+    private final Map<String, Ligacao> porClientId = new ConcurrentHashMap<>();
+
+    private BrokerLocal() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int porta = args.length > 0 ? Integer.parseInt(args[0]) : 1883;
+        new BrokerLocal().servir(porta);
+    }
+
+    private void servir(int porta) throws IOException {
+        try (ServerSocket servidor = new ServerSocket(porta, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Broker local em tcp://127.0.0.1:" + porta);
+            while (true) {
+                Socket socket = servidor.accept();
+                socket.setTcpNoDelay(true);
+                Ligacao ligacao = new Ligacao(socket);
+                Thread thread = new Thread(ligacao::correr, "broker-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    private void distribuir(String topico, byte[] payload) {
+        for (Ligacao ligacao : ligacoes) {
+            if (ligacao.subscrito(topico)) {
+                ligacao.entregar(topico, payload);
+            }
+        }
+    }
+
+    private final class Ligacao {
+        private final Socket socket;
+        private final List<String> filtros = new CopyOnWriteArrayList<>();
+        private OutputStream saida;
+        private String clientId;
+        // Cleared by the connection that takes over this client id, read by this one's thread
+        private volatile String willTopico;
+        private volatile byte[] willPayload;
+        private volatile boolean fechada;
+
+        Ligacao(Socket socket) {
+            this.socket = socket;
+        }
+
+        void correr() {
+            boolean limpo = false;
+            try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                saida = new BufferedOutputStream(socket.getOutputStream());
+                while (true) {
+                    int cabecalho = entrada.read();
+                    if (cabecalho < 0) {
+                        break;
+                    }
+                    byte[] corpo = new byte[lerComprimento(entrada)];
+                    entrada.readFully(corpo);
+                    int tipo = cabecalho >>> 4;
+                    if (tipo == DISCONNECT) {
+                        limpo = true;
+                        break;
+                    }
+                    tratar(tipo, cabecalho & 0x0F, corpo);
+                }
+            } catch (SocketTimeoutException | EOFException e) {
+                // Keep-alive expired or connection cut: the will goes out below
+            } catch (IOException e) {
+                if (!fechada) {
+                    System.err.println("Ligacao " + clientId + " falhou: " + e.getMessage());
+                }
+            } finally {
+                fechar();
+                String will = willTopico;
+                if (!limpo && will != null) {
+                    distribuir(will, willPayload);
+                }
+            }
+        }
+
+        private void tratar(int tipo, int flags, byte[] corpo) throws IOException {
+            switch (tipo) {
+                case CONNECT -> ligar(corpo);
+                case PUBLISH -> {
+                    int qos = (flags >>> 1) & 0x03;
+                    int comprimentoTopico = ((corpo[0] & 0xFF) << 8) | (corpo[1] & 0xFF);
+                    String topico = new String(corpo, 2, comprimentoTopico, StandardCharsets.UTF_8);
+                    int inicio = 2 + comprimentoTopico;
+                    if (qos > 0) {
+                        // PUBACK for QoS 1, PUBREC for QoS 2 (the PUBREL is answered below)
+                        enviar(qos == 1 ? 0x40 : 0x50, corpo[inicio], corpo[inicio + 1]);
+                        inicio += 2;
+                    }
+                    byte[] payload = new byte[corpo.length - inicio];
+                    System.arraycopy(corpo, inicio, payload, 0, payload.length);
+                    distribuir(topico, payload);
+                }
+                case PUBREL -> enviar(0x70, corpo[0], corpo[1]);
+                case SUBSCRIBE -> {
+                    int pos = 2;
+                    int concedidos = 0;
+                    byte[] resposta = new byte[corpo.length];
+                    while (pos < corpo.length) {
+                        int comprimento = ((corpo[pos] & 0xFF) << 8) | (corpo[pos + 1] & 0xFF);
+                        filtros.add(FiltroTopico.semPartilha(new String(corpo, pos + 2, comprimento, StandardCharsets.UTF_8)));
+                        pos += 3 + comprimento; // + requested QoS byte
+                        resposta[concedidos++] = 0x00; // granted QoS 0
+                    }
+                    byte[] suback = new byte[2 + concedidos];
+                    suback[0] = corpo[0];
+                    suback[1] = corpo[1];
+                    System.arraycopy(resposta, 0, suback, 2, concedidos);
+                    enviar(0x90, suback);
+                }
+                case UNSUBSCRIBE -> {
+                    int pos = 2;
+                    while (pos < corpo.length) {
+                        int comprimento = ((corpo[pos] & 0xFF) << 8) | (corpo[pos + 1] & 0xFF);
+                        filtros.remove(FiltroTopico.semPartilha(new String(corpo, pos + 2, comprimento, StandardCharsets.UTF_8)));
+                        pos += 2 + comprimento;
+                    }
+                    enviar(0xB0, corpo[0], corpo[1]);
+                }
+                case PINGREQ -> enviar(0xD0);
+                default -> {
+                    // PUBACK/PUBREC/PUBCOMP from clients: nothing to do, we only deliver at QoS 0
+                }
+            }
+        }
+
+        private void ligar(byte[] corpo) throws IOException {
+            int pos = 2 + (((corpo[0] & 0xFF) << 8) | (corpo[1] & 0xFF)) + 1; // protocol name + level
+            int flags = corpo[pos++] & 0xFF;
+            int keepAlive = ((corpo[pos] & 0xFF) << 8) | (corpo[pos + 1] & 0xFF);
+            pos += 2;
+            int comprimento = ((corpo[pos] & 0xFF) << 8) | (corpo[pos + 1] & 0xFF);
+            clientId = new String(corpo, pos + 2, comprimento, StandardCharsets.UTF_8);
+            pos += 2 + comprimento;
+            if ((flags & 0x04) != 0) {
+                comprimento = ((corpo[pos] & 0xFF) << 8) | (corpo[pos + 1] & 0xFF);
+                willTopico = new String(corpo, pos + 2, comprimento, StandardCharsets.UTF_8);
+                pos += 2 + comprimento;
+                comprimento = ((corpo[pos] & 0xFF) << 8) | (corpo[pos + 1] & 0xFF);
+                willPayload = new byte[comprimento];
+                System.arraycopy(corpo, pos + 2, willPayload, 0, comprimento);
+            }
+            if (keepAlive > 0) {
+                socket.setSoTimeout(keepAlive * 1500); // 1.5 x keep-alive, as the spec says
+            }
+            // A new connection with the same client id takes over (the old one gets no will)
+            Ligacao anterior = porClientId.put(clientId, this);
+            if (anterior != null) {
+                anterior.willTopico = null;
+                anterior.fechar();
+            }
+            ligacoes.add(this);
+            enviar(0x20, 0x00, 0x00);
+        }
+
+        boolean subscrito(String topico) {
+            for (String filtro : filtros) {
+                if (FiltroTopico.corresponde(filtro, topico)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void entregar(String topico, byte[] payload) {
+            byte[] nome = topico.getBytes(StandardCharsets.UTF_8);
+            byte[] corpo = new byte[2 + nome.length + payload.length];
+            corpo[0] = (byte) (nome.length >>> 8);
+            corpo[1] = (byte) nome.length;
+            System.arraycopy(nome, 0, corpo, 2, nome.length);
+            System.arraycopy(payload, 0, corpo, 2 + nome.length, payload.length);
+            try {
+                enviar(0x30, corpo);
+            } catch (IOException e) {
+                fechar();
+            }
+        }
+
+        private void enviar(int cabecalho, int... corpo) throws IOException {
+            byte[] bytes = new byte[corpo.length];
+            for (int i = 0; i < corpo.length; i++) {
+                bytes[i] = (byte) corpo[i];
+            }
+            enviar(cabecalho, bytes);
+        }
+
+        private synchronized void enviar(int cabecalho, byte[] corpo) throws IOException {
+            if (fechada) {
+                return;
+            }
+            saida.write(cabecalho);
+            int restante = corpo.length;
+            do {
+                int digito = restante % 128;
+                restante /= 128;
+                saida.write(restante > 0 ? digito | 0x80 : digito);
+            } while (restante > 0);
+            saida.write(corpo);
+            saida.flush();
+        }
+
+        private void fechar() {
+            fechada = true;
+            ligacoes.remove(this);
+            if (clientId != null) {
+                porClientId.remove(clientId, this);
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+
+        private static int lerComprimento(DataInputStream entrada) throws IOException {
+            int valor = 0;
+            int multiplicador = 1;
+            int digito;
+            do {
+                digito = entrada.readUnsignedByte();
+                valor += (digito & 0x7F) * multiplicador;
+                multiplicador *= 128;
+            } while ((digito & 0x80) != 0);
+            return valor;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package pt.monitorizapt.domain;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import pt.monitorizapt.agregacao.AgregadorRegional;
+import pt.monitorizapt.alert.MotorAlertas;
+import pt.monitorizapt.alert.RegraAlerta;
+import pt.monitorizapt.log.Nivel;
+import pt.monitorizapt.log.RegistoAssincrono;
+import pt.monitorizapt.mqtt.MqttClientManager;
+import pt.monitorizapt.sensors.SensorHumidade;
+import pt.monitorizapt.sensors.SensorQualidadeAr;
+import pt.monitorizapt.sensors.SensorTemperatura;
+import pt.monitorizapt.service.CsvLogService;
+import pt.monitorizapt.service.ListenerLeituras;
+import pt.monitorizapt.service.RegistoSql;
+import pt.monitorizapt.service.SensorSnapshot;
+import pt.monitorizapt.service.TabelaUltimosValores;
+import pt.monitorizapt.util.Configuracao;
+import pt.monitorizapt.util.JsonPayloadBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation budget of the publish path: drives sensors through the body of
+ * {@link SensorAbstrato#run} (generate, build payload, publish, notify listeners) against a
+ * stub MQTT client and measures the bytes allocated per reading with the thread allocation
+ * counter of {@link com.sun.management.ThreadMXBean}. The listener is the one
+ * {@link pt.monitorizapt.service.SensorController} registers ({@link ListenerLeituras}), so the
+ * notify stage includes the snapshot, an observer, the log call and the CSV row.
+ *
+ * Each stage is measured on its own and the whole cycle once more, and compared with the
+ * budgets {@code alocacao.<etapa>.maxBytes} from config.properties (defaults below), so a
+ * change that starts allocating on the hot path fails {@code mvn test}.
+ */
+class OrcamentoAlocacaoTest {
+    private static final int LEITURAS = 200_000;
+    private static final int AQUECIMENTO = 100_000;
+    // Bytes per reading; measured on JDK 17 with some headroom for other JVMs
+    private static final Map<String, Long> ORCAMENTOS = new LinkedHashMap<>();
+
+    static {
+        ORCAMENTOS.put("geracao", 64L);
+        ORCAMENTOS.put("payload", 6_144L);
+        ORCAMENTOS.put("publicacao", 512L);
+        ORCAMENTOS.put("notificacao", 1_536L);
+        ORCAMENTOS.put("ciclo", 8_192L);
+    }
+
+    @Test
+    void publicacaoDentroDoOrcamento() throws IOException {
+        Configuracao config = Configuracao.carregar(Path.of("config.properties"));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        MqttNulo mqtt = new MqttNulo();
+        SensorLocalizacao[] localizacoes = SensorLocalizacao.values();
+        MotorAlertas motor = new MotorAlertas(localizacoes.length, RegraAlerta.carregar(config));
+        JsonPayloadBuilder builder = new JsonPayloadBuilder();
+        SensorAbstrato[] sensores = new SensorAbstrato[3];
+        sensores[0] = new SensorTemperatura(SensorLocalizacao.LISBOA_CAMPUS_IPLUSO, builder, mqtt, motor, config);
+        sensores[1] = new SensorHumidade(SensorLocalizacao.LISBOA_BAIXA, builder, mqtt, motor, config);
+        sensores[2] = new SensorQualidadeAr(SensorLocalizacao.PORTO_MATOSINHOS, builder, mqtt, motor, config);
+
+        // The listener SensorController registers, with its real collaborators. Only the I/O is
+        // kept off the machine: CSV rows go to a throwaway directory, the SQL sink to an in-memory
+        // database (its inserts run on the writer thread, outside the measurement) and the web
+        // dashboard is replaced by an observer that keeps the latest snapshot per sensor, as it does
+        TabelaUltimosValores tabela = new TabelaUltimosValores(localizacoes.length);
+        AgregadorRegional agregador = new AgregadorRegional(localizacoes.length);
+        RegistoAssincrono registo = new RegistoAssincrono(Nivel.de(config.texto("log.nivel", "INFO"), Nivel.INFO),
+                (int) config.inteiro("log.capacidade", 8192L));
+        Path diretoriaCsv = Files.createTempDirectory("monitorizapt-alocacao");
+        CsvLogService csv = new CsvLogService(config, diretoriaCsv.toString());
+        Properties sqlMemoria = new Properties();
+        sqlMemoria.setProperty("sql.url", "jdbc:h2:mem:alocacao");
+        RegistoSql sql = new RegistoSql(new Configuracao(sqlMemoria, null));
+        Map<String, SensorSnapshot> ultimos = new ConcurrentHashMap<>();
+        List<Consumer<SensorSnapshot>> observadores = new CopyOnWriteArrayList<>();
+        observadores.add(snapshot -> ultimos.put(snapshot.id(), snapshot));
+        ListenerLeituras listener = new ListenerLeituras(tabela, agregador, new LongAdder(), new LongAdder(),
+                observadores, registo, csv::registarLeitura, sql::registarLeitura);
+        for (SensorAbstrato sensor : sensores) {
+            tabela.registar(sensor.getOrdinal(), sensor.getIDUnico(), sensor.getLocalizacao().descricao(), sensor.getTipo());
+            sensor.registrarListener(listener);
+        }
+
+        Map<String, Double> medidas = new LinkedHashMap<>();
+        for (int ronda = 0; ronda < 2; ronda++) {
+            // First round is the warm-up (JIT, escape analysis of the JFR events)
+            int n = ronda == 0 ? AQUECIMENTO : LEITURAS;
+            long id = Thread.currentThread().getId();
+
+            DadosSensor[] dados = new DadosSensor[n];
+            String[] payloads = new String[n];
+            long antes = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < n; i++) {
+                dados[i] = sensores[i % 3].lerDados();
+            }
+            long depoisGeracao = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < n; i++) {
+                payloads[i] = builder.buildPayload(sensores[i % 3], dados[i]);
+            }
+            long depoisPayload = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < n; i++) {
+                sensores[i % 3].publicarMQTT(payloads[i]);
+            }
+            long depoisPublicacao = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < n; i++) {
+                sensores[i % 3].notificar(dados[i], payloads[i]);
+            }
+            long depoisNotificacao = threads.getThreadAllocatedBytes(id);
+            dados = null;
+            payloads = null;
+
+            long antesCiclo = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < n; i++) {
+                sensores[i % 3].publicarLeitura();
+            }
+            long depoisCiclo = threads.getThreadAllocatedBytes(id);
+
+            medidas.put("geracao", (depoisGeracao - antes) / (double) n);
+            medidas.put("payload", (depoisPayload - depoisGeracao) / (double) n);
+            medidas.put("publicacao", (depoisPublicacao - depoisPayload) / (double) n);
+            medidas.put("notificacao", (depoisNotificacao - depoisPublicacao) / (double) n);
+            medidas.put("ciclo", (depoisCiclo - antesCiclo) / (double) n);
+        }
+
+        StringBuilder excedidos = new StringBuilder();
+        System.out.printf("%-12s %14s %14s%n", "etapa", "bytes/leitura", "orcamento");
+        for (Map.Entry<String, Double> medida : medidas.entrySet()) {
+            long orcamento = config.inteiro("alocacao." + medida.getKey() + ".maxBytes", ORCAMENTOS.get(medida.getKey()));
+            boolean excede = medida.getValue() > orcamento;
+            if (excede) {
+                excedidos.append(' ').append(medida.getKey());
+            }
+            System.out.printf("%-12s %14.1f %14d%s%n", medida.getKey(), medida.getValue(), orcamento, excede ? "  EXCEDIDO" : "");
+        }
+        System.out.printf("%d leituras publicadas no cliente MQTT simulado (%d bytes)%n", mqtt.publicadas, mqtt.bytes);
+        csv.fechar();
+        sql.fechar();
+        registo.parar();
+        apagar(diretoriaCsv);
+        assertTrue(excedidos.length() == 0, "Orcamento de alocacao excedido:" + excedidos);
+    }
+
+    private static void apagar(Path diretoria) throws IOException {
+        try (Stream<Path> caminhos = Files.walk(diretoria)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        }
+    }
+
+    /**
+     * MQTT client that never connects: publish keeps the encoding step of the real client
+     * (the UTF-8 bytes handed to the transport) and only skips the network write.
+     */
+    private static final class MqttNulo extends MqttClientManager {
+        private long publicadas;
+        private long bytes;
+
+        MqttNulo() {
+            super("tcp://127.0.0.1:1", Configuracao.vazia());
+        }
+
+        @Override
+        public void publish(String topic, String payload) {
+            byte[] codificado = payload.getBytes(StandardCharsets.UTF_8);
+            publicadas++;
+            bytes += codificado.length;
+        }
+
+        @Override
+        public void publicarAlerta(String topic, String payload) {
+            publish(topic, payload);
+        }
+    }
+}
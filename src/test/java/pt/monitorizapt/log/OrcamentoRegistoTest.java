@@ -0,0 +1,75 @@
+package pt.monitorizapt.log;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the cost of the logger on the calling thread: a per-reading DEBUG call with the
+ * level off must stay within a few nanoseconds, and with the level on the producers must not
+ * wait for the sink.
+ *
+ * Runs with {@code mvn test} and fails when the disabled call costs more than the budget.
+ */
+class OrcamentoRegistoTest {
+    private static final double OBJETIVO_DESLIGADO_NS = 5.0;
+    private static final int CHAMADAS = 50_000_000;
+    private static final int PRODUTORES = 4;
+    private static final int CHAMADAS_LIGADO = 1_000_000;
+
+    // Keeps the JIT from removing the loop
+    private static volatile double afundar;
+
+    @Test
+    void chamadaDesligadaDentroDoOrcamento() throws InterruptedException {
+        RegistoAssincrono desligado = new RegistoAssincrono(Nivel.INFO, 8192);
+        correr(desligado, CHAMADAS / 5); // warm-up (JIT)
+        double melhor = Double.MAX_VALUE;
+        for (int ronda = 0; ronda < 3; ronda++) {
+            long inicio = System.nanoTime();
+            correr(desligado, CHAMADAS);
+            double ns = (System.nanoTime() - inicio) / (double) CHAMADAS;
+            melhor = Math.min(melhor, ns);
+            System.out.printf("Ronda %d: %.2f ns por chamada DEBUG desligada%n", ronda + 1, ns);
+        }
+        desligado.parar();
+
+        // Level on: producers only claim a slot, a sink that counts lines stands in for the UI
+        RegistoAssincrono ligado = new RegistoAssincrono(Nivel.DEBUG, 1 << 16);
+        LongAdder escritas = new LongAdder();
+        ligado.adicionarDestino(new DestinoLog() {
+            @Override
+            public void escrever(List<String> linhas) {
+                escritas.add(linhas.size());
+            }
+        });
+        Thread[] produtores = new Thread[PRODUTORES];
+        long inicio = System.nanoTime();
+        for (int p = 0; p < PRODUTORES; p++) {
+            produtores[p] = new Thread(() -> correr(ligado, CHAMADAS_LIGADO), "produtor-" + p);
+            produtores[p].start();
+        }
+        for (Thread produtor : produtores) {
+            produtor.join();
+        }
+        double nsLigado = (System.nanoTime() - inicio) / (double) CHAMADAS_LIGADO;
+        ligado.parar();
+        System.out.printf("DEBUG ligado, %d produtores: %.0f ns por chamada, %d escritas, %d descartadas%n",
+                PRODUTORES, nsLigado, escritas.sum(), ligado.getDescartados());
+
+        System.out.printf("Melhor (desligado): %.2f ns (objetivo %.1f ns)%n", melhor, OBJETIVO_DESLIGADO_NS);
+        assertTrue(melhor <= OBJETIVO_DESLIGADO_NS, "Chamada DEBUG desligada acima de " + OBJETIVO_DESLIGADO_NS + " ns");
+    }
+
+    private static void correr(RegistoAssincrono registo, int chamadas) {
+        double valor = 20.0;
+        for (int i = 0; i < chamadas; i++) {
+            valor += 0.01;
+            registo.debug("Sensor {} publicou {}{}", "PT-SENSOR-LISBOA_BAIXA", valor, "%");
+        }
+        afundar = valor;
+    }
+}
@@ -0,0 +1,84 @@
+package pt.monitorizapt.mqtt;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.util.EnvelopeLote;
+
+/**
+ * Messages per second with and without the regional batching gateway, for a simulated fleet.
+ *
+ * Usage:
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pt.monitorizapt.mqtt.BenchmarkLotes
+ * -Dexec.args="<sensores> <leiturasPorSegundo> <lingerMs> <segundos>"} (defaults 10000 1 200 5)
+ *
+ * The sensors are spread over the real locations and publish at the given rate each, paced
+ * in 1 ms steps, into a gateway whose publisher only counts. At the end every envelope that
+ * went out is opened again with {@link EnvelopeLote#ler} to time the consumer side.
+ */
+public final class BenchmarkLotes {
+    private static final String PAYLOAD_EXEMPLO = "{\"campus\":\"Lisboa - Campus IPLuso\",\"sensor\":\"PT-SENSOR-LISBOA_CAMPUS_IPLUSO\","
+            + "\"ID Unico\":\"PT-SENSOR-LISBOA_CAMPUS_IPLUSO\",\"Owner\":\"Rodrigo_Martins_a22508678\",\"tipo\":\"temperatura\","
+            + "\"valor\":21.37,\"unidade\":\"Celsius\",\"alerta\":false,\"timestamp\":1700000000000,"
+            + "\"hash_validacao\":\"22e2b449be89bfb98e1e8a882ffcdf16ee46bb183e87aec20b461b2d6f6ce511\"}";
+
+    private BenchmarkLotes() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sensores = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        double taxa = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        long lingerMs = args.length > 2 ? Long.parseLong(args[2]) : 200L;
+        int segundos = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        LongAdder bytes = new LongAdder();
+        // Kept for the consumer-side timing (the last few hundred are enough)
+        String[] amostra = new String[512];
+        LongAdder enviados = new LongAdder();
+        GatewayLotes gateway = new GatewayLotes((topico, envelope) -> {
+            bytes.add(envelope.length());
+            amostra[(int) (enviados.sum() % amostra.length)] = envelope;
+            enviados.increment();
+        }, 100, 32_768, lingerMs);
+
+        SensorLocalizacao[] localizacoes = SensorLocalizacao.values();
+        double porPasso = sensores * taxa / 1000.0;
+        double acumulado = 0.0;
+        long leituras = 0;
+        long inicio = System.nanoTime();
+        for (long passo = 0; passo < segundos * 1000L; passo++) {
+            acumulado += porPasso;
+            for (; acumulado >= 1.0; acumulado -= 1.0) {
+                gateway.adicionar(localizacoes[(int) (leituras++ % localizacoes.length)], PAYLOAD_EXEMPLO);
+            }
+            long alvo = inicio + TimeUnit.MILLISECONDS.toNanos(passo + 1);
+            while (System.nanoTime() < alvo) {
+                Thread.onSpinWait();
+            }
+        }
+        gateway.fechar();
+        double duracao = (System.nanoTime() - inicio) / 1e9;
+
+        long abertas = 0;
+        long inicioLeitura = System.nanoTime();
+        for (int volta = 0; volta < 20; volta++) {
+            for (String envelope : amostra) {
+                if (envelope != null && EnvelopeLote.ler(envelope).integro()) {
+                    abertas++;
+                }
+            }
+        }
+        double leituraUs = (System.nanoTime() - inicioLeitura) / 1000.0 / Math.max(1, abertas);
+
+        System.out.printf("%d sensores a %.1f leituras/s, linger %d ms: %d leituras em %d envelopes%n",
+                sensores, taxa, lingerMs, gateway.leituras(), gateway.envelopes());
+        System.out.printf("Mensagens/s: %.0f sem lotes, %.0f com lotes (%.0fx menos), %.1f leituras por envelope%n",
+                leituras / duracao, gateway.envelopes() / duracao,
+                (double) leituras / Math.max(1, gateway.envelopes()), (double) gateway.leituras() / Math.max(1, gateway.envelopes()));
+        System.out.printf("Bytes/s: %.0f sem lotes, %.0f com lotes (sem cabeçalhos MQTT)%n",
+                leituras * PAYLOAD_EXEMPLO.length() / duracao, bytes.sum() / duracao);
+        System.out.printf("Espera acrescentada: p99 %.1f ms, máximo %.1f ms; abrir um envelope: %.1f µs%n",
+                gateway.espera().percentilMicros(0.99) / 1000.0, gateway.espera().maximoMicros() / 1000.0, leituraUs);
+    }
+}
@@ -0,0 +1,175 @@
+package pt.monitorizapt.mqtt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+
+/**
+ * Compares the v3 and v5 transports on a local broker (e.g. mosquitto).
+ *
+ * Usage:
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pt.monitorizapt.mqtt.BenchmarkTransporte
+ * -Dexec.args="tcp://127.0.0.1:1883 100000"}
+ *
+ * For each version one client publishes N readings (QoS 0, round-robin over the real data
+ * topics) and another receives them. The publisher talks to the broker through a small TCP
+ * proxy that counts the bytes it sends, so the bytes per PUBLISH are measured on the wire
+ * (and show whether topic aliases were really negotiated with the broker).
+ *
+ * With a {@code local://<nome>} URL the in-process loopback transport is measured instead
+ * (no broker needed, nothing on the wire).
+ */
+public final class BenchmarkTransporte {
+    private static final String PAYLOAD_EXEMPLO = "{\"campus\":\"Lisboa - Campus IPLuso\",\"sensor\":\"PT-SENSOR-LISBOA_CAMPUS_IPLUSO\","
+            + "\"ID Unico\":\"PT-SENSOR-LISBOA_CAMPUS_IPLUSO\",\"Owner\":\"Rodrigo_Martins_a22508678\",\"tipo\":\"temperatura\","
+            + "\"valor\":21.37,\"unidade\":\"Celsius\",\"alerta\":false,\"timestamp\":1700000000000,"
+            + "\"hash_validacao\":\"22e2b449be89bfb98e1e8a882ffcdf16ee46bb183e87aec20b461b2d6f6ce511\"}";
+
+    private BenchmarkTransporte() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String broker = args.length > 0 ? args[0] : "tcp://127.0.0.1:1883";
+        int mensagens = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        if (BarramentoLocal.aceita(broker)) {
+            BarramentoLocal barramento = BarramentoLocal.de(broker);
+            medir(new TransporteLoopback(barramento), new TransporteLoopback(barramento), null, mensagens);
+            return;
+        }
+
+        try (ProxyContador proxy = new ProxyContador(URI.create(broker))) {
+            medir(new TransportePahoV3(proxy.url()), new TransportePahoV3(broker), proxy, mensagens);
+        }
+        try (ProxyContador proxy = new ProxyContador(URI.create(broker))) {
+            medir(new TransportePahoV5(proxy.url(), 16, 60L), new TransportePahoV5(broker, 16, 60L), proxy, mensagens);
+        }
+    }
+
+    private static void medir(TransporteMqtt emissor, TransporteMqtt recetor, ProxyContador proxy, int mensagens) throws Exception {
+        String prefixo = "bench-" + UUID.randomUUID().toString().substring(0, 8) + "/";
+        SensorLocalizacao[] localizacoes = SensorLocalizacao.values();
+        String[] topicos = new String[localizacoes.length];
+        for (int i = 0; i < topicos.length; i++) {
+            topicos[i] = prefixo + localizacoes[i].topicoDados();
+        }
+        // The first 8 bytes of each payload carry the send time (nanoTime) for the latency
+        byte[] base = PAYLOAD_EXEMPLO.getBytes(StandardCharsets.UTF_8);
+
+        CountDownLatch recebidas = new CountDownLatch(mensagens);
+        AtomicLong latenciaTotal = new AtomicLong();
+        TransporteMqtt.Eventos semEventos = () -> { };
+        recetor.ligar("bench-rx-" + UUID.randomUUID(), null, null, semEventos);
+        recetor.subscrever(prefixo + "#", (topico, payload) -> {
+            latenciaTotal.addAndGet(System.nanoTime() - lerLong(payload));
+            recebidas.countDown();
+        });
+        emissor.ligar("bench-tx-" + UUID.randomUUID(), null, null, semEventos);
+        String aliases = emissor instanceof TransportePahoV5 v5
+                ? ", aliases aceites pelo broker: " + v5.getAliasServidor() : "";
+
+        long bytesAntes = proxy == null ? 0L : proxy.bytesEnviados();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < mensagens; i++) {
+            byte[] payload = base.clone();
+            escreverLong(payload, System.nanoTime());
+            emissor.publicar(topicos[i % topicos.length], payload, 0);
+        }
+        boolean completo = recebidas.await(60, TimeUnit.SECONDS);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long chegaram = mensagens - recebidas.getCount();
+        String rede = proxy == null ? "sem rede"
+                : String.format("%.1f bytes/PUBLISH medidos", (proxy.bytesEnviados() - bytesAntes) / (double) mensagens);
+
+        System.out.printf("%s: %d/%d mensagens em %.2f s (%.0f msg/s), latencia media %.4f ms, "
+                        + "%s (payload %d, topico %d)%s%s%n",
+                emissor.descricao(), chegaram, mensagens, segundos, chegaram / segundos,
+                chegaram == 0 ? 0.0 : latenciaTotal.get() / 1e6 / chegaram,
+                rede, base.length, topicos[0].length(), aliases,
+                completo ? "" : " (incompleto: QoS 0 pode perder mensagens sob carga)");
+
+        emissor.fechar();
+        recetor.fechar();
+    }
+
+    private static void escreverLong(byte[] destino, long valor) {
+        for (int i = 7; i >= 0; i--) {
+            destino[i] = (byte) valor;
+            valor >>>= 8;
+        }
+    }
+
+    private static long lerLong(byte[] origem) {
+        long valor = 0;
+        for (int i = 0; i < 8; i++) {
+            valor = (valor << 8) | (origem[i] & 0xFF);
+        }
+        return valor;
+    }
+
+    /**
+     * Single-connection TCP relay in front of the broker, counting client -> broker bytes.
+     */
+    private static final class ProxyContador implements AutoCloseable {
+        private final ServerSocket servidor;
+        private final AtomicLong enviados = new AtomicLong();
+
+        ProxyContador(URI broker) throws IOException {
+            servidor = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            Thread aceitar = new Thread(() -> {
+                try (Socket cliente = servidor.accept();
+                     Socket destino = new Socket(broker.getHost(), broker.getPort() < 0 ? 1883 : broker.getPort())) {
+                    Thread volta = new Thread(() -> copiar(destino, cliente, null), "bench-proxy-volta");
+                    volta.setDaemon(true);
+                    volta.start();
+                    copiar(cliente, destino, enviados);
+                } catch (IOException ignored) {
+                    // Closed at the end of the run
+                }
+            }, "bench-proxy");
+            aceitar.setDaemon(true);
+            aceitar.start();
+        }
+
+        String url() {
+            return "tcp://127.0.0.1:" + servidor.getLocalPort();
+        }
+
+        long bytesEnviados() {
+            return enviados.get();
+        }
+
+        private static void copiar(Socket origem, Socket destino, AtomicLong contador) {
+            byte[] buffer = new byte[64 * 1024];
+            try {
+                InputStream entrada = origem.getInputStream();
+                OutputStream saida = destino.getOutputStream();
+                int lidos;
+                while ((lidos = entrada.read(buffer)) >= 0) {
+                    saida.write(buffer, 0, lidos);
+                    if (contador != null) {
+                        contador.addAndGet(lidos);
+                    }
+                }
+            } catch (IOException ignored) {
+                // Connection closed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            servidor.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package pt.monitorizapt.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import pt.monitorizapt.domain.ComandoSensor;
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.util.Configuracao;
+
+/**
+ * Cost of a command on the MQTT delivery thread: the streaming {@link ComandoSensor#ler}
+ * against the Gson tree parse it replaced, and the admission check that a flood hits instead
+ * of either (once the buckets are empty, almost every message is refused there).
+ *
+ * Usage:
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pt.monitorizapt.service.BenchmarkComandos}
+ */
+public final class BenchmarkComandos {
+    private static final int RONDAS = 2_000_000;
+    private static final Gson GSON = new Gson();
+
+    private BenchmarkComandos() {
+    }
+
+    public static void main(String[] args) {
+        String[] comandos = {
+                "{\"acao\":\"ATIVAR\",\"intervalo\":5000}",
+                "{\"acao\":\"desativar\"}",
+                "{ \"intervalo\": \"2000\", \"acao\": \"ADAPTATIVO\", \"origem\": \"painel\" }",
+        };
+        long soma = 0;
+        for (int volta = 0; volta < 2; volta++) {
+            long inicio = System.nanoTime();
+            for (int i = 0; i < RONDAS; i++) {
+                soma += ComandoSensor.ler(comandos[i % comandos.length]).intervalo();
+            }
+            double streaming = (System.nanoTime() - inicio) / (double) RONDAS;
+
+            inicio = System.nanoTime();
+            for (int i = 0; i < RONDAS; i++) {
+                JsonObject objeto = GSON.fromJson(comandos[i % comandos.length], JsonObject.class);
+                soma += objeto.has("intervalo") ? objeto.get("intervalo").getAsLong() : 0L;
+                soma += objeto.get("acao").getAsString().length();
+            }
+            double gson = (System.nanoTime() - inicio) / (double) RONDAS;
+
+            // Flood: the same and different payloads on every topic, far above the limits
+            AdmissaoComandos admissao = new AdmissaoComandos(SensorLocalizacao.values().length, Configuracao.vazia());
+            inicio = System.nanoTime();
+            for (int i = 0; i < RONDAS; i++) {
+                if (admissao.admitir(i % SensorLocalizacao.values().length, comandos[i % comandos.length])
+                        == AdmissaoComandos.Decisao.ADMITIDO) {
+                    soma++;
+                }
+            }
+            double admissaoNs = (System.nanoTime() - inicio) / (double) RONDAS;
+
+            if (volta == 1) {
+                AdmissaoComandos.Estatisticas estatisticas = admissao.estatisticas();
+                System.out.printf("Parse streaming: %.0f ns/comando, Gson: %.0f ns/comando (%.1fx)%n",
+                        streaming, gson, gson / streaming);
+                System.out.printf("Admissão sob inundação: %.0f ns/mensagem, %d admitidas de %d "
+                                + "(%d repetidas, %d limite do tópico, %d limite global)%n",
+                        admissaoNs, estatisticas.admitidos(), RONDAS, estatisticas.repetidos(),
+                        estatisticas.excessoTopico(), estatisticas.excessoGlobal());
+            }
+        }
+        if (soma == 42) {
+            System.out.println(); // keeps the loops from being optimized away
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pt.monitorizapt.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import pt.monitorizapt.domain.SensorLocalizacao;
+import pt.monitorizapt.domain.SensorTipo;
+import pt.monitorizapt.util.Configuracao;
+
+/**
+ * Sustained write rate of {@link RegistoSql} and the cost it puts on the sensor threads.
+ *
+ * Usage:
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pt.monitorizapt.service.BenchmarkSql
+ * -Dexec.args="<leituras> <sensores>"} (defaults 1000000 1000)
+ *
+ * The readings are offered as fast as the queue takes them (a producer that finds it full
+ * waits briefly and retries, so nothing is dropped and the figure is the writer's rate), into
+ * a fresh database in a temporary directory. A range query on one sensor shows the index at work.
+ */
+public final class BenchmarkSql {
+    private BenchmarkSql() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int sensores = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Path diretoria = Files.createTempDirectory("monitorizapt-sql");
+        String url = "jdbc:h2:file:" + diretoria.resolve("bench").toAbsolutePath();
+
+        Properties propriedades = new Properties();
+        propriedades.setProperty("sql.url", url);
+        RegistoSql registo = new RegistoSql(new Configuracao(propriedades, null));
+        SensorLocalizacao[] localizacoes = SensorLocalizacao.values();
+        SensorTipo[] tipos = SensorTipo.values();
+        long base = System.currentTimeMillis() - total * 10L;
+
+        long chamadasNanos = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            SensorLocalizacao localizacao = localizacoes[i % localizacoes.length];
+            SensorSnapshot leitura = new SensorSnapshot("PT-SENSOR-" + (i % sensores), localizacao.descricao(),
+                    tipos[i % tipos.length], 20.0 + (i % 100) / 10.0, "Celsius", i % 50 == 0, base + i * 10L);
+            while (registo.estatisticas().pendentes() > 8192) {
+                Thread.onSpinWait();
+            }
+            long antes = System.nanoTime();
+            registo.registarLeitura(leitura);
+            chamadasNanos += System.nanoTime() - antes;
+        }
+        registo.fechar();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        RegistoSql.Estatisticas estatisticas = registo.estatisticas();
+
+        System.out.printf("%d leituras inseridas em %.1f s: %.0f leituras/s, %d lotes (%.0f por lote), %d descartadas%n",
+                estatisticas.inseridas(), segundos, estatisticas.inseridas() / segundos, estatisticas.lotes(),
+                (double) estatisticas.inseridas() / Math.max(1, estatisticas.lotes()), estatisticas.descartadas());
+        System.out.printf("Custo na thread do sensor: %.0f ns/leitura%n", (double) chamadasNanos / total);
+
+        try (Connection ligacao = DriverManager.getConnection(url);
+             PreparedStatement consulta = ligacao.prepareStatement(
+                     "SELECT COUNT(*), AVG(valor) FROM leituras WHERE sensor_id = ? AND ts BETWEEN ? AND ?")) {
+            consulta.setString(1, "PT-SENSOR-7");
+            consulta.setLong(2, base);
+            consulta.setLong(3, base + total * 5L);
+            long antes = System.nanoTime();
+            try (ResultSet resultado = consulta.executeQuery()) {
+                resultado.next();
+                System.out.printf("Consulta de um sensor em metade do período: %d linhas em %.1f ms%n",
+                        resultado.getLong(1), (System.nanoTime() - antes) / 1e6);
+            }
+        }
+        System.out.println("Base de dados: " + diretoria);
+    }
+}